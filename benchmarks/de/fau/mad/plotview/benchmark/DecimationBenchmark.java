@@ -0,0 +1,136 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.fau.mad.plotview.BitValueList;
+import de.fau.mad.plotview.CircularValueList;
+import de.fau.mad.plotview.FloatValueList;
+import de.fau.mad.plotview.RasterPlotCanvas;
+import de.fau.mad.plotview.SampleDecimator;
+
+/**
+ * The per-pixel min/max decimation of Plot1D.draw() for a whole ring on a
+ * surface of the given width, as done by SampleDecimator. "pyramid" switches
+ * the MinMaxPyramid of the ring on, "markers" lets the decimator scan the
+ * inspect flags (one sample in 10000 is flagged).
+ * <p>
+ * decimateAndRaster also draws the result into a RasterPlotCanvas, which is
+ * the complete frame without Android.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class DecimationBenchmark {
+    private static final int HEIGHT = 480;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    /**
+     * Rounds size up to a power of two, so the ring uses mask indexing.
+     */
+    @Param({"false", "true"})
+    public boolean powerOfTwo;
+
+    @Param({"1080"})
+    public int width;
+
+    @Param({"false", "true"})
+    public boolean pyramid;
+
+    @Param({"false", "true"})
+    public boolean markers;
+
+    private FloatValueList values;
+    private BitValueList inspectValues;
+    private final SampleDecimator decimator = new SampleDecimator();
+    private final SampleDecimator.MarkerListener listener = new SampleDecimator.MarkerListener() {
+        public void onMarker(int realIdx, float x, float y) {
+            markerCount++;
+        }
+    };
+    private RasterPlotCanvas canvas;
+    private int markerCount = 0;
+
+    private double numIdxPerPixel;
+    private float yPxTrans;
+    private double yPxScale;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (powerOfTwo)
+            size = CircularValueList.powerOfTwo(size);
+
+        values = new FloatValueList(size, true);
+        inspectValues = new BitValueList(size);
+
+        // a random walk, one and a half rounds so the viewport wraps
+        Random rnd = new Random(42);
+        float v = 0f;
+        for (int i = 0; i < size + size / 2; ++i) {
+            v += (float) rnd.nextGaussian();
+            values.add(v);
+            inspectValues.add(i % 10000 == 0);
+        }
+
+        values.setMinMaxPyramid(pyramid);
+        values.findMinMax();
+
+        numIdxPerPixel = (double) values.num / width;
+        yPxTrans = -values.minValue;
+        yPxScale = (HEIGHT - 1) / (double) (values.maxValue - values.minValue);
+
+        canvas = new RasterPlotCanvas(width, HEIGHT);
+    }
+
+    @Benchmark
+    public int decimate() {
+        return decimator.decimate(values, inspectValues, values.tail, values.num, numIdxPerPixel, yPxTrans,
+                yPxScale, markers ? listener : null) + markerCount;
+    }
+
+    @Benchmark
+    public int decimateAndRaster() {
+        decimator.decimate(values, inspectValues, values.tail, values.num, numIdxPerPixel, yPxTrans, yPxScale,
+                markers ? listener : null);
+
+        canvas.clear(0xFFFFFFFF);
+        canvas.translate(0, HEIGHT - 1);
+        canvas.scale(1f, -1f);
+        canvas.drawPolyline(decimator.points, 0, decimator.count);
+        return canvas.getPixels()[width / 2];
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.fau.mad.plotview.DelimitedLoader;
+import de.fau.mad.plotview.FloatValueList;
+import de.fau.mad.plotview.LongValueList;
+
+/**
+ * Parsing speed of DelimitedLoader.load() over a CSV generated in memory,
+ * with a header line and millisecond timestamps in the first column.
+ * <p>
+ * format selects the value column: "decimal" (e.g. -12.3456) or "exponent"
+ * (e.g. -1.23456E-05), which also parses the exponent. The bytes counter is
+ * the throughput in bytes/s.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class DelimitedLoaderBenchmark {
+    @Param({"10000", "1000000"})
+    public int lines;
+
+    @Param({"decimal", "exponent"})
+    public String format;
+
+    private byte[] csv;
+    private DelimitedLoader loader;
+    private LongValueList x;
+    private FloatValueList values;
+
+    /**
+     * Bytes parsed, reported as rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counter {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final boolean exponent = "exponent".equals(format);
+        final StringBuilder sb = new StringBuilder(lines * 24);
+        sb.append("time,value\n");
+
+        Random rnd = new Random(42);
+        long time = 1500000000000L;
+        for (int i = 0; i < lines; ++i) {
+            time += i % 3 == 0 ? 11 : 10;
+            sb.append(time).append(',');
+            if (exponent)
+                sb.append(String.format(Locale.US, "%.5E", rnd.nextGaussian() * 1e-5));
+            else
+                sb.append(String.format(Locale.US, "%.4f", rnd.nextGaussian() * 100));
+            sb.append('\n');
+        }
+        csv = sb.toString().getBytes("US-ASCII");
+
+        loader = new DelimitedLoader(',', 1, 2, 1);
+        x = new LongValueList(lines, true);
+        values = new FloatValueList(lines, true);
+    }
+
+    @Benchmark
+    public int load(Counter counter) throws IOException {
+        counter.bytes += csv.length;
+        return loader.load(new ByteArrayInputStream(csv), x, values, null);
+    }
+}
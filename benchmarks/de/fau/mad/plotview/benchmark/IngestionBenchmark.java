@@ -0,0 +1,149 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.fau.mad.plotview.FloatValueList;
+import de.fau.mad.plotview.LongValueList;
+
+/**
+ * Contention between a producer thread adding samples and a reader thread
+ * scanning the newest VIEWPORT entries like a draw() does, both running at
+ * the same time.
+ * <p>
+ * Group "locked" guards the rings with a ReentrantLock like the locking
+ * Plot1D.addValue() and draw(). Group "lockFree" follows
+ * Plot1D.setLockFreeIngestion(): the producer publishes (head << 32) | num
+ * with lazySet after writing the rings and the reader only works with the
+ * last published snapshot. Plot1D itself needs android.graphics, so both
+ * paths are rebuilt here on the value lists.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class IngestionBenchmark {
+    private static final int INPUT_MASK = (1 << 16) - 1;
+    private static final int VIEWPORT = 1024;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong published = new AtomicLong(0xFFFFFFFF00000000L);
+
+    private FloatValueList values;
+    private LongValueList x;
+
+    private final float[] input = new float[INPUT_MASK + 1];
+    private int pos = 0;
+    private long time = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        values = new FloatValueList(size, true);
+        x = new LongValueList(size, true);
+
+        Random rnd = new Random(42);
+        for (int i = 0; i <= INPUT_MASK; ++i) {
+            input[i] = (float) rnd.nextGaussian();
+        }
+
+        // fill the rings so every measured add evicts an entry
+        for (int i = 0; i < size; ++i) {
+            values.add(input[i & INPUT_MASK]);
+            x.add(time += 10);
+        }
+        publish();
+    }
+
+    private void publish() {
+        published.lazySet(((long) values.head << 32) | (values.num & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Sums the newest VIEWPORT entries before head.
+     */
+    private float scan(int head, int num) {
+        final int n = Math.min(VIEWPORT, num);
+        float acc = 0;
+        for (int i = head - n + 1; i <= head; ++i) {
+            acc += values.getIndirect(i);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public int lockedAdd() {
+        lock.lock();
+        values.add(input[pos++ & INPUT_MASK]);
+        x.add(time += 10);
+        lock.unlock();
+        return values.head;
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public float lockedRead() {
+        lock.lock();
+        final float acc = scan(values.head, values.num);
+        lock.unlock();
+        return acc;
+    }
+
+    @Benchmark
+    @Group("lockFree")
+    @GroupThreads(1)
+    public int lockFreeAdd() {
+        values.add(input[pos++ & INPUT_MASK]);
+        x.add(time += 10);
+        publish();
+        return values.head;
+    }
+
+    @Benchmark
+    @Group("lockFree")
+    @GroupThreads(1)
+    public float lockFreeRead() {
+        final long snapshot = published.get();
+        return scan((int) (snapshot >> 32), (int) snapshot);
+    }
+}
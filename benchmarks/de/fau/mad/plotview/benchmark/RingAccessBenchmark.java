@@ -0,0 +1,126 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.fau.mad.plotview.CircularValueList;
+import de.fau.mad.plotview.FloatValueList;
+
+/**
+ * Cost of the ring index arithmetic: normIdx() and getIndirect(), both for
+ * a sequential scan like the draw loops do and for random positions, on
+ * rings of exact and of power of two capacity.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class RingAccessBenchmark {
+    private static final int OPS = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    /**
+     * Rounds size up to a power of two, so the ring uses mask indexing.
+     */
+    @Param({"false", "true"})
+    public boolean powerOfTwo;
+
+    private FloatValueList values;
+    private final int[] randomIdx = new int[OPS];
+    private int start = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (powerOfTwo)
+            size = CircularValueList.powerOfTwo(size);
+
+        values = new FloatValueList(size, false);
+
+        // one and a half rounds, so head and tail are in the middle
+        for (int i = 0; i < size + size / 2; ++i) {
+            values.add((float) i);
+        }
+
+        // valid range of normIdx() is [-2 * num, 2 * num[
+        Random rnd = new Random(42);
+        for (int i = 0; i < OPS; ++i) {
+            randomIdx[i] = rnd.nextInt(size << 2) - (size << 1);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int normIdxSequential() {
+        int sum = 0;
+        int first = values.tail + (start = (start + OPS) % size);
+        for (int i = 0; i < OPS; ++i) {
+            sum += values.normIdx(first + i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int normIdxRandom() {
+        int sum = 0;
+        for (int i = 0; i < OPS; ++i) {
+            sum += values.normIdx(randomIdx[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public float getIndirectSequential() {
+        float sum = 0f;
+        int first = values.tail + (start = (start + OPS) % size);
+        for (int i = 0; i < OPS; ++i) {
+            sum += values.getIndirect(first + i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public float getIndirectRandom() {
+        float sum = 0f;
+        for (int i = 0; i < OPS; ++i) {
+            sum += values.getIndirect(randomIdx[i]);
+        }
+        return sum;
+    }
+}
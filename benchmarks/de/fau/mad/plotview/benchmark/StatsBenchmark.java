@@ -0,0 +1,108 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.fau.mad.plotview.CircularValueList.Statistics;
+import de.fau.mad.plotview.FloatValueList;
+import de.fau.mad.plotview.LongValueList;
+
+/**
+ * Full scans over a filled ring: findMinMax() and calculateStats() over all
+ * entries, and findRangeMinMax() over a range of a tenth of the ring with and
+ * without the MinMaxPyramid.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class StatsBenchmark {
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private FloatValueList floats;
+    private FloatValueList indexedFloats;
+    private LongValueList longs;
+
+    private final Statistics stats = new Statistics();
+    private final float[] range = new float[2];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        floats = new FloatValueList(size, true);
+        indexedFloats = new FloatValueList(size, true);
+        longs = new LongValueList(size, true);
+
+        Random rnd = new Random(42);
+        float v;
+        for (int i = 0; i < size; ++i) {
+            v = (float) rnd.nextGaussian();
+            floats.add(v);
+            indexedFloats.add(v);
+            longs.add(rnd.nextLong());
+        }
+
+        indexedFloats.setMinMaxPyramid(true);
+    }
+
+    @Benchmark
+    public float findMinMaxFloat() {
+        floats.findMinMax();
+        return floats.maxValue - floats.minValue;
+    }
+
+    @Benchmark
+    public long findMinMaxLong() {
+        longs.findMinMax();
+        return longs.maxValue - longs.minValue;
+    }
+
+    @Benchmark
+    public float calculateStats() {
+        floats.calculateStats(0, floats.num - 1, stats);
+        return stats.stdDeviation;
+    }
+
+    @Benchmark
+    public float findRangeMinMaxScan() {
+        floats.findRangeMinMax(size / 3, size / 3 + size / 10, range);
+        return range[1] - range[0];
+    }
+
+    @Benchmark
+    public float findRangeMinMaxPyramid() {
+        indexedFloats.findRangeMinMax(size / 3, size / 3 + size / 10, range);
+        return range[1] - range[0];
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.fau.mad.plotview.BitValueList;
+import de.fau.mad.plotview.BooleanValueList;
+import de.fau.mad.plotview.CompressedTimeList;
+import de.fau.mad.plotview.FloatValueList;
+import de.fau.mad.plotview.LongValueList;
+
+/**
+ * Cost of appending to full rings, i.e. in the steady state where every add()
+ * overwrites the oldest entry.
+ * <p>
+ * minMax selects the extreme maintenance: "none", "rescan" (maintainMinMax,
+ * full rescan whenever an extreme is overwritten) or "sliding"
+ * (setSlidingMinMax()). The random input makes "rescan" hit its worst case
+ * regularly.
+ * <p>
+ * addCompressedTime appends jittering timestamps to a CompressedTimeList.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class ValueListAddBenchmark {
+    private static final int INPUT_MASK = (1 << 16) - 1;
+    private static final int CHUNK = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"none", "rescan", "sliding"})
+    public String minMax;
+
+    @Param({"false", "true"})
+    public boolean maintainSum;
+
+    private FloatValueList floats;
+    private LongValueList longs;
+    private BooleanValueList booleans;
+    private BitValueList bits;
+    private CompressedTimeList times;
+
+    private final float[] floatInput = new float[INPUT_MASK + 1];
+    private final long[] longInput = new long[INPUT_MASK + 1];
+    private int pos = 0;
+    private long time = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        boolean maintainMinMax = !"none".equals(minMax);
+
+        floats = new FloatValueList(size, maintainMinMax, maintainSum);
+        longs = new LongValueList(size, maintainMinMax);
+        booleans = new BooleanValueList(size, false);
+        bits = new BitValueList(size);
+        times = new CompressedTimeList(size, maintainMinMax);
+
+        if ("sliding".equals(minMax)) {
+            floats.setSlidingMinMax(true);
+            longs.setSlidingMinMax(true);
+        }
+
+        Random rnd = new Random(42);
+        for (int i = 0; i <= INPUT_MASK; ++i) {
+            floatInput[i] = (float) rnd.nextGaussian();
+            longInput[i] = rnd.nextLong();
+        }
+
+        // fill the rings so every measured add() evicts an entry
+        for (int i = 0; i < size; ++i) {
+            floats.add(floatInput[i & INPUT_MASK]);
+            longs.add(longInput[i & INPUT_MASK]);
+            booleans.add((i & 1) == 0);
+            bits.add((i & 1) == 0);
+            times.add(nextTime(i));
+        }
+    }
+
+    @Benchmark
+    public int addFloat() {
+        return floats.add(floatInput[pos++ & INPUT_MASK]);
+    }
+
+    @Benchmark
+    public int addLong() {
+        return longs.add(longInput[pos++ & INPUT_MASK]);
+    }
+
+    @Benchmark
+    public int addBoolean() {
+        return booleans.add((pos++ & 1) == 0);
+    }
+
+    @Benchmark
+    public int addBit() {
+        return bits.add((pos++ & 1) == 0);
+    }
+
+    @Benchmark
+    public int addCompressedTime() {
+        return times.add(nextTime(pos++));
+    }
+
+    /**
+     * 100 Hz with a millisecond of jitter every third sample.
+     */
+    private long nextTime(int i) {
+        time += i % 3 == 0 ? 11 : 10;
+        return time;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK)
+    public int addFloatBulk() {
+        pos = (pos + CHUNK) & INPUT_MASK;
+        if (pos > INPUT_MASK + 1 - CHUNK)
+            pos = 0;
+        return floats.add(floatInput, pos, CHUNK);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK)
+    public int addLongBulk() {
+        pos = (pos + CHUNK) & INPUT_MASK;
+        if (pos > INPUT_MASK + 1 - CHUNK)
+            pos = 0;
+        return longs.add(longInput, pos, CHUNK);
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.CornerPathEffect;
+import android.graphics.Paint;
+import android.graphics.Paint.Align;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+/**
+ * PlotCanvas drawing to an Android Canvas with the Paint of a plot. All
+ * state changes are applied to that Paint, just like the plots did before.
+ * <p>
+ * One instance is meant to be reused for every frame, @see #set(Canvas,
+ * Paint)
+ */
+public class AndroidPlotCanvas implements PlotCanvas {
+    protected Canvas m_canvas = null;
+    protected Paint m_paint = null;
+
+    private final Path m_path = new Path();
+    private CornerPathEffect m_cornerEffect = null;
+    private float m_cornerRadius = 0f;
+
+    /**
+     * Whether polylines are drawn as line segments, @see
+     * #setBatchedPolylines(boolean)
+     */
+    private boolean m_batchPolylines = true;
+
+    /**
+     * Segment vertices of the last polyline, reused across frames.
+     */
+    private float[] m_lines = new float[512];
+
+    /**
+     * Image of the last drawPixels() call, reused while the size stays.
+     */
+    private Bitmap m_bitmap = null;
+    private final RectF m_rect = new RectF();
+
+    /**
+     * Sets the Canvas and Paint to draw with.
+     *
+     * @param canvas
+     * @param paint
+     * @return this
+     */
+    public AndroidPlotCanvas set(Canvas canvas, Paint paint) {
+        m_canvas = canvas;
+        m_paint = paint;
+        return this;
+    }
+
+    public Canvas getCanvas() {
+        return m_canvas;
+    }
+
+    /**
+     * Selects how drawPolyline() draws. If enabled, which is the default, the
+     * points are expanded into a reused vertex buffer of line segments and
+     * drawn with a single Canvas.drawLines() call, whose cost only depends on
+     * the number of points. Otherwise a Path is built and drawn, which has to
+     * be tessellated on every frame but joins thick lines properly. Paths are
+     * always used if the Paint has a PathEffect, e.g. rounded corners.
+     *
+     * @param enable
+     */
+    public void setBatchedPolylines(boolean enable) {
+        m_batchPolylines = enable;
+    }
+
+    public void save() {
+        m_canvas.save();
+    }
+
+    public void restore() {
+        m_canvas.restore();
+    }
+
+    public void translate(float dx, float dy) {
+        m_canvas.translate(dx, dy);
+    }
+
+    public void scale(float sx, float sy) {
+        m_canvas.scale(sx, sy);
+    }
+
+    public void setColor(int argb) {
+        m_paint.setColor(argb);
+    }
+
+    public void setStrokeWidth(float width) {
+        m_paint.setStrokeWidth(width);
+    }
+
+    public void setFill(boolean fill) {
+        m_paint.setStyle(fill ? Paint.Style.FILL_AND_STROKE : Paint.Style.STROKE);
+    }
+
+    public void setTextSize(float size) {
+        m_paint.setTextSize(size);
+    }
+
+    public float getTextDescent() {
+        return m_paint.descent();
+    }
+
+    public void setCornerRadius(float radius) {
+        if (radius <= 1f) {
+            if (m_cornerEffect != null && m_paint.getPathEffect() == m_cornerEffect)
+                m_paint.setPathEffect(null);
+            return;
+        }
+
+        // only allocate a new effect if the radius changes
+        if (m_cornerEffect == null || radius != m_cornerRadius) {
+            m_cornerEffect = new CornerPathEffect(radius);
+            m_cornerRadius = radius;
+        }
+        m_paint.setPathEffect(m_cornerEffect);
+    }
+
+    public void drawLine(float x0, float y0, float x1, float y1) {
+        m_canvas.drawLine(x0, y0, x1, y1, m_paint);
+    }
+
+    public void drawLines(float[] pts, int offset, int count) {
+        m_canvas.drawLines(pts, offset, count, m_paint);
+    }
+
+    public void drawPolyline(float[] pts, int offset, int count) {
+        if (count < 4)
+            return;
+
+        if (m_batchPolylines && m_paint.getPathEffect() == null) {
+            // every point but the first and last starts and ends a segment
+            final int n = (count - 2) << 1;
+            if (m_lines.length < n)
+                m_lines = new float[Math.max(n, m_lines.length << 1)];
+
+            for (int i = offset, j = 0; j < n; i += 2, j += 4) {
+                m_lines[j] = pts[i];
+                m_lines[j + 1] = pts[i + 1];
+                m_lines[j + 2] = pts[i + 2];
+                m_lines[j + 3] = pts[i + 3];
+            }
+            m_canvas.drawLines(m_lines, 0, n, m_paint);
+            return;
+        }
+
+        m_path.reset();
+        m_path.moveTo(pts[offset], pts[offset + 1]);
+        for (int i = offset + 2; i < offset + count; i += 2) {
+            m_path.lineTo(pts[i], pts[i + 1]);
+        }
+        m_canvas.drawPath(m_path, m_paint);
+    }
+
+    public void drawPoint(float x, float y) {
+        m_canvas.drawPoint(x, y, m_paint);
+    }
+
+    public void drawPoints(float[] pts, int offset, int count) {
+        m_canvas.drawPoints(pts, offset, count, m_paint);
+    }
+
+    public void drawRect(float left, float top, float right, float bottom) {
+        m_canvas.drawRect(left, top, right, bottom, m_paint);
+    }
+
+    public void drawCircle(float cx, float cy, float radius) {
+        m_canvas.drawCircle(cx, cy, radius, m_paint);
+    }
+
+    public void drawPixels(int[] argb, int width, int height, float left, float top, float right, float bottom) {
+        if (m_bitmap == null || m_bitmap.getWidth() != width || m_bitmap.getHeight() != height) {
+            if (m_bitmap != null)
+                m_bitmap.recycle();
+            m_bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        m_bitmap.setPixels(argb, 0, width, 0, 0, width, height);
+
+        m_rect.set(left, top, right, bottom);
+        m_canvas.drawBitmap(m_bitmap, null, m_rect, m_paint);
+    }
+
+    public void drawText(char[] text, int offset, int length, float x, float y) {
+        // the plot coordinate system is upside down, flip it back for text
+        m_canvas.save();
+        m_canvas.scale(1f, -1f);
+        m_paint.setTextAlign(Align.CENTER);
+        m_canvas.drawText(text, offset, length, x, -y, m_paint);
+        m_canvas.restore();
+    }
+}
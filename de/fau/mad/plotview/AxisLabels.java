@@ -0,0 +1,215 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.text.DecimalFormatSymbols;
+
+/**
+ * Cache of the pin labels and the title of one axis, formatted into char[]
+ * buffers without allocating, so they can be drawn with
+ * Canvas.drawText(char[], int, int, float, float, Paint).
+ * <p>
+ * Labels are keyed by the number as it is displayed, i.e. rounded to the
+ * requested decimals. The cache is direct mapped, so a label that isn't
+ * cached is formatted into the buffer of the slot it replaces. While the
+ * viewport doesn't change, every frame draws the same labels and only hits.
+ */
+public class AxisLabels {
+    /**
+     * Number of cached labels, a power of two.
+     */
+    public static final int CACHE_SIZE = 32;
+
+    /**
+     * Maximum number of decimals.
+     */
+    public static final int MAX_DECIMALS = 9;
+
+    /**
+     * Chars of a label: sign, 19 digits and the decimal separator.
+     */
+    private static final int MAX_CHARS = 21;
+
+    private static final long[] POW10 = new long[MAX_DECIMALS + 1];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; ++i) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Text of a label, chars offset to offset + length of text.
+     */
+    public static class Label {
+        public char[] text;
+        public int offset = 0;
+        public int length = 0;
+
+        /**
+         * Displayed number times 10^decimals.
+         */
+        private long key;
+        private int decimals = -1;
+
+        private Label(int capacity) {
+            text = new char[capacity];
+        }
+    }
+
+    private final Label[] m_cache = new Label[CACHE_SIZE];
+    private final Label m_notAvailable;
+
+    private final Label m_title = new Label(0);
+    private String m_titleName = null;
+    private String m_titleUnit = null;
+
+    private final char m_decimalSeparator;
+
+    /**
+     * TRANSIENT variables
+     */
+    private transient Label tLabel;
+
+    public AxisLabels() {
+        for (int i = 0; i < CACHE_SIZE; ++i) {
+            m_cache[i] = new Label(MAX_CHARS);
+        }
+
+        m_notAvailable = new Label(0);
+        m_notAvailable.text = "n/a".toCharArray();
+        m_notAvailable.length = m_notAvailable.text.length;
+
+        // same separator as String.format() used
+        m_decimalSeparator = DecimalFormatSymbols.getInstance().getDecimalSeparator();
+    }
+
+    /**
+     * @return The label "n/a".
+     */
+    public Label notAvailable() {
+        return m_notAvailable;
+    }
+
+    /**
+     * @param value
+     * @return The label of value, valid until the next call.
+     */
+    public Label get(long value) {
+        return lookup(value, 0);
+    }
+
+    /**
+     * @param value
+     * @param decimals number of decimals, rounded half up like
+     *                 String.format("%.2f") does
+     * @return The label of value, valid until the next call.
+     */
+    public Label get(double value, int decimals) {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            return m_notAvailable;
+
+        if (decimals < 0)
+            decimals = 0;
+        else if (decimals > MAX_DECIMALS)
+            decimals = MAX_DECIMALS;
+
+        final double scaled = Math.floor(Math.abs(value) * POW10[decimals] + 0.5);
+        return lookup(value < 0 ? -(long) scaled : (long) scaled, decimals);
+    }
+
+    /**
+     * @param title
+     * @param unitName
+     * @return The label "title [unitName]", which is only rebuilt when one of
+     * the Strings is replaced.
+     */
+    public Label title(String title, String unitName) {
+        if (title != m_titleName || unitName != m_titleUnit) {
+            m_titleName = title;
+            m_titleUnit = unitName;
+
+            final String text = title + " [" + unitName + "]";
+            m_title.text = text.toCharArray();
+            m_title.length = m_title.text.length;
+        }
+        return m_title;
+    }
+
+    private Label lookup(long key, int decimals) {
+        tLabel = m_cache[slotOf(key, decimals)];
+        if (tLabel.decimals != decimals || tLabel.key != key) {
+            tLabel.key = key;
+            tLabel.decimals = decimals;
+            tLabel.offset = formatFixed(key, decimals, m_decimalSeparator, tLabel.text, tLabel.text.length);
+            tLabel.length = tLabel.text.length - tLabel.offset;
+        }
+        return tLabel;
+    }
+
+    private static int slotOf(long key, int decimals) {
+        key = (key ^ (key >>> 32)) * 0x9E3779B97F4A7C15L + decimals;
+        return (int) (key >>> 40) & (CACHE_SIZE - 1);
+    }
+
+    /**
+     * Writes the decimal representation of value right-aligned into buf,
+     * ending before end.
+     *
+     * @return Index of the first char.
+     */
+    public static int formatLong(long value, char[] buf, int end) {
+        return formatFixed(value, 0, '.', buf, end);
+    }
+
+    /**
+     * Writes scaled / 10^decimals with exactly decimals decimals
+     * right-aligned into buf, ending before end. end must leave room for at
+     * least 21 chars.
+     *
+     * @param scaled    the number times 10^decimals
+     * @param decimals  0 to MAX_DECIMALS
+     * @param separator decimal separator
+     * @return Index of the first char.
+     */
+    public static int formatFixed(long scaled, int decimals, char separator, char[] buf, int end) {
+        int pos = end;
+        final boolean negative = scaled < 0;
+
+        // work with the negative value, Long.MIN_VALUE has no positive
+        if (!negative)
+            scaled = -scaled;
+
+        for (int i = 0; i < decimals; ++i) {
+            buf[--pos] = (char) ('0' - (scaled % 10));
+            scaled /= 10;
+        }
+        if (decimals > 0)
+            buf[--pos] = separator;
+
+        do {
+            buf[--pos] = (char) ('0' - (scaled % 10));
+            scaled /= 10;
+        } while (scaled != 0);
+
+        if (negative)
+            buf[--pos] = '-';
+
+        return pos;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.util.Arrays;
+
+/**
+ * Bit stream in 64 bit words, most significant bit first. Used as scratch
+ * buffer by the compressed value lists: a block is written here and then
+ * copied into an array of exactly wordCount() words, which read() decodes.
+ */
+public class BitStream {
+    public final long[] words;
+
+    /**
+     * Number of bits written.
+     */
+    public int bitPos = 0;
+
+    /**
+     * @param capacityBits maximal number of bits between two reset() calls
+     */
+    public BitStream(int capacityBits) {
+        words = new long[((capacityBits + 63) >> 6) + 1];
+    }
+
+    /**
+     * Empties the stream.
+     */
+    public void reset() {
+        Arrays.fill(words, 0, Math.min(words.length, wordCount() + 1), 0L);
+        bitPos = 0;
+    }
+
+    /**
+     * @return Number of words holding the written bits.
+     */
+    public int wordCount() {
+        return (bitPos + 63) >> 6;
+    }
+
+    /**
+     * Appends the n lowest bits of value.
+     *
+     * @param value
+     * @param n     number of bits, 1 to 64
+     */
+    public void write(long value, int n) {
+        final int word = bitPos >> 6;
+        final int free = 64 - (bitPos & 63);
+        if (n < 64)
+            value &= (1L << n) - 1;
+
+        if (n <= free)
+            words[word] |= value << (free - n);
+        else {
+            words[word] |= value >>> (n - free);
+            words[word + 1] |= value << (64 - (n - free));
+        }
+        bitPos += n;
+    }
+
+    /**
+     * @param words a stream written by write()
+     * @param pos   bit position
+     * @param n     number of bits, 1 to 64
+     * @return The n bits at pos as unsigned value.
+     */
+    public static long read(long[] words, int pos, int n) {
+        final int word = pos >> 6;
+        final int free = 64 - (pos & 63);
+        long v;
+        if (n <= free)
+            v = words[word] >>> (free - n);
+        else
+            v = (words[word] << (n - free)) | (words[word + 1] >>> (64 - (n - free)));
+
+        return n < 64 ? v & ((1L << n) - 1) : v;
+    }
+}
@@ -0,0 +1,295 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.util.Arrays;
+
+/**
+ * Ring of boolean flags packed into 64 bit words, i.e. one bit per entry
+ * instead of one byte like the BooleanValueList.
+ * <p>
+ * Meant for sparse flags such as the inspect flags of a Plot:
+ * nextSetBit() skips 64 unset entries per word, so finding the few set
+ * entries of a range doesn't need a test per entry.
+ */
+public class BitValueList extends CircularValueList {
+    /**
+     * The raw flags, bit (i &amp; 63) of words[i &gt;&gt;&gt; 6] belongs to
+     * the raw index i.
+     */
+    public long[] words = null;
+
+    /**
+     * Constructs a new BitValueList with the given preallocated entries.
+     *
+     * @param cacheSize Number of preallocated entries.
+     */
+    public BitValueList(int cacheSize) {
+        super(cacheSize);
+        words = new long[(sizeMax + 63) >>> 6];
+    }
+
+    /**
+     * Adds a new entry to the ring, possibly overwriting the eldest entry.
+     *
+     * @param newValue The value to add to the list.
+     * @return new head position
+     */
+    public int add(boolean newValue) {
+        ++head;
+        if (head == sizeMax)
+            head = 0;
+
+        if (newValue)
+            words[head >>> 6] |= 1L << head;
+        else
+            words[head >>> 6] &= ~(1L << head);
+
+        if (num < sizeMax)
+            ++num;
+        else {
+            // if buffer is entirely filled, tail increases with head
+            ++tail;
+            if (tail == sizeMax)
+                tail = 0;
+        }
+
+        return head;
+    }
+
+    /**
+     * Adds count entries with the same value to the ring, possibly overwriting
+     * the eldest entries.
+     *
+     * @param newValue the value to add
+     * @param count    number of entries to add
+     * @return new head position
+     */
+    public int addRepeated(boolean newValue, int count) {
+        if (count <= 0)
+            return head;
+        if (count >= sizeMax) {
+            // keep head in sync with the other lists of a plot
+            head = (head + count - sizeMax) % sizeMax;
+            count = sizeMax;
+            num = 0;
+            tail = 0;
+        }
+
+        int first = head + 1;
+        if (first == sizeMax)
+            first = 0;
+
+        int segment = Math.min(count, sizeMax - first);
+        fill(first, first + segment, newValue);
+        if (segment < count)
+            fill(0, count - segment, newValue);
+
+        advance(count);
+
+        return head;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.CircularValueList#clear()
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        Arrays.fill(words, 0L);
+    }
+
+    /**
+     * @param idx raw index
+     * @return The flag at the raw index.
+     */
+    public boolean isSet(int idx) {
+        return (words[idx >>> 6] & (1L << idx)) != 0;
+    }
+
+    /**
+     * Returns the value at the current head position.
+     */
+    public boolean getHeadValue() {
+        if (head < 0)
+            return false;
+        return isSet(head);
+    }
+
+    /**
+     * Returns the value at position rIdx. It has the same effect as calling
+     * isSet(normIdx(rIdx)).
+     *
+     * @param rIdx negative or positive index in the ring
+     * @return the value at rIdx or false if the List doesn't contain any
+     * elements
+     */
+    public boolean getIndirect(int rIdx) {
+        // no elements
+        if (num == 0)
+            return false;
+
+        return isSet(normIdx(rIdx));
+    }
+
+    /**
+     * Sets the flag at the ring index location.
+     *
+     * @param location negative or positive index in the ring
+     * @param value
+     * @return the previous value
+     */
+    public boolean set(int location, boolean value) {
+        int idx = normIdx(location);
+        boolean prev = isSet(idx);
+
+        if (value)
+            words[idx >>> 6] |= 1L << idx;
+        else
+            words[idx >>> 6] &= ~(1L << idx);
+
+        return prev;
+    }
+
+    /**
+     * Finds the first set flag in the raw index range [from, to[.
+     *
+     * @param from first raw index, inclusive
+     * @param to   last raw index, exclusive. Ranges that wrap around the end
+     *             of the ring have to be split by the caller, @see
+     *             #nextSetDistance(int, int)
+     * @return The raw index of the first set flag or -1 if there is none.
+     */
+    public int nextSetBit(int from, int to) {
+        if (from >= to)
+            return -1;
+
+        int w = from >>> 6;
+        final int last = (to - 1) >>> 6;
+
+        // mask out the bits below from
+        long word = words[w] & (-1L << from);
+
+        while (word == 0) {
+            if (++w > last)
+                return -1;
+            word = words[w];
+        }
+
+        int bit = (w << 6) + Long.numberOfTrailingZeros(word);
+        return bit < to ? bit : -1;
+    }
+
+    /**
+     * Finds the first set flag among count entries of the ring, starting at
+     * the (not normalized) ring index rIdx. The range may wrap around the
+     * end of the ring.
+     *
+     * @param rIdx  negative or positive index in the ring
+     * @param count number of entries to search, at most num
+     * @return The distance of the first set flag from rIdx, in [0, count[, or
+     * -1 if there is none.
+     */
+    public int nextSetDistance(int rIdx, int count) {
+        if (count <= 0 || num == 0)
+            return -1;
+
+        int from = normIdx(rIdx);
+        int segment = Math.min(count, num - from);
+
+        int bit = nextSetBit(from, from + segment);
+        if (bit != -1)
+            return bit - from;
+
+        if (segment < count) {
+            bit = nextSetBit(0, count - segment);
+            if (bit != -1)
+                return segment + bit;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Sets or clears all flags of the raw index range [from, to[.
+     */
+    private void fill(int from, int to, boolean value) {
+        if (from >= to)
+            return;
+
+        final int firstWord = from >>> 6;
+        final int lastWord = (to - 1) >>> 6;
+        final long firstMask = -1L << from;
+        final long lastMask = -1L >>> -to;
+
+        if (firstWord == lastWord) {
+            setMasked(firstWord, firstMask & lastMask, value);
+            return;
+        }
+
+        setMasked(firstWord, firstMask, value);
+        Arrays.fill(words, firstWord + 1, lastWord, value ? -1L : 0L);
+        setMasked(lastWord, lastMask, value);
+    }
+
+    private void setMasked(int word, long mask, boolean value) {
+        if (value)
+            words[word] |= mask;
+        else
+            words[word] &= ~mask;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.CircularValueList#add(float)
+     */
+    @Override
+    public int add(float newValue) {
+        return add(newValue != 0f);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.CircularValueList#add(long)
+     */
+    @Override
+    public int add(long newValue) {
+        return add(newValue != 0L);
+    }
+
+    /**
+     * Flags have no min/max.
+     */
+    public void findMax() {
+    }
+
+    /**
+     * Flags have no min/max.
+     */
+    public void findMin() {
+    }
+
+    /**
+     * Flags have no min/max.
+     */
+    public void findMinMax() {
+    }
+}
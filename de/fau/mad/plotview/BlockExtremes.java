@@ -0,0 +1,409 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.util.Arrays;
+
+/**
+ * Min/max of a ring that is divided into blocks, like CompressedTimeList and
+ * CompressedFloatList.
+ * <p>
+ * Every sealed block keeps its extremes, so the extremes of the ring only
+ * need the blocks, plus the open block head writes to: its entries of this
+ * round and those of the previous round after head. The latter leave the
+ * ring from the front, so their extremes are kept from every offset to the
+ * end of the block. With sliding windows over the sealed blocks, each add()
+ * is O(1).
+ * <p>
+ * Values are handled as long keys. Floats are mapped to keys of the same
+ * order with floatKey(), NaN sorts above positive infinity.
+ */
+public class BlockExtremes {
+    private final int m_blockShift;
+    private final int m_blockSize;
+    private final int m_sizeMax;
+    private final int m_blockNum;
+
+    /**
+     * Extremes of every block, only valid if sealed is set.
+     */
+    public final boolean[] sealed;
+    public final long[] blockMin;
+    public final long[] blockMax;
+    public final int[] blockMinIdx;
+    public final int[] blockMaxIdx;
+
+    /**
+     * The open block, -1 if there is none, and the extremes of the entries
+     * written to it in this round.
+     */
+    private int m_open = -1;
+    private long m_openMin, m_openMax;
+    private int m_openMinIdx = -1, m_openMaxIdx = -1;
+
+    /**
+     * Extremes of the previous round's entries in the open block, from each
+     * offset to the end of the block. Only valid if m_oldValid.
+     */
+    private final long[] m_oldMin;
+    private final long[] m_oldMax;
+    private final int[] m_oldMinIdx;
+    private final int[] m_oldMaxIdx;
+    private boolean m_oldValid = false;
+
+    /**
+     * Sliding min/max over the sealed blocks, null unless enabled.
+     */
+    private SlidingMinMax m_minBlocks = null;
+    private SlidingMinMax m_maxBlocks = null;
+
+    /**
+     * Keys of float blocks.
+     */
+    private final long[] m_keys;
+
+    /**
+     * Result of find() and read(), minIdx/maxIdx are -1 if there are no
+     * entries.
+     */
+    public long min, max;
+    public int minIdx, maxIdx;
+
+    /**
+     * TRANSIENT variables
+     */
+    private transient int tBlock;
+
+    /**
+     * @param sizeMax    Number of entries of the ring.
+     * @param blockShift log2 of the number of entries per block.
+     */
+    public BlockExtremes(int sizeMax, int blockShift) {
+        m_sizeMax = sizeMax;
+        m_blockShift = blockShift;
+        m_blockSize = 1 << blockShift;
+        m_blockNum = ((sizeMax - 1) >> blockShift) + 1;
+
+        sealed = new boolean[m_blockNum];
+        blockMin = new long[m_blockNum];
+        blockMax = new long[m_blockNum];
+        blockMinIdx = new int[m_blockNum];
+        blockMaxIdx = new int[m_blockNum];
+
+        m_oldMin = new long[m_blockSize];
+        m_oldMax = new long[m_blockSize];
+        m_oldMinIdx = new int[m_blockSize];
+        m_oldMaxIdx = new int[m_blockSize];
+        m_keys = new long[m_blockSize];
+    }
+
+    /**
+     * @return A key with the same order as value.
+     */
+    public static long floatKey(float value) {
+        final int bits = Float.floatToRawIntBits(value);
+        // negative floats sort in reverse by their bits
+        return bits ^ (bits >> 31 & 0x7FFFFFFF);
+    }
+
+    /**
+     * @return The float a key was created from, @see #floatKey(float)
+     */
+    public static float keyFloat(long key) {
+        final int bits = (int) key;
+        return Float.intBitsToFloat(bits ^ (bits >> 31 & 0x7FFFFFFF));
+    }
+
+    public int blockLength(int block) {
+        return Math.min(m_blockSize, m_sizeMax - (block << m_blockShift));
+    }
+
+    /**
+     * Enables sliding windows over the sealed blocks, so read() can be used.
+     */
+    public void setSliding(boolean enable) {
+        if (enable && m_minBlocks == null) {
+            m_minBlocks = new SlidingMinMax(m_blockNum);
+            m_maxBlocks = new SlidingMinMax(m_blockNum);
+        } else if (!enable) {
+            m_minBlocks = m_maxBlocks = null;
+        }
+    }
+
+    public boolean isSliding() {
+        return m_minBlocks != null;
+    }
+
+    public void clear() {
+        Arrays.fill(sealed, false);
+        m_open = -1;
+        m_openMinIdx = m_openMaxIdx = -1;
+        m_oldValid = false;
+
+        if (m_minBlocks != null) {
+            m_minBlocks.clear();
+            m_maxBlocks.clear();
+        }
+    }
+
+    /**
+     * Makes block the open one, it's no longer sealed.
+     *
+     * @param block
+     * @param values The previous entries of the block, only read if it was
+     *               sealed.
+     */
+    public void open(int block, long[] values) {
+        if (unseal(block))
+            keepOld(block, values);
+    }
+
+    /**
+     * @see #open(int, long[])
+     */
+    public void open(int block, float[] values) {
+        if (unseal(block))
+            keepOld(block, toKeys(values, blockLength(block)));
+    }
+
+    private boolean unseal(int block) {
+        m_open = block;
+        m_openMinIdx = m_openMaxIdx = -1;
+
+        m_oldValid = sealed[block];
+        sealed[block] = false;
+        if (m_oldValid && m_minBlocks != null) {
+            m_minBlocks.evict(block);
+            m_maxBlocks.evict(block);
+        }
+        return m_oldValid;
+    }
+
+    private void keepOld(int block, long[] keys) {
+        final int start = block << m_blockShift;
+        int i = blockLength(block) - 1;
+        m_oldMin[i] = m_oldMax[i] = keys[i];
+        m_oldMinIdx[i] = m_oldMaxIdx[i] = start + i;
+        for (--i; i >= 0; --i) {
+            if (keys[i] < m_oldMin[i + 1]) {
+                m_oldMin[i] = keys[i];
+                m_oldMinIdx[i] = start + i;
+            } else {
+                m_oldMin[i] = m_oldMin[i + 1];
+                m_oldMinIdx[i] = m_oldMinIdx[i + 1];
+            }
+            if (keys[i] > m_oldMax[i + 1]) {
+                m_oldMax[i] = keys[i];
+                m_oldMaxIdx[i] = start + i;
+            } else {
+                m_oldMax[i] = m_oldMax[i + 1];
+                m_oldMaxIdx[i] = m_oldMaxIdx[i + 1];
+            }
+        }
+    }
+
+    /**
+     * Must be called for every entry written to the open block.
+     *
+     * @param idx raw index
+     * @param key
+     */
+    public void add(int idx, long key) {
+        if (m_openMinIdx == -1 || key < m_openMin) {
+            m_openMin = key;
+            m_openMinIdx = idx;
+        }
+        if (m_openMaxIdx == -1 || key > m_openMax) {
+            m_openMax = key;
+            m_openMaxIdx = idx;
+        }
+    }
+
+    /**
+     * Adds length entries written to the open block, starting at raw index
+     * idx.
+     */
+    public void add(int idx, long[] values, int offset, int length) {
+        for (int i = 0; i < length; ++i) {
+            add(idx + i, values[offset + i]);
+        }
+    }
+
+    /**
+     * @see #add(int, long[], int, int)
+     */
+    public void add(int idx, float[] values, int offset, int length) {
+        for (int i = 0; i < length; ++i) {
+            add(idx + i, floatKey(values[offset + i]));
+        }
+    }
+
+    /**
+     * Stores the extremes of the completely written open block.
+     *
+     * @param block
+     * @param values The entries of the block.
+     */
+    public void seal(int block, long[] values) {
+        final int len = blockLength(block);
+
+        long lo = values[0], hi = lo;
+        int loIdx = 0, hiIdx = 0;
+        for (int i = 1; i < len; ++i) {
+            if (values[i] < lo) {
+                lo = values[i];
+                loIdx = i;
+            } else if (values[i] > hi) {
+                hi = values[i];
+                hiIdx = i;
+            }
+        }
+
+        blockMin[block] = lo;
+        blockMax[block] = hi;
+        blockMinIdx[block] = (block << m_blockShift) + loIdx;
+        blockMaxIdx[block] = (block << m_blockShift) + hiIdx;
+        sealed[block] = true;
+
+        m_open = -1;
+        m_oldValid = false;
+
+        if (m_minBlocks != null) {
+            m_minBlocks.push(blockMin, block);
+            m_maxBlocks.push(blockMax, block);
+        }
+    }
+
+    /**
+     * @see #seal(int, long[])
+     */
+    public void seal(int block, float[] values) {
+        seal(block, toKeys(values, blockLength(block)));
+    }
+
+    private long[] toKeys(float[] values, int len) {
+        for (int i = 0; i < len; ++i) {
+            m_keys[i] = floatKey(values[i]);
+        }
+        return m_keys;
+    }
+
+    /**
+     * Finds the extremes of the ring by visiting every sealed block, and
+     * rebuilds the sliding windows if they are enabled.
+     *
+     * @param head raw index of the newest entry, -1 if there is none
+     * @param full whether the ring is completely filled
+     */
+    public void find(int head, boolean full) {
+        if (m_minBlocks != null) {
+            // rebuild the block windows in logical order
+            m_minBlocks.clear();
+            m_maxBlocks.clear();
+
+            final int headBlock = head < 0 ? 0 : head >> m_blockShift;
+            for (int i = 1; i <= m_blockNum; ++i) {
+                tBlock = (headBlock + i) % m_blockNum;
+                if (sealed[tBlock]) {
+                    m_minBlocks.push(blockMin, tBlock);
+                    m_maxBlocks.push(blockMax, tBlock);
+                }
+            }
+
+            read(head, full);
+            return;
+        }
+
+        min = Long.MAX_VALUE;
+        minIdx = -1;
+        max = Long.MIN_VALUE;
+        maxIdx = -1;
+
+        for (tBlock = 0; tBlock < m_blockNum; ++tBlock) {
+            if (!sealed[tBlock])
+                continue;
+
+            if (blockMin[tBlock] < min) {
+                min = blockMin[tBlock];
+                minIdx = blockMinIdx[tBlock];
+            }
+            if (blockMax[tBlock] > max) {
+                max = blockMax[tBlock];
+                maxIdx = blockMaxIdx[tBlock];
+            }
+        }
+
+        addOpen(head, full);
+    }
+
+    /**
+     * Combines the extremes of the sliding windows and the open block, only
+     * if sliding windows are enabled.
+     *
+     * @see #find(int, boolean)
+     */
+    public void read(int head, boolean full) {
+        min = Long.MAX_VALUE;
+        minIdx = -1;
+        max = Long.MIN_VALUE;
+        maxIdx = -1;
+
+        tBlock = m_minBlocks.minIdx();
+        if (tBlock != -1) {
+            min = blockMin[tBlock];
+            minIdx = blockMinIdx[tBlock];
+        }
+        tBlock = m_maxBlocks.maxIdx();
+        if (tBlock != -1) {
+            max = blockMax[tBlock];
+            maxIdx = blockMaxIdx[tBlock];
+        }
+
+        addOpen(head, full);
+    }
+
+    /**
+     * Includes the entries of the open block, both the new ones and those of
+     * the previous round after head.
+     */
+    private void addOpen(int head, boolean full) {
+        if (m_open == -1)
+            return;
+
+        if (m_openMinIdx != -1 && m_openMin < min) {
+            min = m_openMin;
+            minIdx = m_openMinIdx;
+        }
+        if (m_openMaxIdx != -1 && m_openMax > max) {
+            max = m_openMax;
+            maxIdx = m_openMaxIdx;
+        }
+
+        // the old entries are only valid in a completely filled ring
+        final int off = (head & (m_blockSize - 1)) + 1;
+        if (m_oldValid && full && off < blockLength(m_open)) {
+            if (m_oldMin[off] < min) {
+                min = m_oldMin[off];
+                minIdx = m_oldMinIdx[off];
+            }
+            if (m_oldMax[off] > max) {
+                max = m_oldMax[off];
+                maxIdx = m_oldMaxIdx[off];
+            }
+        }
+    }
+}
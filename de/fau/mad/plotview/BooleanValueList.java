@@ -17,10 +17,12 @@
 package de.fau.mad.plotview;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
 
 import junit.framework.Assert;
 
@@ -69,6 +71,39 @@ public class BooleanValueList extends CircularValueList implements List<Boolean>
         return head;
     }
 
+    /**
+     * Adds count entries with the same value to the ring, possibly overwriting
+     * the eldest entries.
+     *
+     * @param newValue the value to add
+     * @param count    number of entries to add
+     * @return new head position
+     */
+    public int addRepeated(boolean newValue, int count) {
+        if (count <= 0)
+            return head;
+        if (count >= sizeMax) {
+            // keep head in sync with the other lists of a plot
+            head = (head + count - sizeMax) % sizeMax;
+            count = sizeMax;
+            num = 0;
+            tail = 0;
+        }
+
+        int first = head + 1;
+        if (first == sizeMax)
+            first = 0;
+
+        int segment = Math.min(count, sizeMax - first);
+        Arrays.fill(values, first, first + segment, newValue);
+        if (segment < count)
+            Arrays.fill(values, 0, count - segment, newValue);
+
+        advance(count);
+
+        return head;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -130,6 +165,108 @@ public class BooleanValueList extends CircularValueList implements List<Boolean>
         return values[head];
     }
 
+    /**
+     * Receives the entries of forEachBoolean() without boxing.
+     */
+    public interface BooleanVisitor {
+        public void visit(boolean value);
+    }
+
+    /**
+     * Reads a range of the ring in logical order without boxing. The range
+     * is walked as at most two contiguous segments of the values array, so
+     * nextBoolean() only compares the position with the end of the current
+     * segment. A cursor can be reused with seek(), it is only valid as long
+     * as no entries are added.
+     */
+    public class Cursor {
+        private boolean[] m_segment = null;
+        private int m_pos = 0, m_end = 0;
+
+        /**
+         * Raw index of the next segment and entries after the current one.
+         */
+        private int m_next = 0, m_remaining = 0;
+
+        /**
+         * Moves the cursor to the ring index rIdx.
+         *
+         * @param rIdx  negative or positive index in the ring
+         * @param count number of entries to read, at most num
+         * @return this
+         */
+        public Cursor seek(int rIdx, int count) {
+            m_next = normIdx(rIdx);
+            m_remaining = count;
+            m_pos = m_end = 0;
+            return this;
+        }
+
+        public boolean hasNext() {
+            return m_pos < m_end || m_remaining > 0;
+        }
+
+        /**
+         * @return The entry at the cursor, then moves to the next one. Check
+         * hasNext() first.
+         */
+        public boolean nextBoolean() {
+            if (m_pos == m_end)
+                nextSegment();
+            return m_segment[m_pos++];
+        }
+
+        private void nextSegment() {
+            final int len = Math.min(m_remaining, sizeMax - m_next);
+            m_segment = values;
+            m_pos = m_next;
+            m_end = m_pos + len;
+            m_remaining -= len;
+            m_next += len;
+            if (m_next == sizeMax)
+                m_next = 0;
+        }
+    }
+
+    /**
+     * @return A new cursor over all entries, from tail to head.
+     */
+    public Cursor cursor() {
+        return new Cursor().seek(tail, num);
+    }
+
+    /**
+     * Passes all entries to visitor, from tail to head.
+     *
+     * @param visitor
+     */
+    public void forEachBoolean(BooleanVisitor visitor) {
+        forEachBoolean(tail, num, visitor);
+    }
+
+    /**
+     * Passes count entries starting at the ring index rIdx to visitor, in
+     * logical order.
+     *
+     * @param rIdx     negative or positive index in the ring
+     * @param count    number of entries, at most num
+     * @param visitor
+     */
+    public void forEachBoolean(int rIdx, int count, BooleanVisitor visitor) {
+        int from = normIdx(rIdx), len, i;
+        while (count > 0) {
+            len = Math.min(count, sizeMax - from);
+            for (i = from; i < from + len; ++i) {
+                visitor.visit(values[i]);
+            }
+
+            count -= len;
+            from += len;
+            if (from == sizeMax)
+                from = 0;
+        }
+    }
+
     /**
      * Returns the value at position rIdx. It has the same effect as calling
      * this.value[normIdx(rIdx)].
@@ -218,7 +355,22 @@ public class BooleanValueList extends CircularValueList implements List<Boolean>
      * @see java.util.List#iterator()
      */
     public Iterator<Boolean> iterator() {
-        throw new UnsupportedOperationException();
+        final Cursor cursor = cursor();
+        return new Iterator<Boolean>() {
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            public Boolean next() {
+                if (!cursor.hasNext())
+                    throw new NoSuchElementException();
+                return cursor.nextBoolean();
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
     /*
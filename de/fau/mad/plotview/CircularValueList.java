@@ -24,6 +24,9 @@ package de.fau.mad.plotview;
  * It is an enforced policy of this implementation to never do any
  * reallocations. The number of items given in the constructor will be the
  * absolute maximum of items the list may hold during its entire lifetime.
+ * <p>
+ * If that number is a power of two, index normalization of the filled ring
+ * reduces to a bit mask, @see #powerOfTwo(int)
  *
  * @author Stefan Gradl
  */
@@ -73,6 +76,12 @@ public abstract class CircularValueList {
      */
     public int EOR = -1;
 
+    /**
+     * sizeMax - 1 if sizeMax is a power of two, otherwise -1. Once the ring
+     * is filled, (rIdx &amp; mask) is the normalized index of any rIdx.
+     */
+    public int mask = -1;
+
     /**
      * index of the entry most recently added
      */
@@ -101,6 +110,12 @@ public abstract class CircularValueList {
      */
     public boolean maintainSum = false;
 
+    /**
+     * Sliding window min/max tracker. Only allocated if requested via
+     * setSlidingMinMax(), otherwise min/max are maintained by rescanning.
+     */
+    protected SlidingMinMax extremes = null;
+
     @SuppressWarnings("unused")
     private CircularValueList() {
     }
@@ -119,6 +134,7 @@ public abstract class CircularValueList {
             sizeMax = cacheSize;
 
         EOR = sizeMax - 1;
+        mask = (sizeMax & EOR) == 0 ? EOR : -1;
 
         this.maintainMinMax = maintainMinMax;
         this.maintainSum = maintainSum;
@@ -159,6 +175,38 @@ public abstract class CircularValueList {
         num = 0;
         minIdx = -1;
         maxIdx = -1;
+
+        if (extremes != null)
+            extremes.clear();
+    }
+
+    /**
+     * Enables or disables exact min/max maintenance using a monotonic sliding
+     * window deque. Each add() then costs O(1) amortized instead of a full
+     * rescan whenever the previous min or max entry is overwritten. Requires
+     * two additional int arrays of sizeMax entries.
+     * <p>
+     * Enabling implies maintainMinMax.
+     *
+     * @param enable
+     */
+    public void setSlidingMinMax(boolean enable) {
+        if (enable) {
+            if (extremes == null)
+                extremes = new SlidingMinMax(sizeMax);
+            maintainMinMax = true;
+            findMinMax();
+        } else {
+            extremes = null;
+        }
+    }
+
+    /**
+     * @return Whether sliding window min/max was enabled, @see
+     * #setSlidingMinMax(boolean)
+     */
+    public boolean isSlidingMinMax() {
+        return extremes != null;
     }
 
     /**
@@ -171,6 +219,10 @@ public abstract class CircularValueList {
      * elements
      */
     public int normIdx(int rIdx) {
+        // filled power of two ring: every int maps to a valid index
+        if (mask >= 0 && num > mask)
+            return rIdx & mask;
+
         if (num == 0)
             return 0;
 
@@ -189,17 +241,73 @@ public abstract class CircularValueList {
         return rIdx;
     }
 
+    /**
+     * Moves head, tail and num forward after length new entries have been
+     * written to the ring, starting at the old head + 1. length must not
+     * exceed sizeMax.
+     *
+     * @param length number of entries that were written
+     */
+    protected void advance(int length) {
+        head += length;
+        if (head >= sizeMax)
+            head -= sizeMax;
+
+        num += length;
+        if (num >= sizeMax) {
+            // buffer is entirely filled, tail follows head
+            num = sizeMax;
+            tail = head + 1;
+            if (tail == sizeMax)
+                tail = 0;
+        }
+    }
+
+    /**
+     * Returns how many valid entries will be overwritten if length new
+     * entries are added. These are always the oldest entries, starting at
+     * tail.
+     *
+     * @param length number of entries to add, at most sizeMax
+     * @return count of entries that will be overwritten
+     */
+    protected int overwriteCount(int length) {
+        if (num + length > sizeMax)
+            return num + length - sizeMax;
+        return 0;
+    }
+
     /**
      * @param rIdx
      * @return The distance to tail.
      */
     public int tailDistance(int rIdx) {
+        if (mask >= 0 && num > mask)
+            return (rIdx - tail) & mask;
+
         if (rIdx >= tail)
             return rIdx - tail;
 
         return num - tail + rIdx;
     }
 
+    /**
+     * Rounds a capacity up to the next power of two. Rings created with such
+     * a capacity normalize indices with a bit mask instead of comparisons and
+     * a modulo, at the cost of up to twice the requested memory.
+     *
+     * @param capacity requested number of entries, &gt; 0
+     * @return The smallest power of two &gt;= capacity.
+     */
+    public static int powerOfTwo(int capacity) {
+        if (capacity <= 1)
+            return 1;
+        if (capacity > 1 << 30)
+            throw new IllegalArgumentException("Capacity too large: " + capacity);
+
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+
     /**
      * @return Count of used entries.
      */
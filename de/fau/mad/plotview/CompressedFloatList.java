@@ -0,0 +1,715 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * FloatValueList that keeps only its most recent entries as raw floats and
+ * compresses the older ones.
+ * <p>
+ * The raw index range is divided into blocks of BLOCK_SIZE entries. The
+ * block head writes to and the blocks before it, hotSize entries in total,
+ * are the hot tier and stay in float arrays. A block leaving the hot tier is
+ * XOR encoded like in Gorilla: every value is stored as the XOR of its bits
+ * with the previous value, '0' if equal, otherwise '10' + the meaningful bits
+ * if they fit in the previous window, or '11' + 5 bits leading zeros + 5 bits
+ * length + the meaningful bits. Slowly changing signals share most of their
+ * sign, exponent and high mantissa bits, so they need well below 32 bits per
+ * value.
+ * <p>
+ * When a block is complete, its min, max, sum and sum of squares are kept
+ * as summary. findRangeMinMax() and calculateStats() use the summaries of all
+ * whole blocks of a range and only read the entries of the partial blocks at
+ * its borders, so zoomed out views never decompress the cold tier. Single
+ * entries of cold blocks are decoded through a small block cache.
+ */
+public class CompressedFloatList extends FloatValueList {
+    public static final int BLOCK_SHIFT = 7;
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /**
+     * Default number of entries kept raw.
+     */
+    public static final int DEFAULT_HOT_SIZE = 8 * BLOCK_SIZE;
+
+    /**
+     * Number of decoded cold blocks kept, a power of two.
+     */
+    private static final int CACHE_SIZE = 4;
+
+    private final int m_blockNum;
+
+    /**
+     * Cold tier, the encoded blocks. Only up to date if m_encoded is set.
+     */
+    private final long[][] m_blockWords;
+    private final boolean[] m_encoded;
+
+    /**
+     * Block summaries, only valid if the block is sealed in m_extremes.
+     * Sliding windows over the blocks only with maintainMinMax.
+     */
+    private final BlockExtremes m_extremes;
+    private final double[] m_blockSum;
+    private final double[] m_blockSumSq;
+
+    /**
+     * Hot tier, m_hotSlot[block] is the slot holding the block or -1. Slots
+     * are reused in the order they were assigned.
+     */
+    private final float[][] m_hot;
+    private final int[] m_hotBlock;
+    private final int[] m_hotSlot;
+    private int m_nextSlot = 0;
+
+    /**
+     * The block head is in, -1 if head is at the end of a block. Entries
+     * after head still hold the values of the previous round.
+     */
+    private int m_open = -1;
+    private float[] m_openValues = null;
+
+    private final float[][] m_cache = new float[CACHE_SIZE][BLOCK_SIZE];
+    private final int[] m_cacheTag = new int[CACHE_SIZE];
+
+    private final BitStream m_stream = new BitStream(BLOCK_SIZE * 44 + 32);
+
+    /**
+     * Index settings that have no effect here, kept for the conversion back
+     * to a FloatValueList.
+     */
+    private boolean m_pyramid = false, m_prefixSums = false, m_sliding = false;
+
+    /**
+     * TRANSIENT variables
+     */
+    private transient int tBlock, tOff, tLen;
+
+    /**
+     * @param cacheSize      Number of entries.
+     * @param maintainMinMax Whether to maintain the min and max values.
+     * @param maintainSum    Whether to maintain the sum.
+     * @param hotSize        Number of recent entries to keep uncompressed,
+     *                       rounded up to whole blocks.
+     */
+    public CompressedFloatList(int cacheSize, boolean maintainMinMax, boolean maintainSum, int hotSize) {
+        super(cacheSize, maintainMinMax, maintainSum, false);
+
+        m_blockNum = ((sizeMax - 1) >> BLOCK_SHIFT) + 1;
+        m_blockWords = new long[m_blockNum][];
+        m_encoded = new boolean[m_blockNum];
+        m_extremes = new BlockExtremes(sizeMax, BLOCK_SHIFT);
+        m_extremes.setSliding(maintainMinMax);
+        m_blockSum = new double[m_blockNum];
+        m_blockSumSq = new double[m_blockNum];
+
+        int hotBlocks = Math.max(1, ((hotSize - 1) >> BLOCK_SHIFT) + 1);
+        hotBlocks = Math.min(hotBlocks, m_blockNum);
+        m_hot = new float[hotBlocks][BLOCK_SIZE];
+        m_hotBlock = new int[hotBlocks];
+        Arrays.fill(m_hotBlock, -1);
+        m_hotSlot = new int[m_blockNum];
+        Arrays.fill(m_hotSlot, -1);
+        Arrays.fill(m_cacheTag, -1);
+    }
+
+    /**
+     * @param cacheSize      Number of entries.
+     * @param maintainMinMax Whether to maintain the min and max values.
+     */
+    public CompressedFloatList(int cacheSize, boolean maintainMinMax) {
+        this(cacheSize, maintainMinMax, false, DEFAULT_HOT_SIZE);
+    }
+
+    /**
+     * Creates a compressed copy of source with the same raw layout, so it
+     * stays in sync with the other rings of source's plot.
+     *
+     * @param source
+     * @param hotSize Number of recent entries to keep uncompressed.
+     */
+    public CompressedFloatList(FloatValueList source, int hotSize) {
+        this(source.sizeMax, source.maintainMinMax, source.maintainSum, hotSize);
+
+        if (source.num == 0)
+            return;
+
+        if (source.num == sizeMax) {
+            // start at the beginning of the tail's block, so every block is
+            // completely written. The entries in front of tail are the
+            // newest ones and get written again at the end.
+            int first = source.tail & ~BLOCK_MASK;
+            head = first - 1;
+            for (int i = first; i < source.tail; ++i) {
+                add(source.getRaw(i));
+            }
+        }
+
+        for (int i = 0; i < source.num; ++i) {
+            add(source.getIndirect(source.tail + i));
+        }
+    }
+
+    private int blockLength(int block) {
+        return Math.min(BLOCK_SIZE, sizeMax - (block << BLOCK_SHIFT));
+    }
+
+    /**
+     * @return Approximate heap usage in bytes, for comparison with the 4 *
+     * sizeMax bytes of a FloatValueList.
+     */
+    public long getMemoryUsage() {
+        long bytes = (long) m_blockNum * (4 * 4 + 2 * 8 + 4 * 4 + 2 + 16);
+        for (int block = 0; block < m_blockNum; ++block) {
+            if (m_blockWords[block] != null)
+                bytes += m_blockWords[block].length * 8;
+        }
+        return bytes + (long) (m_hot.length + CACHE_SIZE + 4) * BLOCK_SIZE * 4 + m_stream.words.length * 8;
+    }
+
+    /**
+     * Adds a new entry to the ring, possibly overwriting the eldest entry.
+     *
+     * @param newValue The value to add to the list.
+     * @return new head position
+     */
+    @Override
+    public int add(float newValue) {
+        ++head;
+        if (head == sizeMax)
+            head = 0;
+
+        tBlock = head >> BLOCK_SHIFT;
+        if (tBlock != m_open)
+            openBlock(tBlock);
+
+        tOff = head & BLOCK_MASK;
+        if (maintainSum) {
+            // subtract the value that gets overwritten
+            if (num == sizeMax)
+                sum -= m_openValues[tOff];
+            sum += newValue;
+        }
+
+        m_openValues[tOff] = newValue;
+        m_extremes.add(head, BlockExtremes.floatKey(newValue));
+
+        if (num < sizeMax)
+            ++num;
+        else {
+            // if buffer is entirely filled, tail increases with head
+            ++tail;
+            if (tail == sizeMax)
+                tail = 0;
+        }
+
+        if (tOff == blockLength(tBlock) - 1)
+            completeBlock(tBlock);
+
+        if (m_extremes.isSliding())
+            readExtremes();
+
+        return head;
+    }
+
+    /**
+     * Copies the new entries into the open block a block at a time and
+     * summarizes every block that gets completed.
+     *
+     * @see de.fau.mad.plotview.FloatValueList#add(float[], int, int)
+     */
+    @Override
+    public int add(float[] newValues, int offset, int length) {
+        if (length <= 0)
+            return head;
+
+        // whole rounds that get overwritten within this call leave head
+        // where it is, skip them
+        if (length > sizeMax) {
+            tLen = (length / sizeMax - 1) * sizeMax;
+            offset += tLen;
+            length -= tLen;
+        }
+
+        while (length > 0) {
+            ++head;
+            if (head == sizeMax)
+                head = 0;
+
+            tBlock = head >> BLOCK_SHIFT;
+            if (tBlock != m_open)
+                openBlock(tBlock);
+
+            tOff = head & BLOCK_MASK;
+            tLen = Math.min(length, blockLength(tBlock) - tOff);
+            if (maintainSum) {
+                for (int i = 0; i < tLen; ++i) {
+                    // subtract the values that get overwritten
+                    if (num + i >= sizeMax)
+                        sum -= m_openValues[tOff + i];
+                    sum += newValues[offset + i];
+                }
+            }
+            System.arraycopy(newValues, offset, m_openValues, tOff, tLen);
+            m_extremes.add(head, newValues, offset, tLen);
+            head += tLen - 1;
+
+            if (num + tLen <= sizeMax)
+                num += tLen;
+            else {
+                // tail increases with head once the buffer is filled
+                tail = (tail + num + tLen - sizeMax) % sizeMax;
+                num = sizeMax;
+            }
+
+            if (tOff + tLen == blockLength(tBlock))
+                completeBlock(tBlock);
+
+            offset += tLen;
+            length -= tLen;
+        }
+
+        if (m_extremes.isSliding())
+            readExtremes();
+
+        return head;
+    }
+
+    /**
+     * Makes block the one head writes to. It gets a hot slot, possibly
+     * pushing the eldest hot block into the cold tier. Its previous entries
+     * stay valid until head overwrites them.
+     */
+    private void openBlock(int block) {
+        int slot = m_hotSlot[block];
+        if (slot == -1) {
+            slot = m_nextSlot;
+            if (++m_nextSlot == m_hot.length)
+                m_nextSlot = 0;
+
+            if (m_hotBlock[slot] != -1)
+                freeze(m_hotBlock[slot]);
+
+            if (m_encoded[block])
+                decode(block, m_hot[slot]);
+
+            m_hotBlock[slot] = block;
+            m_hotSlot[block] = slot;
+        }
+
+        m_open = block;
+        m_openValues = m_hot[slot];
+        m_encoded[block] = false;
+        m_extremes.open(block, m_openValues);
+    }
+
+    /**
+     * Stores the summary of the completely written open block.
+     */
+    private void completeBlock(int block) {
+        final int len = blockLength(block);
+
+        double s = 0, sq = 0;
+        for (int i = 0; i < len; ++i) {
+            s += m_openValues[i];
+            sq += (double) m_openValues[i] * m_openValues[i];
+        }
+        m_blockSum[block] = s;
+        m_blockSumSq[block] = sq;
+
+        m_extremes.seal(block, m_openValues);
+        m_open = -1;
+    }
+
+    /**
+     * Moves a hot block into the cold tier.
+     */
+    private void freeze(int block) {
+        final float[] src = m_hot[m_hotSlot[block]];
+        m_hotSlot[block] = -1;
+
+        // a block that was never completed only holds entries of a cleared
+        // ring
+        if (!m_extremes.sealed[block])
+            return;
+
+        final int len = blockLength(block);
+        m_stream.reset();
+
+        int prev = Float.floatToRawIntBits(src[0]), bits, xor, lead, trail, meaningful;
+        int prevLead = -1, prevTrail = 0;
+        m_stream.write(prev, 32);
+        for (int i = 1; i < len; ++i) {
+            bits = Float.floatToRawIntBits(src[i]);
+            xor = bits ^ prev;
+            prev = bits;
+
+            if (xor == 0) {
+                m_stream.write(0, 1);
+                continue;
+            }
+
+            lead = Integer.numberOfLeadingZeros(xor);
+            trail = Integer.numberOfTrailingZeros(xor);
+            if (prevLead != -1 && lead >= prevLead && trail >= prevTrail) {
+                // fits in the previous window
+                m_stream.write(2, 2);
+                m_stream.write(xor >>> prevTrail, 32 - prevLead - prevTrail);
+            } else {
+                meaningful = 32 - lead - trail;
+                m_stream.write(3, 2);
+                m_stream.write(lead, 5);
+                m_stream.write(meaningful - 1, 5);
+                m_stream.write(xor >>> trail, meaningful);
+                prevLead = lead;
+                prevTrail = trail;
+            }
+        }
+
+        final int words = m_stream.wordCount();
+        long[] dst = m_blockWords[block];
+        // reuse the old array unless it's much too large
+        if (dst == null || dst.length < words || dst.length > words << 1)
+            dst = m_blockWords[block] = new long[words];
+        System.arraycopy(m_stream.words, 0, dst, 0, words);
+        m_encoded[block] = true;
+
+        if (m_cacheTag[block & (CACHE_SIZE - 1)] == block)
+            m_cacheTag[block & (CACHE_SIZE - 1)] = -1;
+    }
+
+    /**
+     * Decodes a cold block into dst.
+     */
+    private void decode(int block, float[] dst) {
+        final int len = blockLength(block);
+        final long[] words = m_blockWords[block];
+
+        int pos = 0, lead = 0, trail = 0, meaningful;
+        int bits = (int) BitStream.read(words, pos, 32);
+        pos += 32;
+        dst[0] = Float.intBitsToFloat(bits);
+        for (int i = 1; i < len; ++i) {
+            if (BitStream.read(words, pos++, 1) != 0) {
+                if (BitStream.read(words, pos++, 1) != 0) {
+                    lead = (int) BitStream.read(words, pos, 5);
+                    meaningful = (int) BitStream.read(words, pos + 5, 5) + 1;
+                    pos += 10;
+                    trail = 32 - lead - meaningful;
+                }
+                meaningful = 32 - lead - trail;
+                bits ^= (int) BitStream.read(words, pos, meaningful) << trail;
+                pos += meaningful;
+            }
+            dst[i] = Float.intBitsToFloat(bits);
+        }
+    }
+
+    /**
+     * @return The array holding the entries of block, from the hot tier or
+     * the cache of decoded cold blocks. Like all read paths it uses no
+     * transient variables, add() relies on them while a reader may call this.
+     */
+    private float[] blockValues(int block) {
+        int slot = m_hotSlot[block];
+        if (slot != -1)
+            return m_hot[slot];
+
+        slot = block & (CACHE_SIZE - 1);
+        if (m_cacheTag[slot] != block) {
+            if (m_encoded[block])
+                decode(block, m_cache[slot]);
+            else
+                Arrays.fill(m_cache[slot], 0f);
+            m_cacheTag[slot] = block;
+        }
+        return m_cache[slot];
+    }
+
+    /**
+     * @param idx raw index
+     * @return The value at the raw index.
+     */
+    @Override
+    public float getRaw(int idx) {
+        final int slot = m_hotSlot[idx >> BLOCK_SHIFT];
+        if (slot != -1)
+            return m_hot[slot][idx & BLOCK_MASK];
+        return blockValues(idx >> BLOCK_SHIFT)[idx & BLOCK_MASK];
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.FloatValueList#copyRaw(int, float[], int, int)
+     */
+    @Override
+    public void copyRaw(int from, float[] dst, int dstOffset, int length) {
+        int block, off, n;
+        while (length > 0) {
+            block = from >> BLOCK_SHIFT;
+            off = from & BLOCK_MASK;
+            n = Math.min(length, blockLength(block) - off);
+            System.arraycopy(blockValues(block), off, dst, dstOffset, n);
+
+            from += n;
+            dstOffset += n;
+            length -= n;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.FloatValueList#getHeadValue()
+     */
+    @Override
+    public float getHeadValue() {
+        if (head < 0)
+            return 0f;
+        return getRaw(head);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.FloatValueList#getIndirect(int)
+     */
+    @Override
+    public float getIndirect(int rIdx) {
+        // no elements
+        if (num == 0)
+            return -1f;
+
+        return getRaw(normIdx(rIdx));
+    }
+
+    /**
+     * Whole blocks are handled by their summaries.
+     */
+    @Override
+    public int getRangeBlockSize() {
+        return BLOCK_SIZE;
+    }
+
+    /**
+     * Uses the summaries of all complete blocks within the range and reads
+     * only the entries of the blocks at its borders.
+     */
+    @Override
+    public void findRangeMinMax(int from, int to, float[] result) {
+        result[0] = Float.POSITIVE_INFINITY;
+        result[1] = Float.NEGATIVE_INFINITY;
+
+        int block, off, end;
+        float value;
+        float[] blockValues;
+        while (from <= to) {
+            block = from >> BLOCK_SHIFT;
+            off = from & BLOCK_MASK;
+            end = Math.min(blockLength(block) - 1, to - (block << BLOCK_SHIFT));
+
+            if (off == 0 && end == blockLength(block) - 1 && m_extremes.sealed[block]) {
+                value = BlockExtremes.keyFloat(m_extremes.blockMin[block]);
+                if (value < result[0])
+                    result[0] = value;
+                value = BlockExtremes.keyFloat(m_extremes.blockMax[block]);
+                if (value > result[1])
+                    result[1] = value;
+            } else {
+                blockValues = blockValues(block);
+                for (; off <= end; ++off) {
+                    if (blockValues[off] < result[0])
+                        result[0] = blockValues[off];
+                    if (blockValues[off] > result[1])
+                        result[1] = blockValues[off];
+                }
+            }
+
+            from = (block << BLOCK_SHIFT) + end + 1;
+        }
+    }
+
+    /**
+     * Sums the raw index range [from, to] using the sums of all complete
+     * blocks within the range.
+     */
+    @Override
+    protected void sumRange(int from, int to) {
+        tSum = tSumSq = 0;
+        int block, off, end;
+        float[] blockValues;
+        while (from <= to) {
+            block = from >> BLOCK_SHIFT;
+            off = from & BLOCK_MASK;
+            end = Math.min(blockLength(block) - 1, to - (block << BLOCK_SHIFT));
+
+            if (off == 0 && end == blockLength(block) - 1 && m_extremes.sealed[block]) {
+                tSum += m_blockSum[block];
+                tSumSq += m_blockSumSq[block];
+            } else {
+                blockValues = blockValues(block);
+                for (; off <= end; ++off) {
+                    tSum += blockValues[off];
+                    tSumSq += (double) blockValues[off] * blockValues[off];
+                }
+            }
+
+            from = (block << BLOCK_SHIFT) + end + 1;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.FloatValueList#clear()
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        m_extremes.clear();
+        Arrays.fill(m_encoded, false);
+        Arrays.fill(m_cacheTag, -1);
+        m_open = -1;
+    }
+
+    /**
+     * Adds the contents of sourceList as new entries.
+     *
+     * @param sourceList
+     */
+    @Override
+    public void copy(ArrayList<? extends Number> sourceList) {
+        clear();
+        for (Number n : sourceList) {
+            add(n.floatValue());
+        }
+    }
+
+    /**
+     * Adds the contents of sourceList as new entries.
+     *
+     * @param sourceList
+     */
+    @Override
+    public void copy(FloatValueList sourceList) {
+        clear();
+        for (int i = 0; i < sourceList.num; ++i) {
+            add(sourceList.getIndirect(sourceList.tail + i));
+        }
+    }
+
+    /**
+     * The block summaries already index the ring, no pyramid is needed.
+     */
+    @Override
+    public void setMinMaxPyramid(boolean enable) {
+        m_pyramid = enable;
+    }
+
+    @Override
+    public boolean hasMinMaxPyramid() {
+        return m_pyramid;
+    }
+
+    /**
+     * calculateStats() already uses the block sums, running sums over the
+     * entries are not kept.
+     */
+    @Override
+    public void setPrefixSums(boolean enable) {
+        m_prefixSums = enable;
+    }
+
+    @Override
+    public boolean hasPrefixSums() {
+        return m_prefixSums;
+    }
+
+    /**
+     * Extremes are always maintained per block, no sliding window over the
+     * entries is needed.
+     */
+    @Override
+    public void setSlidingMinMax(boolean enable) {
+        m_sliding = enable;
+        if (enable) {
+            maintainMinMax = true;
+            m_extremes.setSliding(true);
+            findMinMax();
+        }
+    }
+
+    @Override
+    public boolean isSlidingMinMax() {
+        return m_sliding;
+    }
+
+    @Override
+    public void findMax() {
+        findMinMax();
+    }
+
+    @Override
+    public void findMin() {
+        findMinMax();
+    }
+
+    /**
+     * Visits the summary of every complete block instead of every entry.
+     */
+    @Override
+    public void findMinMax() {
+        m_extremes.find(head, num == sizeMax);
+        copyExtremes();
+    }
+
+    /**
+     * Combines the extremes of the block windows and the open block.
+     */
+    private void readExtremes() {
+        m_extremes.read(head, num == sizeMax);
+        copyExtremes();
+    }
+
+    private void copyExtremes() {
+        minIdx = m_extremes.minIdx;
+        minValue = minIdx == -1 ? Float.MAX_VALUE : BlockExtremes.keyFloat(m_extremes.min);
+        maxIdx = m_extremes.maxIdx;
+        maxValue = maxIdx == -1 ? -Float.MAX_VALUE : BlockExtremes.keyFloat(m_extremes.max);
+        rangeMinMax = maxValue - minValue;
+    }
+
+    /**
+     * Entries can't be changed.
+     */
+    @Override
+    public void add(int location, Float object) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Entries can't be changed.
+     */
+    @Override
+    public Float set(int location, Float object) {
+        throw new UnsupportedOperationException();
+    }
+}
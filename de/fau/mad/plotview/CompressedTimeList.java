@@ -0,0 +1,521 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * LongValueList for timestamps that stores its entries delta-of-delta encoded
+ * instead of in a long[].
+ * <p>
+ * The raw index range is divided into blocks of BLOCK_SIZE entries. The block
+ * head is written to is kept decoded; once it is full it gets encoded into a
+ * bit stream: the first value is stored as is, every following entry as the
+ * change of its delta to the previous one, using
+ * <ul>
+ * <li>'0' for an unchanged delta</li>
+ * <li>'10' + 7 bits, '110' + 9 bits or '1110' + 12 bits for small changes</li>
+ * <li>'1111' + 64 bits otherwise</li>
+ * </ul>
+ * Timestamps of a steady signal need one bit each, a jittering clock about
+ * 9 bits, compared to 64 bits in a LongValueList.
+ * <p>
+ * Random access through getIndirect() decodes whole blocks into a small
+ * cache, sequential access should use a Cursor. The min/max of every block
+ * are kept when it is encoded, so findMinMax() only has to visit blocks, and
+ * with maintainMinMax each add() is O(1).
+ */
+public class CompressedTimeList extends LongValueList {
+    public static final int BLOCK_SHIFT = 7;
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /**
+     * Number of decoded blocks kept for getIndirect(), a power of two.
+     */
+    private static final int CACHE_SIZE = 4;
+
+    private final int m_blockNum;
+
+    /**
+     * Encoded blocks, null until a block was encoded the first time.
+     */
+    private final long[][] m_blockWords;
+    private final long[] m_blockFirst;
+
+    /**
+     * Extremes of the encoded blocks, a block is encoded if it's sealed
+     * there. Sliding windows over the blocks only with maintainMinMax.
+     */
+    private final BlockExtremes m_extremes;
+
+    /**
+     * The block head is in, decoded. Entries after head still hold the
+     * values of the previous round. -1 if head is at the end of a block.
+     */
+    private int m_open = -1;
+    private final long[] m_openValues = new long[BLOCK_SIZE];
+
+    private final long[][] m_cache = new long[CACHE_SIZE][BLOCK_SIZE];
+    private final int[] m_cacheTag = new int[CACHE_SIZE];
+
+    /**
+     * Encoder state
+     */
+    private final BitStream m_stream = new BitStream(BLOCK_SIZE * 68);
+
+    /**
+     * Kept for the conversion back to a LongValueList.
+     */
+    private boolean m_sliding = false;
+
+    /**
+     * TRANSIENT variables
+     */
+    private transient int tBlock, tOff, tLen;
+
+    /**
+     * @param cacheSize      Number of entries.
+     * @param maintainMinMax Whether to maintain the min and max values.
+     */
+    public CompressedTimeList(int cacheSize, boolean maintainMinMax) {
+        super(cacheSize, maintainMinMax, false);
+
+        m_blockNum = ((sizeMax - 1) >> BLOCK_SHIFT) + 1;
+        m_blockWords = new long[m_blockNum][];
+        m_blockFirst = new long[m_blockNum];
+        m_extremes = new BlockExtremes(sizeMax, BLOCK_SHIFT);
+        m_extremes.setSliding(maintainMinMax);
+        Arrays.fill(m_cacheTag, -1);
+    }
+
+    /**
+     * Creates a compressed copy of source with the same raw layout, so it
+     * stays in sync with the value rings of source's plot.
+     *
+     * @param source
+     */
+    public CompressedTimeList(LongValueList source) {
+        this(source.sizeMax, source.maintainMinMax);
+
+        if (source.num == 0)
+            return;
+
+        int first = 0;
+        if (source.num == sizeMax) {
+            // start at the beginning of the tail's block, so every block is
+            // completely written. The entries in front of tail are the
+            // newest ones and get written again at the end.
+            first = source.tail & ~BLOCK_MASK;
+            head = first - 1;
+            for (int i = first; i < source.tail; ++i) {
+                add(source.getRaw(i));
+            }
+        }
+
+        for (int i = 0; i < source.num; ++i) {
+            add(source.getIndirect(source.tail + i));
+        }
+    }
+
+    private int blockLength(int block) {
+        return Math.min(BLOCK_SIZE, sizeMax - (block << BLOCK_SHIFT));
+    }
+
+    /**
+     * @return Approximate heap usage in bytes, for comparison with the 8 *
+     * sizeMax bytes of a LongValueList.
+     */
+    public long getMemoryUsage() {
+        long bytes = (long) m_blockNum * (4 * 8 + 2 * 4 + 1 + 16);
+        for (int block = 0; block < m_blockNum; ++block) {
+            if (m_blockWords[block] != null)
+                bytes += m_blockWords[block].length * 8;
+        }
+        return bytes + (CACHE_SIZE + 3) * BLOCK_SIZE * 8 + m_stream.words.length * 8;
+    }
+
+    /**
+     * Adds a new entry to the ring, possibly overwriting the eldest entry.
+     *
+     * @param newValue The value to add to the list.
+     * @return new head position
+     */
+    @Override
+    public int add(long newValue) {
+        ++head;
+        if (head == sizeMax)
+            head = 0;
+
+        tBlock = head >> BLOCK_SHIFT;
+        if (tBlock != m_open)
+            openBlock(tBlock);
+
+        m_openValues[head & BLOCK_MASK] = newValue;
+        m_extremes.add(head, newValue);
+
+        if (num < sizeMax)
+            ++num;
+        else {
+            // if buffer is entirely filled, tail increases with head
+            ++tail;
+            if (tail == sizeMax)
+                tail = 0;
+        }
+
+        if ((head & BLOCK_MASK) == blockLength(tBlock) - 1)
+            sealBlock(tBlock);
+
+        if (m_extremes.isSliding())
+            readExtremes();
+
+        return head;
+    }
+
+    /**
+     * Copies the new entries into the open block a block at a time and
+     * encodes every block that gets completed.
+     *
+     * @see de.fau.mad.plotview.LongValueList#add(long[], int, int)
+     */
+    @Override
+    public int add(long[] newValues, int offset, int length) {
+        if (length <= 0)
+            return head;
+
+        // whole rounds that get overwritten within this call leave head
+        // where it is, skip them
+        if (length > sizeMax) {
+            tLen = (length / sizeMax - 1) * sizeMax;
+            offset += tLen;
+            length -= tLen;
+        }
+
+        while (length > 0) {
+            ++head;
+            if (head == sizeMax)
+                head = 0;
+
+            tBlock = head >> BLOCK_SHIFT;
+            if (tBlock != m_open)
+                openBlock(tBlock);
+
+            tOff = head & BLOCK_MASK;
+            tLen = Math.min(length, blockLength(tBlock) - tOff);
+            System.arraycopy(newValues, offset, m_openValues, tOff, tLen);
+            m_extremes.add(head, newValues, offset, tLen);
+            head += tLen - 1;
+
+            if (num + tLen <= sizeMax)
+                num += tLen;
+            else {
+                // tail increases with head once the buffer is filled
+                tail = (tail + num + tLen - sizeMax) % sizeMax;
+                num = sizeMax;
+            }
+
+            if (tOff + tLen == blockLength(tBlock))
+                sealBlock(tBlock);
+
+            offset += tLen;
+            length -= tLen;
+        }
+
+        if (m_extremes.isSliding())
+            readExtremes();
+
+        return head;
+    }
+
+    /**
+     * Makes block the one head writes to. Its previous entries are decoded,
+     * they stay valid until head overwrites them.
+     */
+    private void openBlock(int block) {
+        m_open = block;
+        if (m_extremes.sealed[block])
+            decode(block, m_openValues);
+        m_extremes.open(block, m_openValues);
+    }
+
+    /**
+     * Encodes the completely written open block.
+     */
+    private void sealBlock(int block) {
+        final int len = blockLength(block);
+
+        m_stream.reset();
+
+        long prev = m_openValues[0], prevDelta = 0, delta, dod;
+        for (int i = 1; i < len; ++i) {
+            delta = m_openValues[i] - prev;
+            dod = delta - prevDelta;
+
+            if (dod == 0)
+                m_stream.write(0, 1);
+            else if (dod >= -64 && dod < 64) {
+                m_stream.write(2, 2);
+                m_stream.write(dod, 7);
+            } else if (dod >= -256 && dod < 256) {
+                m_stream.write(6, 3);
+                m_stream.write(dod, 9);
+            } else if (dod >= -2048 && dod < 2048) {
+                m_stream.write(14, 4);
+                m_stream.write(dod, 12);
+            } else {
+                m_stream.write(15, 4);
+                m_stream.write(dod, 64);
+            }
+
+            prev = m_openValues[i];
+            prevDelta = delta;
+        }
+
+        final int words = m_stream.wordCount();
+        long[] dst = m_blockWords[block];
+        // reuse the old array unless it's much too large
+        if (dst == null || dst.length < words || dst.length > words << 1)
+            dst = m_blockWords[block] = new long[words];
+        System.arraycopy(m_stream.words, 0, dst, 0, words);
+
+        m_blockFirst[block] = m_openValues[0];
+
+        m_extremes.seal(block, m_openValues);
+
+        if (m_cacheTag[block & (CACHE_SIZE - 1)] == block)
+            m_cacheTag[block & (CACHE_SIZE - 1)] = -1;
+
+        m_open = -1;
+    }
+
+    /**
+     * Decodes an encoded block into dst.
+     */
+    private void decode(int block, long[] dst) {
+        final int len = blockLength(block);
+        final long[] words = m_blockWords[block];
+
+        long value = m_blockFirst[block], delta = 0, dod;
+        int pos = 0;
+        dst[0] = value;
+        for (int i = 1; i < len; ++i) {
+            if (BitStream.read(words, pos++, 1) == 0)
+                dod = 0;
+            else if (BitStream.read(words, pos++, 1) == 0) {
+                dod = BitStream.read(words, pos, 7) << 57 >> 57;
+                pos += 7;
+            } else if (BitStream.read(words, pos++, 1) == 0) {
+                dod = BitStream.read(words, pos, 9) << 55 >> 55;
+                pos += 9;
+            } else if (BitStream.read(words, pos++, 1) == 0) {
+                dod = BitStream.read(words, pos, 12) << 52 >> 52;
+                pos += 12;
+            } else {
+                dod = BitStream.read(words, pos, 64);
+                pos += 64;
+            }
+
+            delta += dod;
+            value += delta;
+            dst[i] = value;
+        }
+    }
+
+    /**
+     * Decodes a block into dst, or copies the open block.
+     */
+    private void load(int block, long[] dst) {
+        if (block == m_open)
+            System.arraycopy(m_openValues, 0, dst, 0, blockLength(block));
+        else if (m_extremes.sealed[block])
+            decode(block, dst);
+        else
+            Arrays.fill(dst, 0, blockLength(block), 0L);
+    }
+
+    /**
+     * @param idx raw index
+     * @return The value at the raw index.
+     */
+    @Override
+    public long getRaw(int idx) {
+        final int block = idx >> BLOCK_SHIFT;
+        if (block == m_open)
+            return m_openValues[idx & BLOCK_MASK];
+        return cached(block)[idx & BLOCK_MASK];
+    }
+
+    /**
+     * @return The cache entry holding the decoded block. Uses no transient
+     * variables, add() relies on them while a reader may call this.
+     */
+    private long[] cached(int block) {
+        final int slot = block & (CACHE_SIZE - 1);
+        if (m_cacheTag[slot] != block) {
+            load(block, m_cache[slot]);
+            m_cacheTag[slot] = block;
+        }
+        return m_cache[slot];
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.LongValueList#copyRaw(int, long[], int, int)
+     */
+    @Override
+    public void copyRaw(int from, long[] dst, int dstOffset, int length) {
+        int block, off, n;
+        while (length > 0) {
+            block = from >> BLOCK_SHIFT;
+            off = from & BLOCK_MASK;
+            n = Math.min(length, blockLength(block) - off);
+
+            if (block == m_open)
+                System.arraycopy(m_openValues, off, dst, dstOffset, n);
+            else
+                System.arraycopy(cached(block), off, dst, dstOffset, n);
+
+            from += n;
+            dstOffset += n;
+            length -= n;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.LongValueList#getHeadValue()
+     */
+    @Override
+    public long getHeadValue() {
+        if (head < 0)
+            return 0;
+        return getRaw(head);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.LongValueList#getIndirect(int)
+     */
+    @Override
+    public long getIndirect(int rIdx) {
+        // no elements
+        if (num == 0)
+            return -1;
+
+        return getRaw(normIdx(rIdx));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.LongValueList#clear()
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        m_extremes.clear();
+        Arrays.fill(m_cacheTag, -1);
+        m_open = -1;
+    }
+
+    /**
+     * Adds the contents of sourceList as new entries.
+     *
+     * @param sourceList
+     */
+    @Override
+    public void copy(ArrayList<Long> sourceList) {
+        clear();
+        for (Long l : sourceList) {
+            add(l.longValue());
+        }
+    }
+
+    /**
+     * Extremes are always maintained per block, no sliding window over the
+     * entries is needed.
+     */
+    @Override
+    public void setSlidingMinMax(boolean enable) {
+        m_sliding = enable;
+        if (enable) {
+            maintainMinMax = true;
+            m_extremes.setSliding(true);
+            findMinMax();
+        }
+    }
+
+    @Override
+    public boolean isSlidingMinMax() {
+        return m_sliding;
+    }
+
+    @Override
+    public void findMax() {
+        findMinMax();
+    }
+
+    @Override
+    public void findMin() {
+        findMinMax();
+    }
+
+    /**
+     * Visits the extremes of every encoded block instead of every entry.
+     */
+    @Override
+    public void findMinMax() {
+        m_extremes.find(head, num == sizeMax);
+        copyExtremes();
+    }
+
+    /**
+     * Combines the extremes of the block windows and the open block.
+     */
+    private void readExtremes() {
+        m_extremes.read(head, num == sizeMax);
+        copyExtremes();
+    }
+
+    private void copyExtremes() {
+        minValue = m_extremes.min;
+        minIdx = m_extremes.minIdx;
+        maxValue = m_extremes.max;
+        maxIdx = m_extremes.maxIdx;
+        rangeMinMax = maxValue - minValue;
+    }
+
+    /**
+     * Entries can't be changed.
+     */
+    @Override
+    public void add(int location, Long object) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Entries can't be changed.
+     */
+    @Override
+    public Long set(int location, Long object) {
+        throw new UnsupportedOperationException();
+    }
+}
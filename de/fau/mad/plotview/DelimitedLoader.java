@@ -0,0 +1,402 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Loader for delimiter separated text files (CSV, TSV, ...) that parses two
+ * columns directly from the raw bytes into a LongValueList and a
+ * FloatValueList.
+ * <p>
+ * No objects are created per line: the stream is read into one byte buffer,
+ * numbers are parsed in place and collected in small primitive chunks which
+ * are then bulk-added to the value lists. Lines that can't be parsed, or
+ * that don't contain both columns, are skipped as a whole so x and values
+ * always stay aligned.
+ * <p>
+ * Only ASCII compatible encodings are supported. Floats with up to 15
+ * significant digits and a decimal exponent within +-22 are computed
+ * directly, everything else (NaN, Infinity, very long or very small numbers)
+ * falls back to Float.parseFloat().
+ */
+public class DelimitedLoader {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int CHUNK_SIZE = 1 << 10;
+
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+            1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final byte delimiter;
+    private final int firstColumn;
+    private final int secondColumn;
+    private final int numHeaderLines;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private final long[] chunkX = new long[CHUNK_SIZE];
+    private final float[] chunkValues = new float[CHUNK_SIZE];
+
+    /**
+     * Number of lines that have been skipped by the last load() call because
+     * they couldn't be parsed.
+     */
+    public int skippedLines = 0;
+
+    /**
+     * TRANSIENT variables
+     */
+    private transient int tPos;
+    private transient long tLong;
+    private transient float tFloat;
+
+    /**
+     * @param delimiter      Character at which to separate the columns.
+     * @param firstColumn    Index of the column to use for the x values
+     *                       (starting from 1)
+     * @param secondColumn   Index of the column to use for the values (must be
+     *                       &gt; firstColumn)
+     * @param numHeaderLines Number of header lines to skip.
+     */
+    public DelimitedLoader(char delimiter, int firstColumn, int secondColumn, int numHeaderLines) {
+        if (firstColumn < 1 || secondColumn <= firstColumn)
+            throw new IllegalArgumentException("Invalid columns " + firstColumn + ", " + secondColumn);
+
+        this.delimiter = (byte) delimiter;
+        this.firstColumn = firstColumn;
+        this.secondColumn = secondColumn;
+        this.numHeaderLines = numHeaderLines;
+    }
+
+    /**
+     * Counts the lines following the header lines. This is an upper bound for
+     * the number of entries load() will add and can be used to size the value
+     * lists. The stream is read to its end but not closed.
+     *
+     * @param in
+     * @return Number of data lines.
+     * @throws IOException
+     */
+    public int countLines(InputStream in) throws IOException {
+        int lines = 0;
+        int read;
+        byte last = '\n';
+
+        while ((read = in.read(buffer, 0, buffer.length)) > 0) {
+            for (tPos = 0; tPos < read; ++tPos) {
+                if (buffer[tPos] == '\n')
+                    ++lines;
+            }
+            last = buffer[read - 1];
+        }
+
+        // last line without newline
+        if (last != '\n')
+            ++lines;
+
+        return Math.max(0, lines - numHeaderLines);
+    }
+
+    /**
+     * Parses the stream and adds the entries of the two columns to x and
+     * values. The stream is read to its end but not closed.
+     *
+     * @param in
+     * @param x                receives the entries of the first column
+     * @param values           receives the entries of the second column
+     * @param progressListener [optional] receives the number of lines processed
+     * @return Number of entries added or -1 if the progressListener cancelled
+     * the operation.
+     * @throws IOException
+     */
+    public int load(InputStream in, LongValueList x, FloatValueList values,
+                    PlotView.PlotProgressListener progressListener) throws IOException {
+        int filled = 0;
+        int lineStart, lineEnd;
+        int chunkNum = 0;
+        int loaded = 0;
+        int lines = 0;
+        int read;
+        boolean eof = false;
+
+        skippedLines = 0;
+
+        while (!eof) {
+            // ==============> refill the buffer behind the unprocessed rest
+            if (filled == buffer.length) {
+                // a single line doesn't fit, grow the buffer
+                byte[] grown = new byte[buffer.length << 1];
+                System.arraycopy(buffer, 0, grown, 0, filled);
+                buffer = grown;
+            }
+
+            read = in.read(buffer, filled, buffer.length - filled);
+            if (read <= 0) {
+                eof = true;
+                // terminate the last line
+                if (filled > 0 && buffer[filled - 1] != '\n') {
+                    if (filled == buffer.length) {
+                        byte[] grown = new byte[buffer.length + 1];
+                        System.arraycopy(buffer, 0, grown, 0, filled);
+                        buffer = grown;
+                    }
+                    buffer[filled++] = '\n';
+                }
+            } else {
+                filled += read;
+            }
+            // <=============
+
+            // ==============> process all complete lines
+            lineStart = 0;
+            for (lineEnd = 0; lineEnd < filled; ++lineEnd) {
+                if (buffer[lineEnd] != '\n')
+                    continue;
+
+                if (lines >= numHeaderLines) {
+                    if (parseLine(lineStart, lineEnd)) {
+                        chunkX[chunkNum] = tLong;
+                        chunkValues[chunkNum] = tFloat;
+                        if (++chunkNum == CHUNK_SIZE) {
+                            x.add(chunkX, 0, chunkNum);
+                            values.add(chunkValues, 0, chunkNum);
+                            loaded += chunkNum;
+                            chunkNum = 0;
+
+                            if (progressListener != null) {
+                                if (progressListener.isCancelled())
+                                    return -1;
+                                progressListener.onUpdateProgress(lines);
+                            }
+                        }
+                    } else if (lineEnd > lineStart) {
+                        ++skippedLines;
+                    }
+                }
+
+                ++lines;
+                lineStart = lineEnd + 1;
+            }
+            // <=============
+
+            // move the incomplete last line to the front
+            filled -= lineStart;
+            if (filled > 0 && lineStart > 0)
+                System.arraycopy(buffer, lineStart, buffer, 0, filled);
+        }
+
+        if (chunkNum > 0) {
+            x.add(chunkX, 0, chunkNum);
+            values.add(chunkValues, 0, chunkNum);
+            loaded += chunkNum;
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Parses both columns of buffer[start..end[ into tLong and tFloat.
+     *
+     * @return true if both columns have been parsed successfully.
+     */
+    private boolean parseLine(int start, int end) {
+        // ignore windows line endings
+        if (end > start && buffer[end - 1] == '\r')
+            --end;
+
+        int column = 1;
+        int fieldStart = start;
+
+        for (tPos = start; tPos <= end; ++tPos) {
+            if (tPos < end && buffer[tPos] != delimiter)
+                continue;
+
+            if (column == firstColumn) {
+                if (!parseLong(fieldStart, tPos))
+                    return false;
+            } else if (column == secondColumn) {
+                return parseFloat(fieldStart, tPos);
+            }
+
+            ++column;
+            fieldStart = tPos + 1;
+        }
+
+        return false;
+    }
+
+    /**
+     * Parses buffer[start..end[ into tLong.
+     */
+    private boolean parseLong(int start, int end) {
+        // trim
+        while (start < end && buffer[start] == ' ')
+            ++start;
+        while (end > start && buffer[end - 1] == ' ')
+            --end;
+
+        if (start == end)
+            return false;
+
+        boolean negative = false;
+        if (buffer[start] == '-' || buffer[start] == '+') {
+            negative = buffer[start] == '-';
+            if (++start == end)
+                return false;
+        }
+
+        long v = 0;
+        int digit;
+        for (int i = start; i < end; ++i) {
+            digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9)
+                return false;
+            // overflow check, works with the negative accumulator
+            if (v < (Long.MIN_VALUE + digit) / 10)
+                return false;
+            v = v * 10 - digit;
+        }
+
+        if (negative) {
+            tLong = v;
+        } else {
+            if (v == Long.MIN_VALUE)
+                return false;
+            tLong = -v;
+        }
+        return true;
+    }
+
+    /**
+     * Parses buffer[start..end[ into tFloat.
+     */
+    private boolean parseFloat(int start, int end) {
+        // trim
+        while (start < end && buffer[start] == ' ')
+            ++start;
+        while (end > start && buffer[end - 1] == ' ')
+            --end;
+
+        if (start == end)
+            return false;
+
+        int i = start;
+        boolean negative = false;
+        if (buffer[i] == '-' || buffer[i] == '+') {
+            negative = buffer[i] == '-';
+            ++i;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        byte b;
+
+        // integer part
+        for (; i < end; ++i) {
+            b = buffer[i];
+            if (b < '0' || b > '9')
+                break;
+            anyDigit = true;
+            if (mantissa == 0 && b == '0')
+                continue;
+            if (++digits > 15)
+                return parseFloatSlow(start, end);
+            mantissa = mantissa * 10 + (b - '0');
+        }
+
+        // fraction
+        if (i < end && buffer[i] == '.') {
+            for (++i; i < end; ++i) {
+                b = buffer[i];
+                if (b < '0' || b > '9')
+                    break;
+                anyDigit = true;
+                --exponent;
+                if (mantissa == 0 && b == '0')
+                    continue;
+                if (++digits > 15)
+                    return parseFloatSlow(start, end);
+                mantissa = mantissa * 10 + (b - '0');
+            }
+        }
+
+        if (!anyDigit)
+            return parseFloatSlow(start, end);
+
+        // exponent
+        if (i < end && (buffer[i] == 'e' || buffer[i] == 'E')) {
+            ++i;
+            boolean negExp = false;
+            if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+                negExp = buffer[i] == '-';
+                ++i;
+            }
+            if (i == end)
+                return false;
+
+            int exp = 0;
+            for (; i < end; ++i) {
+                b = buffer[i];
+                if (b < '0' || b > '9')
+                    return false;
+                if (exp < 10000)
+                    exp = exp * 10 + (b - '0');
+            }
+            exponent += negExp ? -exp : exp;
+        }
+
+        // trailing garbage, e.g. "1.5f"
+        if (i != end)
+            return parseFloatSlow(start, end);
+
+        if (mantissa == 0) {
+            tFloat = negative ? -0f : 0f;
+            return true;
+        }
+
+        // both the mantissa and the power of ten are exact doubles in this
+        // range, so the division/multiplication is correctly rounded
+        if (exponent < -22 || exponent > 22)
+            return parseFloatSlow(start, end);
+
+        double d = mantissa;
+        if (exponent < 0)
+            d /= POW10[-exponent];
+        else
+            d *= POW10[exponent];
+
+        tFloat = (float) (negative ? -d : d);
+        return true;
+    }
+
+    /**
+     * Fallback for numbers the fast path can't handle. Allocates a String.
+     */
+    private boolean parseFloatSlow(int start, int end) {
+        try {
+            tFloat = Float.parseFloat(new String(buffer, start, end - start, "US-ASCII"));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        } catch (UnsupportedEncodingException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.util.Arrays;
+
+/**
+ * Number of (x, y) samples per cell of a pixel grid, for the
+ * PlotStyle.DENSITY of a Plot2D. Doesn't depend on Android.
+ * <p>
+ * The cell of every entry of the rings is remembered, so when the entry at a
+ * raw index is overwritten, its old cell is decremented and the new one
+ * incremented, both in O(1). Only if the mapping from plot to cell
+ * coordinates changes, e.g. on zoom or resize, the grid is rebuilt from the
+ * rings. A frame then only has to color the cells, O(pixels) no matter how
+ * many samples the rings hold.
+ */
+public class DensityGrid {
+    /**
+     * Default size of a cell in pixels.
+     */
+    public static final int DEFAULT_CELL_SIZE = 2;
+
+    /**
+     * Counts up to this are colored through a lookup table.
+     */
+    private static final int LUT_SIZE = 1024;
+
+    /**
+     * Cell of every raw ring index, -1 if the entry is outside the grid or
+     * doesn't exist.
+     */
+    private final int[] m_entryCell;
+
+    private int[] m_counts = new int[0];
+    private int m_cols = 0, m_rows = 0;
+
+    /**
+     * Mapping of plot to cell coordinates: (x - m_xStart) * m_xScale.
+     */
+    private long m_xStart;
+    private double m_xScale;
+    private float m_yStart;
+    private double m_yScale;
+
+    /**
+     * Whether the counts match the mapping and the rings.
+     */
+    private boolean m_valid = false;
+
+    /**
+     * ARGB colors of the cells, row 0 is the lowest y. Filled by render().
+     */
+    public int[] pixels = new int[0];
+
+    private final int[] m_alphaLut = new int[LUT_SIZE];
+    private int m_lutMax = -1;
+
+    /**
+     * TRANSIENT variables
+     */
+    private transient int tCol, tRow, tCell;
+
+    /**
+     * @param capacity Number of entries of the rings.
+     */
+    public DensityGrid(int capacity) {
+        m_entryCell = new int[capacity];
+        Arrays.fill(m_entryCell, -1);
+    }
+
+    public int getColumns() {
+        return m_cols;
+    }
+
+    public int getRows() {
+        return m_rows;
+    }
+
+    /**
+     * Sets the grid size and the mapping of plot coordinates to cells. The
+     * grid has to be rebuilt if anything changed.
+     *
+     * @param cols
+     * @param rows
+     * @param xStart plot x of the left border
+     * @param xScale cells per x unit
+     * @param yStart plot y of the bottom border
+     * @param yScale cells per y unit
+     * @return Whether rebuild() needs to be called.
+     */
+    public boolean setMapping(int cols, int rows, long xStart, double xScale, float yStart, double yScale) {
+        if (m_valid && cols == m_cols && rows == m_rows && xStart == m_xStart && xScale == m_xScale
+                && yStart == m_yStart && yScale == m_yScale)
+            return false;
+
+        if (cols * rows != m_counts.length) {
+            m_counts = new int[cols * rows];
+            pixels = new int[cols * rows];
+        }
+        m_cols = cols;
+        m_rows = rows;
+        m_xStart = xStart;
+        m_xScale = xScale;
+        m_yStart = yStart;
+        m_yScale = yScale;
+        m_valid = false;
+        return true;
+    }
+
+    /**
+     * @return Whether the counts match the rings.
+     */
+    public boolean isValid() {
+        return m_valid;
+    }
+
+    /**
+     * Counts all entries of the rings anew.
+     */
+    public void rebuild(LongValueList x, FloatValueList y) {
+        Arrays.fill(m_counts, 0);
+        Arrays.fill(m_entryCell, -1);
+
+        final LongValueList.Cursor xCursor = x.cursor();
+        final FloatValueList.Cursor yCursor = y.cursor();
+        int idx = x.tail;
+        while (xCursor.hasNext()) {
+            tCell = cellOf(xCursor.nextLong(), yCursor.nextFloat());
+            m_entryCell[idx] = tCell;
+            if (tCell != -1)
+                ++m_counts[tCell];
+
+            if (++idx == m_entryCell.length)
+                idx = 0;
+        }
+        m_valid = true;
+    }
+
+    /**
+     * Must be called after the entry at the raw index idx was written. Does
+     * nothing until the grid was built.
+     *
+     * @param idx raw index
+     * @param x
+     * @param y
+     */
+    public void update(int idx, long x, float y) {
+        if (!m_valid)
+            return;
+
+        if (m_entryCell[idx] != -1)
+            --m_counts[m_entryCell[idx]];
+
+        tCell = cellOf(x, y);
+        m_entryCell[idx] = tCell;
+        if (tCell != -1)
+            ++m_counts[tCell];
+    }
+
+    public void clear() {
+        Arrays.fill(m_counts, 0);
+        Arrays.fill(m_entryCell, -1);
+    }
+
+    /**
+     * @return The cell of the plot coordinates or -1 if outside the grid.
+     */
+    private int cellOf(long x, float y) {
+        tCol = (int) Math.floor((x - m_xStart) * m_xScale);
+        tRow = (int) Math.floor((y - m_yStart) * m_yScale);
+        if (tCol < 0 || tRow < 0 || tCol >= m_cols || tRow >= m_rows)
+            return -1;
+        return tRow * m_cols + tCol;
+    }
+
+    /**
+     * Colors the cells into pixels: empty cells are transparent, the others
+     * get the given color with an alpha on a logarithmic scale of their count
+     * relative to the fullest cell.
+     *
+     * @param rgb color of the cells, the alpha is ignored
+     * @return The count of the fullest cell.
+     */
+    public int render(int rgb) {
+        int max = 0;
+        for (tCell = 0; tCell < m_counts.length; ++tCell) {
+            if (m_counts[tCell] > max)
+                max = m_counts[tCell];
+        }
+        if (max != m_lutMax)
+            fillLut(max);
+
+        rgb &= 0xFFFFFF;
+        int c;
+        for (tCell = 0; tCell < m_counts.length; ++tCell) {
+            c = m_counts[tCell];
+            if (c == 0)
+                pixels[tCell] = 0;
+            else
+                pixels[tCell] = (c < LUT_SIZE ? m_alphaLut[c] : alphaOf(c, max)) << 24 | rgb;
+        }
+        return max;
+    }
+
+    private void fillLut(int max) {
+        for (int c = 1; c < LUT_SIZE; ++c) {
+            m_alphaLut[c] = alphaOf(c, max);
+        }
+        m_lutMax = max;
+    }
+
+    /**
+     * @return Alpha for count, at least 48 so single samples stay visible.
+     */
+    private static int alphaOf(int count, int max) {
+        if (max <= 1)
+            return 0xFF;
+        return 48 + (int) (207 * Math.log(count) / Math.log(max));
+    }
+}
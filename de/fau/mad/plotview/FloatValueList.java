@@ -22,11 +22,10 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
 
 import junit.framework.Assert;
 
-import android.util.FloatMath;
-
 /**
  * @author Stefan Gradl
  */
@@ -50,10 +49,37 @@ public class FloatValueList extends CircularValueList implements List<Float> {
      */
     public double sum = 0;
 
+    /**
+     * Min/max index over values for fast range queries. Only allocated if
+     * requested via setMinMaxPyramid().
+     */
+    public MinMaxPyramid pyramid = null;
+
+    /**
+     * Running sums for O(1) range statistics. Only allocated if requested via
+     * setPrefixSums().
+     */
+    public PrefixSums prefixSums = null;
+
+    /**
+     * Entries copied at once by cursors and forEachFloat() if the ring doesn't
+     * keep its values in an array.
+     */
+    private static final int CURSOR_CHUNK = 256;
+
+    private float[] m_forEachChunk = null;
+
     /**
      * TRANSIENT variables
      */
     private transient int tIter = 0;
+    private transient int tIdx, tFirst, tSegment, tBatchNum;
+    private transient boolean tRescan;
+
+    /**
+     * Result of sumRange()
+     */
+    protected transient double tSum, tSumSq;
 
     /**
      * Constructs a new FloatValueList with the given preallocated entries.
@@ -88,6 +114,21 @@ public class FloatValueList extends CircularValueList implements List<Float> {
         values = new float[sizeMax];
     }
 
+    /**
+     * Constructs the ring without allocating the values, for subclasses that
+     * store their values differently.
+     *
+     * @param cacheSize      Number of entries.
+     * @param maintainMinMax Whether to maintain the min and max values.
+     * @param maintainSum    Whether to maintain the sum.
+     * @param allocate       Whether to allocate the values array.
+     */
+    protected FloatValueList(int cacheSize, boolean maintainMinMax, boolean maintainSum, boolean allocate) {
+        super(cacheSize, maintainMinMax, maintainSum);
+        if (allocate)
+            values = new float[sizeMax];
+    }
+
     /**
      * Adds a new entry to the ring, possibly overwriting the eldest entry.
      *
@@ -105,6 +146,14 @@ public class FloatValueList extends CircularValueList implements List<Float> {
             sum = sum - values[head] + newValue;
         }
 
+        // the entry at head is about to be overwritten
+        final float oldValue = values[head];
+        final boolean replaced = (num == sizeMax);
+
+        // remove it from the sliding window first
+        if (extremes != null && replaced)
+            extremes.evict(head);
+
         values[head] = newValue;
 
         if (num < sizeMax)
@@ -116,7 +165,16 @@ public class FloatValueList extends CircularValueList implements List<Float> {
                 tail = 0;
         }
 
-        if (maintainMinMax) {
+        if (pyramid != null)
+            pyramid.update(values, head, oldValue, replaced, num);
+
+        if (prefixSums != null)
+            prefixSums.update(values, head);
+
+        if (extremes != null) {
+            extremes.push(values, head);
+            readExtremes();
+        } else if (maintainMinMax) {
             // check min/max
             if (newValue <= minValue) {
                 // new MIN
@@ -144,6 +202,126 @@ public class FloatValueList extends CircularValueList implements List<Float> {
         return head;
     }
 
+    /**
+     * Adds a block of new entries to the ring, possibly overwriting the eldest
+     * entries. The entries are copied with at most two System.arraycopy calls
+     * and min/max/sum are updated once for the entire block.
+     *
+     * @param newValues array holding the values to add
+     * @param offset    index of the first value in newValues
+     * @param length    number of values to add
+     * @return new head position
+     */
+    public int add(float[] newValues, int offset, int length) {
+        if (length <= 0)
+            return head;
+
+        if (length >= sizeMax) {
+            // the whole ring gets replaced, only the last sizeMax values survive
+            head = (head + length - sizeMax) % sizeMax;
+            offset += length - sizeMax;
+            length = sizeMax;
+            num = 0;
+            tail = 0;
+            if (extremes != null)
+                extremes.clear();
+            sum = 0;
+        }
+
+        tFirst = head + 1;
+        if (tFirst == sizeMax)
+            tFirst = 0;
+
+        // ==============> remove the entries that get overwritten
+        tBatchNum = overwriteCount(length);
+        tRescan = false;
+        for (tIter = 0; tIter < tBatchNum; ++tIter) {
+            tIdx = tail + tIter;
+            if (tIdx >= sizeMax)
+                tIdx -= sizeMax;
+
+            if (maintainSum)
+                sum -= values[tIdx];
+
+            if (extremes != null)
+                extremes.evict(tIdx);
+            else if (tIdx == minIdx || tIdx == maxIdx)
+                tRescan = true;
+        }
+        // <=============
+
+        // ==============> copy, wrapping around at the end of the ring
+        tSegment = Math.min(length, sizeMax - tFirst);
+        System.arraycopy(newValues, offset, values, tFirst, tSegment);
+        if (tSegment < length)
+            System.arraycopy(newValues, offset + tSegment, values, 0, length - tSegment);
+        // <=============
+
+        advance(length);
+
+        // ==============> sum & min/max of the new entries
+        if (maintainSum || maintainMinMax) {
+            float bMin = Float.MAX_VALUE, bMax = -Float.MAX_VALUE;
+            int bMinIdx = -1, bMaxIdx = -1;
+
+            for (tIter = 0; tIter < length; ++tIter) {
+                tIdx = tFirst + tIter;
+                if (tIdx >= sizeMax)
+                    tIdx -= sizeMax;
+
+                if (maintainSum)
+                    sum += values[tIdx];
+
+                if (extremes != null) {
+                    extremes.push(values, tIdx);
+                } else {
+                    if (values[tIdx] <= bMin) {
+                        bMin = values[tIdx];
+                        bMinIdx = tIdx;
+                    }
+                    if (values[tIdx] >= bMax) {
+                        bMax = values[tIdx];
+                        bMaxIdx = tIdx;
+                    }
+                }
+            }
+
+            if (extremes != null) {
+                readExtremes();
+            } else if (maintainMinMax) {
+                if (tRescan || num == length) {
+                    // an old extreme was overwritten or the ring was empty
+                    findMinMax();
+                } else {
+                    if (bMin <= minValue) {
+                        minValue = bMin;
+                        minIdx = bMinIdx;
+                    }
+                    if (bMax >= maxValue) {
+                        maxValue = bMax;
+                        maxIdx = bMaxIdx;
+                    }
+                    rangeMinMax = maxValue - minValue;
+                }
+            }
+        }
+        // <=============
+
+        if (pyramid != null) {
+            pyramid.updateRange(values, tFirst, Math.min(tFirst + length, sizeMax) - 1, num);
+            if (tSegment < length)
+                pyramid.updateRange(values, 0, length - tSegment - 1, num);
+        }
+
+        if (prefixSums != null) {
+            prefixSums.updateRange(values, tFirst, Math.min(tFirst + length, sizeMax) - 1);
+            if (tSegment < length)
+                prefixSums.updateRange(values, 0, length - tSegment - 1);
+        }
+
+        return head;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -155,7 +333,101 @@ public class FloatValueList extends CircularValueList implements List<Float> {
         maxValue = Float.MIN_VALUE;
         rangeMinMax = 1;
         sum = 0;
-        Arrays.fill(values, 0f);
+        if (values != null)
+            Arrays.fill(values, 0f);
+
+        if (pyramid != null)
+            pyramid.clear();
+
+        if (prefixSums != null)
+            prefixSums.clear();
+    }
+
+    /**
+     * Enables or disables the min/max pyramid index, which allows
+     * findRangeMinMax() to answer in O(log n) instead of visiting every entry
+     * of the range. Costs about 1/8 of the memory of the values array and
+     * O(log n) per add().
+     *
+     * @param enable
+     */
+    public void setMinMaxPyramid(boolean enable) {
+        if (enable) {
+            if (pyramid == null) {
+                pyramid = new MinMaxPyramid(sizeMax);
+                pyramid.rebuild(values, num);
+            }
+        } else {
+            pyramid = null;
+        }
+    }
+
+    /**
+     * Enables or disables the running sums, which allow calculateStats() to
+     * answer in O(1) instead of visiting every entry of the range. Costs two
+     * doubles per entry, four times the memory of the values array.
+     *
+     * @param enable
+     */
+    public void setPrefixSums(boolean enable) {
+        if (enable) {
+            if (prefixSums == null) {
+                prefixSums = new PrefixSums(sizeMax);
+                prefixSums.rebuild(values, tail, num);
+            }
+        } else {
+            prefixSums = null;
+        }
+    }
+
+    /**
+     * @return Whether the min/max pyramid was enabled, @see
+     * #setMinMaxPyramid(boolean)
+     */
+    public boolean hasMinMaxPyramid() {
+        return pyramid != null;
+    }
+
+    /**
+     * @return Whether the running sums were enabled, @see
+     * #setPrefixSums(boolean)
+     */
+    public boolean hasPrefixSums() {
+        return prefixSums != null;
+    }
+
+    /**
+     * @return The number of entries findRangeMinMax() handles in one step
+     * instead of visiting them, or 0 if it visits every entry.
+     */
+    public int getRangeBlockSize() {
+        return pyramid != null ? MinMaxPyramid.BLOCK_SIZE : 0;
+    }
+
+    /**
+     * Finds the min and max value of the raw index range [from, to].
+     *
+     * @param from   first raw index, inclusive
+     * @param to     last raw index, inclusive. Must be &gt;= from, i.e. ranges
+     *               that wrap around the end of the ring have to be split by
+     *               the caller.
+     * @param result receives the min at [0] and the max at [1]
+     */
+    public void findRangeMinMax(int from, int to, float[] result) {
+        if (pyramid != null) {
+            pyramid.query(values, from, to, result);
+            return;
+        }
+
+        // no transient variables, the producer may use them concurrently
+        result[0] = Float.POSITIVE_INFINITY;
+        result[1] = Float.NEGATIVE_INFINITY;
+        for (int i = from; i <= to; ++i) {
+            if (values[i] < result[0])
+                result[0] = values[i];
+            if (values[i] > result[1])
+                result[1] = values[i];
+        }
     }
 
     /**
@@ -178,6 +450,12 @@ public class FloatValueList extends CircularValueList implements List<Float> {
         if (maintainMinMax) {
             findMinMax();
         }
+
+        if (pyramid != null)
+            pyramid.rebuild(values, num);
+
+        if (prefixSums != null)
+            prefixSums.rebuild(values, tail, num);
     }
 
     /**
@@ -209,12 +487,23 @@ public class FloatValueList extends CircularValueList implements List<Float> {
         if (maintainMinMax) {
             findMinMax();
         }
+
+        if (pyramid != null)
+            pyramid.rebuild(values, num);
+
+        if (prefixSums != null)
+            prefixSums.rebuild(values, tail, num);
     }
 
     /**
      * Iterates over all valid elements and fills the max value.
      */
     public void findMax() {
+        if (extremes != null) {
+            readExtremes();
+            return;
+        }
+
         maxValue = minValue;
         for (tIter = 0; tIter < num; tIter++) {
             // new max?
@@ -230,6 +519,11 @@ public class FloatValueList extends CircularValueList implements List<Float> {
      * Iterates over all valid elements and fills the min value.
      */
     public void findMin() {
+        if (extremes != null) {
+            readExtremes();
+            return;
+        }
+
         minValue = maxValue;
         for (tIter = 0; tIter < num; tIter++) {
             // new min?
@@ -247,16 +541,27 @@ public class FloatValueList extends CircularValueList implements List<Float> {
     public void findMinMax() {
         minValue = Float.MAX_VALUE;
         minIdx = -1;
-        maxValue = Float.MIN_VALUE;
+        maxValue = -Float.MAX_VALUE;
         maxIdx = -1;
+
+        if (extremes != null) {
+            // rebuild the sliding window in logical order
+            extremes.clear();
+            for (tIter = 0; tIter < num; tIter++) {
+                extremes.push(values, normIdx(tail + tIter));
+            }
+            readExtremes();
+            return;
+        }
+
         for (tIter = 0; tIter < num; tIter++) {
             // new max?
             if (values[tIter] > maxValue) {
                 maxValue = values[tIter];
                 maxIdx = tIter;
             }
-            // new min?
-            else if (values[tIter] < minValue) {
+            // new min? not exclusive, the first entry usually is both
+            if (values[tIter] < minValue) {
                 minValue = values[tIter];
                 minIdx = tIter;
             }
@@ -264,6 +569,21 @@ public class FloatValueList extends CircularValueList implements List<Float> {
         rangeMinMax = maxValue - minValue;
     }
 
+    /**
+     * Copies the current extremes of the sliding window into the min/max
+     * members.
+     */
+    private void readExtremes() {
+        minIdx = extremes.minIdx();
+        maxIdx = extremes.maxIdx();
+        if (minIdx == -1)
+            return;
+
+        minValue = values[minIdx];
+        maxValue = values[maxIdx];
+        rangeMinMax = maxValue - minValue;
+    }
+
     /**
      * Returns the mean of all values in this list.
      *
@@ -275,6 +595,27 @@ public class FloatValueList extends CircularValueList implements List<Float> {
         return 0f;
     }
 
+    /**
+     * @param idx raw index
+     * @return The value at the raw index.
+     */
+    public float getRaw(int idx) {
+        return values[idx];
+    }
+
+    /**
+     * Copies length values starting at the raw index from into dst. The range
+     * must not exceed the end of the ring.
+     *
+     * @param from      first raw index
+     * @param dst
+     * @param dstOffset
+     * @param length
+     */
+    public void copyRaw(int from, float[] dst, int dstOffset, int length) {
+        System.arraycopy(values, from, dst, dstOffset, length);
+    }
+
     /**
      * Returns the value at the current head position.
      */
@@ -295,6 +636,131 @@ public class FloatValueList extends CircularValueList implements List<Float> {
         return getIndirect(head - idxPast);
     }
 
+    /**
+     * Receives the entries of forEachFloat() without boxing.
+     */
+    public interface FloatVisitor {
+        public void visit(float value);
+    }
+
+    /**
+     * Reads a range of the ring in logical order without boxing. The range
+     * is walked as at most two contiguous segments of the values array, so
+     * nextFloat() only compares the position with the end of the current
+     * segment.
+     * Rings that don't keep their values in an array are copied into the
+     * cursor chunk by chunk with copyRaw(). A cursor can be reused with
+     * seek(), it is only valid as long as no entries are added.
+     */
+    public class Cursor {
+        private float[] m_segment = null;
+        private float[] m_chunk = null;
+        private int m_pos = 0, m_end = 0;
+
+        /**
+         * Raw index of the next segment and entries after the current one.
+         */
+        private int m_next = 0, m_remaining = 0;
+
+        /**
+         * Moves the cursor to the ring index rIdx.
+         *
+         * @param rIdx  negative or positive index in the ring
+         * @param count number of entries to read, at most num
+         * @return this
+         */
+        public Cursor seek(int rIdx, int count) {
+            m_next = normIdx(rIdx);
+            m_remaining = count;
+            m_pos = m_end = 0;
+            return this;
+        }
+
+        public boolean hasNext() {
+            return m_pos < m_end || m_remaining > 0;
+        }
+
+        /**
+         * @return The entry at the cursor, then moves to the next one. Check
+         * hasNext() first.
+         */
+        public float nextFloat() {
+            if (m_pos == m_end)
+                nextSegment();
+            return m_segment[m_pos++];
+        }
+
+        private void nextSegment() {
+            int len = Math.min(m_remaining, sizeMax - m_next);
+            if (values != null) {
+                m_segment = values;
+                m_pos = m_next;
+            } else {
+                // copy rings without a values array chunk by chunk
+                if (m_chunk == null)
+                    m_chunk = new float[CURSOR_CHUNK];
+                len = Math.min(len, CURSOR_CHUNK);
+                copyRaw(m_next, m_chunk, 0, len);
+                m_segment = m_chunk;
+                m_pos = 0;
+            }
+            m_end = m_pos + len;
+            m_remaining -= len;
+            m_next += len;
+            if (m_next == sizeMax)
+                m_next = 0;
+        }
+    }
+
+    /**
+     * @return A new cursor over all entries, from tail to head.
+     */
+    public Cursor cursor() {
+        return new Cursor().seek(tail, num);
+    }
+
+    /**
+     * Passes all entries to visitor, from tail to head.
+     *
+     * @param visitor
+     */
+    public void forEachFloat(FloatVisitor visitor) {
+        forEachFloat(tail, num, visitor);
+    }
+
+    /**
+     * Passes count entries starting at the ring index rIdx to visitor, in
+     * logical order.
+     *
+     * @param rIdx     negative or positive index in the ring
+     * @param count    number of entries, at most num
+     * @param visitor
+     */
+    public void forEachFloat(int rIdx, int count, FloatVisitor visitor) {
+        int from = normIdx(rIdx), len, i;
+        while (count > 0) {
+            len = Math.min(count, sizeMax - from);
+            if (values != null) {
+                for (i = from; i < from + len; ++i) {
+                    visitor.visit(values[i]);
+                }
+            } else {
+                if (m_forEachChunk == null)
+                    m_forEachChunk = new float[CURSOR_CHUNK];
+                len = Math.min(len, CURSOR_CHUNK);
+                copyRaw(from, m_forEachChunk, 0, len);
+                for (i = 0; i < len; ++i) {
+                    visitor.visit(m_forEachChunk[i]);
+                }
+            }
+
+            count -= len;
+            from += len;
+            if (from == sizeMax)
+                from = 0;
+        }
+    }
+
     /**
      * Returns the value at position rIdx. It has the same effect as calling
      * this.value[normIdx(rIdx)].
@@ -325,7 +791,12 @@ public class FloatValueList extends CircularValueList implements List<Float> {
      * @see java.util.List#add(int, java.lang.Object)
      */
     public void add(int location, Float object) {
-        values[normIdx(location)] = object.floatValue();
+        int idx = normIdx(location);
+        float prev = values[idx];
+        values[idx] = object.floatValue();
+
+        if (prefixSums != null)
+            prefixSums.replace(values, idx, prev);
     }
 
     /*
@@ -392,7 +863,22 @@ public class FloatValueList extends CircularValueList implements List<Float> {
      * @see java.util.List#iterator()
      */
     public Iterator<Float> iterator() {
-        throw new UnsupportedOperationException();
+        final Cursor cursor = cursor();
+        return new Iterator<Float>() {
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            public Float next() {
+                if (!cursor.hasNext())
+                    throw new NoSuchElementException();
+                return cursor.nextFloat();
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
     /*
@@ -467,6 +953,9 @@ public class FloatValueList extends CircularValueList implements List<Float> {
         int idx = normIdx(location);
         float prev = values[idx];
         values[idx] = object;
+
+        if (prefixSums != null)
+            prefixSums.replace(values, idx, prev);
         return prev;
     }
 
@@ -510,42 +999,69 @@ public class FloatValueList extends CircularValueList implements List<Float> {
     public String toString(String elementFormatter) {
         StringBuilder str = new StringBuilder(num * 16);
         for (tIter = 0; tIter < num; ++tIter) {
-            str.append(String.format(elementFormatter, values[tIter])).append("; ");
+            str.append(String.format(elementFormatter, getRaw(tIter))).append("; ");
         }
         return str.toString();
     }
 
     /**
-     * Calculate statistical values in the given range, including start and end.
+     * Calculate statistical values in the given raw index range, including
+     * start and end. If start &gt; end, the range wraps around the end of the
+     * ring.
      *
      * @param start
      * @param end
      * @param stats receives the computed statistics. must not be null.
      */
     public void calculateStats(int start, int end, Statistics stats) {
-        stats.sum = stats.rms = 0f;
-        stats.num = end - start + 1;
-
-        // calculate sum & rms
-        for (tIter = start; tIter <= end; ++tIter) {
-            stats.sum += values[tIter];
-            stats.rms += values[tIter] * values[tIter];
+        stats.idxStart = start;
+        stats.idxEnd = end;
+
+        if (prefixSums != null) {
+            prefixSums.query(values, start, end);
+            tSum = prefixSums.rangeSum;
+            tSumSq = prefixSums.rangeSumSq;
+        } else if (start <= end) {
+            sumRange(start, end);
+        } else {
+            sumRange(start, sizeMax - 1);
+            double s = tSum, sq = tSumSq;
+            sumRange(0, end);
+            tSum += s;
+            tSumSq += sq;
         }
 
+        stats.num = start <= end ? end - start + 1 : sizeMax - start + end + 1;
+        stats.sum = (float) tSum;
+
         // average
-        stats.average = stats.sum / stats.num;
+        final double average = tSum / stats.num;
+        stats.average = (float) average;
 
         // we don't calculate the root for the RMS immediately since we need it
         // squared for the variance
-        stats.rms /= stats.num;
+        final double meanSq = tSumSq / stats.num;
 
-        // calculate variance, exploiting RMS² == avg² + variance
-        stats.variance = stats.rms - stats.average * stats.average;
+        // calculate variance, exploiting RMS² == avg² + variance. Rounding may
+        // leave a tiny negative value for constant ranges
+        stats.variance = (float) Math.max(0, meanSq - average * average);
 
         // no we calculate the root for the RMS
-        stats.rms = (float) Math.sqrt(stats.rms);
+        stats.rms = (float) Math.sqrt(meanSq);
 
         // standard deviation
         stats.stdDeviation = (float) Math.sqrt(stats.variance);
     }
+
+    /**
+     * Sums the values and squared values of the raw index range [from, to]
+     * into tSum and tSumSq.
+     */
+    protected void sumRange(int from, int to) {
+        tSum = tSumSq = 0;
+        for (int i = from; i <= to; ++i) {
+            tSum += values[i];
+            tSumSq += (double) values[i] * values[i];
+        }
+    }
 }
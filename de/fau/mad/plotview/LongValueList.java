@@ -21,11 +21,10 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
 
 import junit.framework.Assert;
 
-import android.util.Log;
-
 /**
  * @author Stefan Gradl
  */
@@ -43,10 +42,20 @@ public class LongValueList extends CircularValueList implements List<Long> {
      */
     public long rangeMinMax = 1;
 
+    /**
+     * Entries copied at once by cursors and forEachLong() if the ring doesn't
+     * keep its values in an array.
+     */
+    private static final int CURSOR_CHUNK = 256;
+
+    private long[] m_forEachChunk = null;
+
     /**
      * TRANSIENT variables
      */
     private transient int tIter = 0;
+    private transient int tIdx, tFirst, tSegment, tBatchNum;
+    private transient boolean tRescan;
 
     /**
      * Constructs a new PlotValueList with the given preallocated entries.
@@ -59,6 +68,20 @@ public class LongValueList extends CircularValueList implements List<Long> {
         values = new long[sizeMax];
     }
 
+    /**
+     * Constructs the ring without allocating the values, for subclasses that
+     * compute their values instead of storing them.
+     *
+     * @param cacheSize      Number of entries.
+     * @param maintainMinMax Whether to maintain the min and max values.
+     * @param allocate       Whether to allocate the values array.
+     */
+    protected LongValueList(int cacheSize, boolean maintainMinMax, boolean allocate) {
+        super(cacheSize, maintainMinMax);
+        if (allocate)
+            values = new long[sizeMax];
+    }
+
     /**
      * Adds a new entry to the ring, possibly overwriting the eldest entry.
      *
@@ -70,6 +93,11 @@ public class LongValueList extends CircularValueList implements List<Long> {
         if (head == sizeMax)
             head = 0;
 
+        // the entry at head is about to be overwritten, remove it from the
+        // sliding window first
+        if (extremes != null && num == sizeMax)
+            extremes.evict(head);
+
         values[head] = newValue;
 
         if (num < sizeMax)
@@ -81,7 +109,10 @@ public class LongValueList extends CircularValueList implements List<Long> {
                 tail = 0;
         }
 
-        if (maintainMinMax) {
+        if (extremes != null) {
+            extremes.push(values, head);
+            readExtremes();
+        } else if (maintainMinMax) {
             // check min/max
             if (newValue <= minValue) {
                 // new MIN
@@ -109,6 +140,105 @@ public class LongValueList extends CircularValueList implements List<Long> {
         return head;
     }
 
+    /**
+     * Adds a block of new entries to the ring, possibly overwriting the eldest
+     * entries. The entries are copied with at most two System.arraycopy calls
+     * and min/max are updated once for the entire block.
+     *
+     * @param newValues array holding the values to add
+     * @param offset    index of the first value in newValues
+     * @param length    number of values to add
+     * @return new head position
+     */
+    public int add(long[] newValues, int offset, int length) {
+        if (length <= 0)
+            return head;
+
+        if (length >= sizeMax) {
+            // the whole ring gets replaced, only the last sizeMax values survive
+            head = (head + length - sizeMax) % sizeMax;
+            offset += length - sizeMax;
+            length = sizeMax;
+            num = 0;
+            tail = 0;
+            if (extremes != null)
+                extremes.clear();
+        }
+
+        tFirst = head + 1;
+        if (tFirst == sizeMax)
+            tFirst = 0;
+
+        // ==============> remove the entries that get overwritten
+        tBatchNum = overwriteCount(length);
+        tRescan = false;
+        for (tIter = 0; tIter < tBatchNum; ++tIter) {
+            tIdx = tail + tIter;
+            if (tIdx >= sizeMax)
+                tIdx -= sizeMax;
+
+            if (extremes != null)
+                extremes.evict(tIdx);
+            else if (tIdx == minIdx || tIdx == maxIdx)
+                tRescan = true;
+        }
+        // <=============
+
+        // ==============> copy, wrapping around at the end of the ring
+        tSegment = Math.min(length, sizeMax - tFirst);
+        System.arraycopy(newValues, offset, values, tFirst, tSegment);
+        if (tSegment < length)
+            System.arraycopy(newValues, offset + tSegment, values, 0, length - tSegment);
+        // <=============
+
+        advance(length);
+
+        // ==============> min/max of the new entries
+        if (maintainMinMax) {
+            long bMin = Long.MAX_VALUE, bMax = Long.MIN_VALUE;
+            int bMinIdx = -1, bMaxIdx = -1;
+
+            for (tIter = 0; tIter < length; ++tIter) {
+                tIdx = tFirst + tIter;
+                if (tIdx >= sizeMax)
+                    tIdx -= sizeMax;
+
+                if (extremes != null) {
+                    extremes.push(values, tIdx);
+                } else {
+                    if (values[tIdx] <= bMin) {
+                        bMin = values[tIdx];
+                        bMinIdx = tIdx;
+                    }
+                    if (values[tIdx] >= bMax) {
+                        bMax = values[tIdx];
+                        bMaxIdx = tIdx;
+                    }
+                }
+            }
+
+            if (extremes != null) {
+                readExtremes();
+            } else if (tRescan || num == length) {
+                // an old extreme was overwritten or the ring was empty
+                findMinMax();
+            } else {
+                if (bMin <= minValue) {
+                    minValue = bMin;
+                    minIdx = bMinIdx;
+                }
+                if (bMax >= maxValue) {
+                    maxValue = bMax;
+                    maxIdx = bMaxIdx;
+                }
+                rangeMinMax = maxValue - minValue;
+            }
+        }
+        // <=============
+
+        return head;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -146,6 +276,11 @@ public class LongValueList extends CircularValueList implements List<Long> {
      * Iterates over all valid elements and fills the max value.
      */
     public void findMax() {
+        if (extremes != null) {
+            readExtremes();
+            return;
+        }
+
         maxValue = minValue;
         for (tIter = 0; tIter < num; tIter++) {
             // new max?
@@ -161,6 +296,11 @@ public class LongValueList extends CircularValueList implements List<Long> {
      * Iterates over all valid elements and fills the min value.
      */
     public void findMin() {
+        if (extremes != null) {
+            readExtremes();
+            return;
+        }
+
         minValue = maxValue;
         for (tIter = 0; tIter < num; tIter++) {
             // new min?
@@ -180,14 +320,25 @@ public class LongValueList extends CircularValueList implements List<Long> {
         minIdx = -1;
         maxValue = Long.MIN_VALUE;
         maxIdx = -1;
+
+        if (extremes != null) {
+            // rebuild the sliding window in logical order
+            extremes.clear();
+            for (tIter = 0; tIter < num; tIter++) {
+                extremes.push(values, normIdx(tail + tIter));
+            }
+            readExtremes();
+            return;
+        }
+
         for (tIter = 0; tIter < num; tIter++) {
             // new max?
             if (values[tIter] > maxValue) {
                 maxValue = values[tIter];
                 maxIdx = tIter;
             }
-            // new min?
-            else if (values[tIter] < minValue) {
+            // new min? not exclusive, the first entry usually is both
+            if (values[tIter] < minValue) {
                 minValue = values[tIter];
                 minIdx = tIter;
             }
@@ -195,6 +346,103 @@ public class LongValueList extends CircularValueList implements List<Long> {
         rangeMinMax = maxValue - minValue;
     }
 
+    /**
+     * Copies the current extremes of the sliding window into the min/max
+     * members.
+     */
+    private void readExtremes() {
+        minIdx = extremes.minIdx();
+        maxIdx = extremes.maxIdx();
+        if (minIdx == -1)
+            return;
+
+        minValue = values[minIdx];
+        maxValue = values[maxIdx];
+        rangeMinMax = maxValue - minValue;
+    }
+
+    /**
+     * @param idx raw index
+     * @return The value at the raw index.
+     */
+    public long getRaw(int idx) {
+        return values[idx];
+    }
+
+    /**
+     * Copies length values starting at the raw index from into dst. The range
+     * must not wrap around the end of the ring.
+     *
+     * @param from      first raw index
+     * @param dst
+     * @param dstOffset
+     * @param length
+     */
+    public void copyRaw(int from, long[] dst, int dstOffset, int length) {
+        System.arraycopy(values, from, dst, dstOffset, length);
+    }
+
+    /**
+     * Binary search for the first entry that is not smaller than key. The
+     * entries must be sorted in ascending order, like the timestamps of a
+     * plot.
+     *
+     * @param key
+     * @return The logical index (0 is the eldest entry) of the first entry
+     * &gt;= key, num if there is none.
+     */
+    public int lowerBound(long key) {
+        return lowerBound(key, tail, num);
+    }
+
+    /**
+     * @param key
+     * @return The logical index of the first entry &gt; key, num if there is
+     * none, @see #lowerBound(long)
+     */
+    public int upperBound(long key) {
+        return upperBound(key, tail, num);
+    }
+
+    /**
+     * Binary search over the count entries starting at the raw index first,
+     * e.g. a published head/num snapshot of a lock-free producer.
+     *
+     * @param key
+     * @param first raw index of the eldest entry to search
+     * @param count number of entries to search
+     * @return The offset from first of the first entry &gt;= key, count if
+     * there is none.
+     */
+    public int lowerBound(long key, int first, int count) {
+        int lo = 0, hi = count, mid, idx;
+        while (lo < hi) {
+            mid = (lo + hi) >>> 1;
+            idx = first + mid;
+            if (idx >= sizeMax)
+                idx -= sizeMax;
+
+            if (getRaw(idx) < key)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * @param key
+     * @param first raw index of the eldest entry to search
+     * @param count number of entries to search
+     * @return The offset from first of the first entry &gt; key, count if
+     * there is none, @see #lowerBound(long, int, int)
+     */
+    public int upperBound(long key, int first, int count) {
+        if (key == Long.MAX_VALUE)
+            return count;
+        return lowerBound(key + 1, first, count);
+    }
+
     /**
      * Returns the value at the current head position.
      */
@@ -204,6 +452,131 @@ public class LongValueList extends CircularValueList implements List<Long> {
         return values[head];
     }
 
+    /**
+     * Receives the entries of forEachLong() without boxing.
+     */
+    public interface LongVisitor {
+        public void visit(long value);
+    }
+
+    /**
+     * Reads a range of the ring in logical order without boxing. The range
+     * is walked as at most two contiguous segments of the values array, so
+     * nextLong() only compares the position with the end of the current
+     * segment.
+     * Rings that don't keep their values in an array are copied into the
+     * cursor chunk by chunk with copyRaw(). A cursor can be reused with
+     * seek(), it is only valid as long as no entries are added.
+     */
+    public class Cursor {
+        private long[] m_segment = null;
+        private long[] m_chunk = null;
+        private int m_pos = 0, m_end = 0;
+
+        /**
+         * Raw index of the next segment and entries after the current one.
+         */
+        private int m_next = 0, m_remaining = 0;
+
+        /**
+         * Moves the cursor to the ring index rIdx.
+         *
+         * @param rIdx  negative or positive index in the ring
+         * @param count number of entries to read, at most num
+         * @return this
+         */
+        public Cursor seek(int rIdx, int count) {
+            m_next = normIdx(rIdx);
+            m_remaining = count;
+            m_pos = m_end = 0;
+            return this;
+        }
+
+        public boolean hasNext() {
+            return m_pos < m_end || m_remaining > 0;
+        }
+
+        /**
+         * @return The entry at the cursor, then moves to the next one. Check
+         * hasNext() first.
+         */
+        public long nextLong() {
+            if (m_pos == m_end)
+                nextSegment();
+            return m_segment[m_pos++];
+        }
+
+        private void nextSegment() {
+            int len = Math.min(m_remaining, sizeMax - m_next);
+            if (values != null) {
+                m_segment = values;
+                m_pos = m_next;
+            } else {
+                // copy rings without a values array chunk by chunk
+                if (m_chunk == null)
+                    m_chunk = new long[CURSOR_CHUNK];
+                len = Math.min(len, CURSOR_CHUNK);
+                copyRaw(m_next, m_chunk, 0, len);
+                m_segment = m_chunk;
+                m_pos = 0;
+            }
+            m_end = m_pos + len;
+            m_remaining -= len;
+            m_next += len;
+            if (m_next == sizeMax)
+                m_next = 0;
+        }
+    }
+
+    /**
+     * @return A new cursor over all entries, from tail to head.
+     */
+    public Cursor cursor() {
+        return new Cursor().seek(tail, num);
+    }
+
+    /**
+     * Passes all entries to visitor, from tail to head.
+     *
+     * @param visitor
+     */
+    public void forEachLong(LongVisitor visitor) {
+        forEachLong(tail, num, visitor);
+    }
+
+    /**
+     * Passes count entries starting at the ring index rIdx to visitor, in
+     * logical order.
+     *
+     * @param rIdx     negative or positive index in the ring
+     * @param count    number of entries, at most num
+     * @param visitor
+     */
+    public void forEachLong(int rIdx, int count, LongVisitor visitor) {
+        int from = normIdx(rIdx), len, i;
+        while (count > 0) {
+            len = Math.min(count, sizeMax - from);
+            if (values != null) {
+                for (i = from; i < from + len; ++i) {
+                    visitor.visit(values[i]);
+                }
+            } else {
+                if (m_forEachChunk == null)
+                    m_forEachChunk = new long[CURSOR_CHUNK];
+                len = Math.min(len, CURSOR_CHUNK);
+                copyRaw(from, m_forEachChunk, 0, len);
+                for (i = 0; i < len; ++i) {
+                    visitor.visit(m_forEachChunk[i]);
+                }
+            }
+
+            count -= len;
+            from += len;
+            if (from == sizeMax)
+                from = 0;
+        }
+    }
+
     /**
      * Returns the value at position rIdx. It has the same effect as calling
      * this.value[normIdx(rIdx)].
@@ -292,7 +665,22 @@ public class LongValueList extends CircularValueList implements List<Long> {
      * @see java.util.List#iterator()
      */
     public Iterator<Long> iterator() {
-        throw new UnsupportedOperationException();
+        final Cursor cursor = cursor();
+        return new Iterator<Long>() {
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            public Long next() {
+                if (!cursor.hasNext())
+                    throw new NoSuchElementException();
+                return cursor.nextLong();
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
     /*
@@ -0,0 +1,233 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.util.Arrays;
+
+import de.fau.mad.plotview.Plot.PlotMarker;
+
+/**
+ * Map from raw ring indices (&gt;= 0) to PlotMarkers, with at most one marker
+ * per index. Open addressing with linear probing on primitive int keys, so
+ * get(), put() and remove() are O(1) on average and don't create objects.
+ * Removal shifts the following entries back instead of leaving tombstones,
+ * so lookups don't degrade over a long session.
+ * <p>
+ * Range queries are not supported by the map itself. The set flags of the
+ * Plot's inspectValues give the occupied indices of a range, @see
+ * BitValueList#nextSetDistance(int, int)
+ */
+public class MarkerMap {
+    private static final int FREE = -1;
+
+    private int[] m_keys;
+    private PlotMarker[] m_values;
+    private int m_mask;
+    private int m_size = 0;
+
+    /**
+     * @param expectedSize Number of markers that fit without growing.
+     */
+    public MarkerMap(int expectedSize) {
+        int capacity = 8;
+        // keep the load factor at or below 0.5
+        while (capacity < expectedSize << 1)
+            capacity <<= 1;
+
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        m_keys = new int[capacity];
+        Arrays.fill(m_keys, FREE);
+        m_values = new PlotMarker[capacity];
+        m_mask = capacity - 1;
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & m_mask;
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    /**
+     * @param key raw ring index
+     * @return The marker at key or null.
+     */
+    public PlotMarker get(int key) {
+        if (m_size == 0)
+            return null;
+
+        int s = slot(key);
+        int k;
+        while ((k = m_keys[s]) != FREE) {
+            if (k == key)
+                return m_values[s];
+            s = (s + 1) & m_mask;
+        }
+        return null;
+    }
+
+    /**
+     * Sets the marker of key.
+     *
+     * @param key    raw ring index, &gt;= 0
+     * @param marker must not be null
+     * @return The marker previously set for key, or null.
+     */
+    public PlotMarker put(int key, PlotMarker marker) {
+        if (key < 0)
+            throw new IllegalArgumentException("Invalid key " + key);
+
+        if (m_size + 1 > (m_mask + 1) >> 1)
+            rehash((m_mask + 1) << 1);
+
+        int s = slot(key);
+        int k;
+        while ((k = m_keys[s]) != FREE) {
+            if (k == key) {
+                PlotMarker prev = m_values[s];
+                m_values[s] = marker;
+                return prev;
+            }
+            s = (s + 1) & m_mask;
+        }
+
+        m_keys[s] = key;
+        m_values[s] = marker;
+        ++m_size;
+        return null;
+    }
+
+    /**
+     * Removes the marker of key.
+     *
+     * @param key raw ring index
+     * @return The removed marker or null if there was none.
+     */
+    public PlotMarker remove(int key) {
+        if (m_size == 0)
+            return null;
+
+        int s = slot(key);
+        int k;
+        while ((k = m_keys[s]) != FREE) {
+            if (k == key) {
+                PlotMarker prev = m_values[s];
+                removeSlot(s);
+                return prev;
+            }
+            s = (s + 1) & m_mask;
+        }
+        return null;
+    }
+
+    /**
+     * Removes all markers of the raw index range [first, first + count[ of a
+     * ring with sizeMax entries. The range may wrap around the end of the
+     * ring.
+     *
+     * @param first
+     * @param count
+     * @param sizeMax
+     */
+    public void removeRange(int first, int count, int sizeMax) {
+        if (m_size == 0 || count <= 0)
+            return;
+        if (count > sizeMax)
+            count = sizeMax;
+
+        if (count <= m_mask + 1) {
+            // fewer keys than slots: look up every key
+            int key = first;
+            for (int i = 0; i < count && m_size > 0; ++i) {
+                remove(key);
+                if (++key == sizeMax)
+                    key = 0;
+            }
+            return;
+        }
+
+        // otherwise visit every slot. A removal may shift a later entry
+        // into the current slot, so only advance if nothing was removed.
+        int dist;
+        for (int s = 0; s <= m_mask && m_size > 0; ) {
+            if (m_keys[s] != FREE) {
+                dist = m_keys[s] - first;
+                if (dist < 0)
+                    dist += sizeMax;
+                if (dist < count) {
+                    removeSlot(s);
+                    continue;
+                }
+            }
+            ++s;
+        }
+    }
+
+    public void clear() {
+        if (m_size == 0)
+            return;
+
+        Arrays.fill(m_keys, FREE);
+        Arrays.fill(m_values, null);
+        m_size = 0;
+    }
+
+    /**
+     * Empties slot s and moves the entries of the following probe sequence
+     * back, so no lookup passes a free slot before reaching its key.
+     */
+    private void removeSlot(int s) {
+        int next = s, k, home;
+        while (true) {
+            next = (next + 1) & m_mask;
+            k = m_keys[next];
+            if (k == FREE)
+                break;
+
+            // the entry may move to s only if s lies cyclically between its
+            // home slot and its current slot
+            home = slot(k);
+            if (((next - home) & m_mask) >= ((next - s) & m_mask)) {
+                m_keys[s] = k;
+                m_values[s] = m_values[next];
+                s = next;
+            }
+        }
+
+        m_keys[s] = FREE;
+        m_values[s] = null;
+        --m_size;
+    }
+
+    private void rehash(int capacity) {
+        int[] keys = m_keys;
+        PlotMarker[] values = m_values;
+
+        allocate(capacity);
+        m_size = 0;
+
+        for (int i = 0; i < keys.length; ++i) {
+            if (keys[i] != FREE)
+                put(keys[i], values[i]);
+        }
+    }
+}
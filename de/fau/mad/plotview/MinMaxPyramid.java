@@ -0,0 +1,240 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.util.Arrays;
+
+/**
+ * Multi-resolution min/max index over the raw float array of a
+ * FloatValueList.
+ * <p>
+ * The array is divided into blocks of BLOCK_SIZE entries. Every block is a
+ * leaf of a segment tree that stores the min and max of all its children, so
+ * the extremes of any raw index range can be found in O(log n) plus at most
+ * two partial blocks at the range borders. Updating a single entry is O(log n)
+ * and only rescans its own block if the overwritten value was the block's
+ * extreme.
+ * <p>
+ * The index needs about 1/8 of the memory of the indexed values.
+ * <p>
+ * query() keeps its state on the stack, so it may run on a reader thread
+ * while a single producer updates the index. It then may see the extremes
+ * of a block before or after the producer's latest update.
+ */
+public class MinMaxPyramid {
+    public static final int BLOCK_SHIFT = 5;
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    /**
+     * Number of leaves, always a power of two
+     */
+    private final int leaves;
+    private final int capacity;
+
+    private final float[] treeMin;
+    private final float[] treeMax;
+
+    /**
+     * @param capacity Number of entries of the indexed array.
+     */
+    public MinMaxPyramid(int capacity) {
+        this.capacity = capacity;
+
+        int blocks = ((capacity - 1) >> BLOCK_SHIFT) + 1;
+        int l = 1;
+        while (l < blocks)
+            l <<= 1;
+        leaves = l;
+
+        treeMin = new float[leaves << 1];
+        treeMax = new float[leaves << 1];
+
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(treeMin, Float.POSITIVE_INFINITY);
+        Arrays.fill(treeMax, Float.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Rebuilds the entire index.
+     *
+     * @param values the indexed array
+     * @param num    number of valid entries, starting at index 0
+     */
+    public void rebuild(float[] values, int num) {
+        clear();
+
+        for (int b = 0; (b << BLOCK_SHIFT) < num; ++b) {
+            scanBlock(values, b, num);
+        }
+
+        for (int i = leaves - 1; i > 0; --i) {
+            treeMin[i] = Math.min(treeMin[i << 1], treeMin[(i << 1) + 1]);
+            treeMax[i] = Math.max(treeMax[i << 1], treeMax[(i << 1) + 1]);
+        }
+    }
+
+    /**
+     * Updates the index after values[idx] has been written.
+     *
+     * @param values   the indexed array
+     * @param idx      index that has been written
+     * @param oldValue the value that was stored at idx before
+     * @param replaced whether oldValue was a valid entry
+     * @param num      number of valid entries, starting at index 0
+     */
+    public void update(float[] values, int idx, float oldValue, boolean replaced, int num) {
+        int node = leaves + (idx >> BLOCK_SHIFT);
+        final float v = values[idx];
+
+        if (replaced && (oldValue <= treeMin[node] || oldValue >= treeMax[node])) {
+            // we overwrote the extreme of this block, rescan it
+            scanBlock(values, idx >> BLOCK_SHIFT, num);
+        } else {
+            if (v < treeMin[node])
+                treeMin[node] = v;
+            if (v > treeMax[node])
+                treeMax[node] = v;
+        }
+
+        // propagate upwards until nothing changes anymore
+        float nMin, nMax;
+        for (node >>= 1; node > 0; node >>= 1) {
+            nMin = Math.min(treeMin[node << 1], treeMin[(node << 1) + 1]);
+            nMax = Math.max(treeMax[node << 1], treeMax[(node << 1) + 1]);
+            if (nMin == treeMin[node] && nMax == treeMax[node])
+                break;
+            treeMin[node] = nMin;
+            treeMax[node] = nMax;
+        }
+    }
+
+    /**
+     * Updates the index after the raw range values[from..to] has been written
+     * in one go. Every touched block is rescanned once and all its ancestors
+     * are recalculated.
+     *
+     * @param values the indexed array
+     * @param from   first written index, inclusive
+     * @param to     last written index, inclusive. Must be &gt;= from.
+     * @param num    number of valid entries, starting at index 0
+     */
+    public void updateRange(float[] values, int from, int to, int num) {
+        int bFrom = from >> BLOCK_SHIFT;
+        int bTo = to >> BLOCK_SHIFT;
+
+        for (int b = bFrom; b <= bTo; ++b) {
+            scanBlock(values, b, num);
+        }
+
+        int l = (leaves + bFrom) >> 1;
+        int r = (leaves + bTo) >> 1;
+        for (; l > 0; l >>= 1, r >>= 1) {
+            for (int node = l; node <= r; ++node) {
+                treeMin[node] = Math.min(treeMin[node << 1], treeMin[(node << 1) + 1]);
+                treeMax[node] = Math.max(treeMax[node << 1], treeMax[(node << 1) + 1]);
+            }
+        }
+    }
+
+    /**
+     * Finds the min and max of values[from..to].
+     *
+     * @param values the indexed array
+     * @param from   first raw index, inclusive
+     * @param to     last raw index, inclusive. Must be &gt;= from.
+     * @param result receives the min at [0] and the max at [1]
+     */
+    public void query(float[] values, int from, int to, float[] result) {
+        result[0] = Float.POSITIVE_INFINITY;
+        result[1] = Float.NEGATIVE_INFINITY;
+
+        int bFrom = from >> BLOCK_SHIFT;
+        int bTo = to >> BLOCK_SHIFT;
+
+        if (bFrom == bTo) {
+            scanRange(values, from, to, result);
+            return;
+        }
+
+        // partial block at the beginning
+        if ((from & (BLOCK_SIZE - 1)) != 0) {
+            scanRange(values, from, ((bFrom + 1) << BLOCK_SHIFT) - 1, result);
+            ++bFrom;
+        }
+
+        // partial block at the end
+        if (((to + 1) & (BLOCK_SIZE - 1)) != 0 && to != capacity - 1) {
+            scanRange(values, bTo << BLOCK_SHIFT, to, result);
+            --bTo;
+        }
+
+        // all full blocks in between
+        int l = bFrom + leaves;
+        int r = bTo + leaves + 1;
+        while (l < r) {
+            if ((l & 1) != 0) {
+                take(l, result);
+                ++l;
+            }
+            if ((r & 1) != 0) {
+                --r;
+                take(r, result);
+            }
+            l >>= 1;
+            r >>= 1;
+        }
+    }
+
+    private void take(int node, float[] result) {
+        if (treeMin[node] < result[0])
+            result[0] = treeMin[node];
+        if (treeMax[node] > result[1])
+            result[1] = treeMax[node];
+    }
+
+    private static void scanRange(float[] values, int from, int to, float[] result) {
+        for (int i = from; i <= to; ++i) {
+            if (values[i] < result[0])
+                result[0] = values[i];
+            if (values[i] > result[1])
+                result[1] = values[i];
+        }
+    }
+
+    /**
+     * Recalculates the leaf of the given block from the raw values.
+     */
+    private void scanBlock(float[] values, int block, int num) {
+        int from = block << BLOCK_SHIFT;
+        int to = Math.min(from + BLOCK_SIZE, num) - 1;
+
+        float bMin = Float.POSITIVE_INFINITY;
+        float bMax = Float.NEGATIVE_INFINITY;
+        for (int i = from; i <= to; ++i) {
+            if (values[i] < bMin)
+                bMin = values[i];
+            if (values[i] > bMax)
+                bMax = values[i];
+        }
+
+        treeMin[leaves + block] = bMin;
+        treeMax[leaves + block] = bMax;
+    }
+}
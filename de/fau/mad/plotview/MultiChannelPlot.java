@@ -0,0 +1,369 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import de.fau.mad.plotview.PlotView.PlotSurface;
+import junit.framework.Assert;
+
+/**
+ * SamplingPlot for several channels sampled on the same clock, e.g. the axes
+ * of an IMU. All channels share one x ring and one set of markers, each
+ * channel has its own FloatValueList, the first one being values.
+ * <p>
+ * A tick of all channels is added with a single addValues(long, float...)
+ * call, which takes the data lock only once. draw() computes the viewport
+ * once, decimates all channels under one lock and then draws one polyline
+ * per channel. The y axis is scaled to the range of all channels.
+ * <p>
+ * Markers are drawn on the first channel. The save methods only write the
+ * first channel.
+ */
+public class MultiChannelPlot extends SamplingPlot {
+    /**
+     * The value rings, m_channels[0] == values.
+     */
+    protected FloatValueList[] m_channels;
+
+    /**
+     * Paints of the channels, the first channel uses m_paint.
+     */
+    protected Paint[] m_channelPaints;
+
+    protected SampleDecimator[] m_decimators;
+
+    /**
+     * TRANSIENT variables
+     */
+    private transient int tChannel;
+    private transient float tValue;
+
+    /**
+     * @param plotTitle
+     * @param paints         one Paint per channel, entries may be null
+     * @param style
+     * @param maxCache
+     * @param maintainMinMax
+     */
+    public MultiChannelPlot(String plotTitle, Paint[] paints, PlotStyle style, int maxCache,
+                            boolean maintainMinMax) {
+        super(plotTitle, paints[0], style, maxCache, maintainMinMax);
+        initChannels(paints, maintainMinMax);
+    }
+
+    /**
+     * Creates a plot with an implicit time axis, @see
+     * SamplingPlot#SamplingPlot(String, Paint, PlotStyle, int, boolean,
+     * double)
+     *
+     * @param plotTitle
+     * @param paints           one Paint per channel, entries may be null
+     * @param style
+     * @param maxCache
+     * @param maintainMinMax
+     * @param samplingRateInHz
+     */
+    public MultiChannelPlot(String plotTitle, Paint[] paints, PlotStyle style, int maxCache,
+                            boolean maintainMinMax, double samplingRateInHz) {
+        super(plotTitle, paints[0], style, maxCache, maintainMinMax, samplingRateInHz);
+        initChannels(paints, maintainMinMax);
+    }
+
+    private void initChannels(Paint[] paints, boolean maintainMinMax) {
+        m_channelPaints = new Paint[paints.length];
+        for (int c = 1; c < paints.length; ++c) {
+            m_channelPaints[c] = paints[c] != null ? paints[c] : Plot.generatePlotPaint();
+        }
+
+        m_decimators = new SampleDecimator[paints.length];
+        m_decimators[0] = m_decimator;
+        for (int c = 1; c < paints.length; ++c) {
+            m_decimators[c] = new SampleDecimator();
+        }
+
+        // allocate arrays
+        m_dataLock.lock();
+        m_channels = new FloatValueList[paints.length];
+        m_channels[0] = values;
+        for (int c = 1; c < paints.length; ++c) {
+            m_channels[c] = new FloatValueList(m_maxCachedEntries, maintainMinMax);
+        }
+        m_dataLock.unlock();
+    }
+
+    public int getChannelCount() {
+        return m_channels.length;
+    }
+
+    /**
+     * @param channel
+     * @return The value ring of the channel. Access it only with m_dataLock
+     * held.
+     */
+    public FloatValueList getChannel(int channel) {
+        return m_channels[channel];
+    }
+
+    /**
+     * Sets the paint of a channel. Setting the paint of channel 0 is the same
+     * as setPaint().
+     *
+     * @param channel
+     * @param paint
+     */
+    public void setChannelPaint(int channel, Paint paint) {
+        if (channel == 0)
+            setPaint(paint);
+        else if (paint != null)
+            m_channelPaints[channel] = paint;
+    }
+
+    /**
+     * Adds one sample to every channel, all with the same x coordinate. The
+     * data lock is taken only once and plotChanged() is fired once.
+     * <p>
+     * Pass a reused float[] instead of separate arguments to avoid the varargs
+     * allocation.
+     *
+     * @param x X coordinate
+     * @param v one value per channel
+     */
+    public void addValues(long x, float... v) {
+        if (v.length < m_channels.length)
+            throw new IllegalArgumentException("Expected " + m_channels.length + " values, got " + v.length);
+
+        m_dataLock.lock();
+
+        addValuesFast(x, v);
+
+        // make sure any potential marker on the old position is removed
+        setMarker(values.head, null);
+
+        if (m_lockFree)
+            publish();
+
+        m_dataLock.unlock();
+
+        plotChanged();
+    }
+
+    /**
+     * Multi-channel counterpart of addValueFast(), skips the lock, marker
+     * and plotChange listener.
+     *
+     * @param x X coordinate
+     * @param v one value per channel
+     */
+    public void addValuesFast(long x, float[] v) {
+        this.x.add(x);
+
+        for (tChannel = 0; tChannel < m_channels.length; ++tChannel) {
+            m_channels[tChannel].add(v[tChannel]);
+        }
+
+        inspectValues.add(false);
+    }
+
+    /**
+     * Adds value to the first channel. The other channels repeat their last
+     * value, so all rings stay aligned.
+     */
+    @Override
+    public void addValueFast(float value, long x) {
+        this.x.add(x);
+        values.add(value);
+        holdChannels(1);
+        inspectValues.add(false);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see MultiChannelPlot#addValueFast(float, long)
+     */
+    @Override
+    public void addValueFast(long value, long x) {
+        addValueFast((float) value, x);
+    }
+
+    /**
+     * Adds the block to the first channel. The other channels repeat their
+     * last value, so all rings stay aligned.
+     */
+    @Override
+    protected void addValuesFast(float[] v, long[] x, int offset, int length) {
+        super.addValuesFast(v, x, offset, length);
+        // a full round plus the remainder moves head like length adds
+        holdChannels(length >= values.sizeMax ? values.sizeMax + length % values.sizeMax : length);
+    }
+
+    /**
+     * Adds count copies of the head value to every channel but the first.
+     */
+    private void holdChannels(int count) {
+        for (tChannel = 1; tChannel < m_channels.length; ++tChannel) {
+            tValue = m_channels[tChannel].getHeadValue();
+            for (int i = 0; i < count; ++i) {
+                m_channels[tChannel].add(tValue);
+            }
+            Assert.assertTrue(m_channels[tChannel].head == values.head);
+        }
+    }
+
+    @Override
+    public void clear() {
+        m_dataLock.lock();
+        for (tChannel = 1; tChannel < m_channels.length; ++tChannel) {
+            m_channels[tChannel].clear();
+        }
+        m_dataLock.unlock();
+
+        super.clear();
+    }
+
+    @Override
+    public void setMinMaxPyramid(boolean enable) {
+        m_dataLock.lock();
+        for (tChannel = 0; tChannel < m_channels.length; ++tChannel) {
+            m_channels[tChannel].setMinMaxPyramid(enable);
+        }
+        m_dataLock.unlock();
+    }
+
+    @Override
+    public void setPrefixSums(boolean enable) {
+        m_dataLock.lock();
+        for (tChannel = 0; tChannel < m_channels.length; ++tChannel) {
+            m_channels[tChannel].setPrefixSums(enable);
+        }
+        m_dataLock.unlock();
+    }
+
+    /**
+     * Converts all channels, @see Plot1D#setValueCompression(boolean, int)
+     */
+    @Override
+    public void setValueCompression(boolean enable, int hotSize) {
+        if (enable && m_lockFree)
+            throw new IllegalStateException("Value compression with lock-free ingestion");
+
+        m_dataLock.lock();
+        for (tChannel = 0; tChannel < m_channels.length; ++tChannel) {
+            m_channels[tChannel] = convertValues(m_channels[tChannel], enable, hotSize);
+        }
+        values = m_channels[0];
+        m_dataLock.unlock();
+    }
+
+    @Override
+    public void setSlidingMinMax(boolean enable) {
+        m_dataLock.lock();
+        for (tChannel = 0; tChannel < m_channels.length; ++tChannel) {
+            m_channels[tChannel].setSlidingMinMax(enable);
+        }
+        x.setSlidingMinMax(enable);
+        m_dataLock.unlock();
+    }
+
+    @Override
+    protected float getValueMin() {
+        float min = values.minValue;
+        for (tChannel = 1; tChannel < m_channels.length; ++tChannel) {
+            if (m_channels[tChannel].minValue < min)
+                min = m_channels[tChannel].minValue;
+        }
+        return min;
+    }
+
+    @Override
+    protected float getValueMax() {
+        float max = values.maxValue;
+        for (tChannel = 1; tChannel < m_channels.length; ++tChannel) {
+            if (m_channels[tChannel].maxValue > max)
+                max = m_channels[tChannel].maxValue;
+        }
+        return max;
+    }
+
+    @Override
+    protected float getValueRange() {
+        if (!values.maintainMinMax)
+            return values.rangeMinMax;
+        return getValueMax() - getValueMin();
+    }
+
+    /**
+     * Draws all channels with the viewport of the first one.
+     */
+    @Override
+    protected void draw(Canvas can, PlotSurface surface) {
+        getViewport(surface);
+
+        m_dataLock.lock();
+
+        // check if there is anything to draw
+        if (m_idxNum < 1 || m_numIdxPerPixel == 0) {
+            m_dataLock.unlock();
+            return;
+        }
+
+        // if this isn't the masterplot, use its scale values
+        if (surface.masterPlot != this) {
+            m_yPxScale = surface.masterPlot.m_yPxScale;
+            m_yPxTrans = surface.masterPlot.m_yPxTrans;
+        }
+
+        // invalidate overlay marker
+        m_markerOverlay = null;
+        m_markerLast = 0f;
+        m_markerInvalid = false;
+
+        // save canvas before operations
+        can.save();
+
+        try {
+            // ==============> decimate all channels while the rings are locked
+            tMarkerCanvas = can;
+            tMarkerSurface = surface;
+            for (tChannel = 0; tChannel < m_channels.length; ++tChannel) {
+                m_decimators[tChannel].decimate(m_channels[tChannel], inspectValues, m_idxStart, m_idxNum,
+                        m_numIdxPerPixel, m_yPxTrans, m_yPxScale,
+                        tChannel == 0 && m_markers.size() > 0 ? m_markerDrawer : null);
+            }
+            tMarkerCanvas = null;
+            tMarkerSurface = null;
+            // <=============
+
+            m_dataLock.unlock();
+
+            // ==============> draw paths
+            for (tChannel = 0; tChannel < m_channels.length; ++tChannel) {
+                m_plotCanvas.set(can, tChannel == 0 ? m_paint : m_channelPaints[tChannel]).drawPolyline(
+                        m_decimators[tChannel].points, 0, m_decimators[tChannel].count);
+            }
+            // <=============
+        } catch (Exception e) {
+            m_dataLock.unlock();
+            e.printStackTrace();
+        }
+
+        // restore original canvas
+        can.restore();
+    }
+}
@@ -0,0 +1,442 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import android.graphics.Paint;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.fau.mad.plotview.PlotView.PlotSurface;
+
+/**
+ * Plot1D that browses a binary recording (@see RecordingFile) of arbitrary
+ * size without loading it into memory.
+ * <p>
+ * The value rings of this plot only hold a window of windowSize entries. On
+ * every getViewport() the part of the recording that is visible is copied
+ * into the window, which is then drawn like any other Plot1D. If more
+ * samples are visible than fit into the window, the window receives the
+ * min/max envelope of the visible range instead. For very large ranges the
+ * envelope is built from the chunk index alone, without touching the samples.
+ * <p>
+ * Chunks are memory mapped on demand and kept in an LRU cache until the
+ * mapped bytes exceed the memory cap. Evicted chunks are unmapped by the
+ * garbage collector, so the cap is a soft limit.
+ * <p>
+ * The surface x translation and scale are interpreted in samples of the
+ * recording, i.e. xTrans 0 shows the end of the recording. The plot is
+ * read-only, values added with addValue() are discarded on the next refill.
+ */
+public class PagedPlot extends Plot1D {
+    public static final long DEFAULT_MEMORY_CAP = 32L << 20;
+
+    protected RecordingFile m_recording;
+
+    /**
+     * Recording index of the first sample of each chunk
+     */
+    protected final long[] m_chunkStart;
+
+    private final LinkedHashMap<Integer, ByteBuffer> m_pages;
+    private long m_mappedBytes = 0;
+    private long m_memoryCap;
+
+    /**
+     * Recording range currently held by the rings
+     */
+    private long m_loadedFirst = -1, m_loadedLast = -1;
+
+    /**
+     * xScale that was used for the last valid viewport
+     */
+    private float m_pagedXScale = 1f;
+
+    private final long[] m_fillX;
+    private final float[] m_fillValues;
+
+    /**
+     * Statistics of the page cache
+     */
+    public long pageHits = 0, pageMisses = 0;
+
+    /**
+     * TRANSIENT variables
+     */
+    private transient float tMin, tMax;
+    private transient long tMinX, tMaxX;
+    private transient int tFill;
+
+    /**
+     * Opens the given recording for browsing.
+     *
+     * @param plotTitle  Title of the plot.
+     * @param paint      Paint to draw the plot with. May be null.
+     * @param style      PlotStyle
+     * @param filePath   The binary recording to browse.
+     * @param windowSize Number of entries of the window rings, should be at
+     *                   least twice the width of the view in pixels.
+     * @param memoryCap  Maximum number of bytes to keep mapped.
+     * @throws IOException if the recording can't be opened.
+     */
+    public PagedPlot(String plotTitle, Paint paint, PlotStyle style, String filePath, int windowSize, long memoryCap)
+            throws IOException {
+        super(plotTitle, paint, style, windowSize);
+
+        m_recording = RecordingFile.openForReading(new File(filePath));
+        m_memoryCap = memoryCap > 0 ? memoryCap : DEFAULT_MEMORY_CAP;
+
+        m_chunkStart = new long[m_recording.chunkCount + 1];
+        for (int c = 0; c < m_recording.chunkCount; ++c) {
+            m_chunkStart[c + 1] = m_chunkStart[c] + m_recording.chunkNum[c];
+        }
+
+        m_pages = new LinkedHashMap<Integer, ByteBuffer>(16, 0.75f, true);
+
+        m_fillX = new long[values.sizeMax];
+        m_fillValues = new float[values.sizeMax];
+    }
+
+    /**
+     * @return Number of samples in the recording.
+     */
+    public long getRecordingSize() {
+        return m_chunkStart[m_recording.chunkCount];
+    }
+
+    /**
+     * Sets the maximum number of bytes that are kept mapped.
+     *
+     * @param memoryCap
+     */
+    public void setMemoryCap(long memoryCap) {
+        m_dataLock.lock();
+        m_memoryCap = memoryCap > 0 ? memoryCap : DEFAULT_MEMORY_CAP;
+        evictPages();
+        m_dataLock.unlock();
+    }
+
+    /**
+     * Releases all pages and closes the recording.
+     */
+    public void close() {
+        m_dataLock.lock();
+        try {
+            m_pages.clear();
+            m_mappedBytes = 0;
+            m_recording.close();
+        } catch (IOException e) {
+            Log.w(PlotView.TAG, "Error closing recording", e);
+        } finally {
+            m_dataLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        m_dataLock.lock();
+        super.clear();
+        m_loadedFirst = m_loadedLast = -1;
+        m_dataLock.unlock();
+    }
+
+    /**
+     * Loads the visible part of the recording into the rings and calculates
+     * the viewport of the rings like Plot1D does.
+     */
+    @Override
+    public void getViewport(PlotSurface surface) {
+        final long total = getRecordingSize();
+        if (total <= 0) {
+            super.getViewport(surface);
+            return;
+        }
+
+        m_dataLock.lock();
+        try {
+            // ==============> visible range of the recording
+            long visible = total;
+            if (m_desiredViewportIdxNum > 0 && m_desiredViewportIdxNum < total)
+                visible = m_desiredViewportIdxNum;
+
+            visible = (long) (visible * surface.xScale);
+            if (visible < 2) {
+                visible = Math.min(2, total);
+                surface.xScale = m_pagedXScale;
+            } else if (visible > total) {
+                visible = total;
+                surface.xScale = m_pagedXScale;
+                surface.xTrans = 0;
+            } else {
+                m_pagedXScale = surface.xScale;
+            }
+
+            long trans = (long) surface.xTrans;
+            if (trans < visible - total) {
+                trans = visible - total;
+                surface.xTrans = trans;
+            }
+            // don't scroll into the future
+            if (trans > 0) {
+                trans = 0;
+                surface.xTrans = 0;
+            }
+
+            final long last = total - 1 + trans;
+            final long first = last - visible + 1;
+            // <=============
+
+            if (first != m_loadedFirst || last != m_loadedLast) {
+                try {
+                    if (visible <= values.sizeMax)
+                        loadRaw(first, last);
+                    else
+                        loadEnvelope(first, last);
+
+                    m_loadedFirst = first;
+                    m_loadedLast = last;
+                } catch (IOException e) {
+                    Log.w(PlotView.TAG, "Error paging recording", e);
+                    m_loadedFirst = m_loadedLast = -1;
+                }
+            }
+
+            // ==============> let Plot1D lay out the entire window
+            final float xScale = surface.xScale;
+            final float xTrans = surface.xTrans;
+            final int desired = m_desiredViewportIdxNum;
+
+            surface.xScale = 1f;
+            surface.xTrans = 0;
+            m_desiredViewportIdxNum = -1;
+
+            super.getViewport(surface);
+
+            surface.xScale = xScale;
+            surface.xTrans = xTrans;
+            m_desiredViewportIdxNum = desired;
+            // <=============
+        } finally {
+            m_dataLock.unlock();
+        }
+    }
+
+    /**
+     * Copies the samples [first, last] of the recording into the rings.
+     */
+    private void loadRaw(long first, long last) throws IOException {
+        tFill = 0;
+
+        int chunk = findChunk(first);
+        long idx = first;
+        ByteBuffer page;
+        int n, from, to, i;
+
+        while (idx <= last) {
+            page = getPage(chunk);
+            n = m_recording.chunkNum[chunk];
+            from = (int) (idx - m_chunkStart[chunk]);
+            to = (int) Math.min(n - 1, last - m_chunkStart[chunk]);
+
+            for (i = from; i <= to; ++i) {
+                m_fillX[tFill] = page.getLong(i << 3);
+                m_fillValues[tFill] = page.getFloat((n << 3) + (i << 2));
+                ++tFill;
+            }
+
+            idx = m_chunkStart[chunk] + to + 1;
+            ++chunk;
+        }
+
+        fillRings();
+    }
+
+    /**
+     * Fills the rings with the min/max envelope of the samples [first, last]
+     * of the recording, two entries per bucket.
+     */
+    private void loadEnvelope(long first, long last) throws IOException {
+        final int buckets = values.sizeMax >> 1;
+        final int chunkFirst = findChunk(first);
+        final int chunkLast = findChunk(last);
+        final int chunks = chunkLast - chunkFirst + 1;
+
+        tFill = 0;
+
+        if (chunks >= buckets) {
+            // every bucket covers whole chunks, the index is sufficient. The
+            // partial chunks at both ends are included completely.
+            int cFrom, cTo;
+            for (int b = 0; b < buckets; ++b) {
+                cFrom = chunkFirst + (int) ((long) b * chunks / buckets);
+                cTo = chunkFirst + (int) ((long) (b + 1) * chunks / buckets) - 1;
+                if (cTo < cFrom)
+                    continue;
+
+                tMin = Float.POSITIVE_INFINITY;
+                tMax = Float.NEGATIVE_INFINITY;
+                for (int c = cFrom; c <= cTo; ++c) {
+                    if (m_recording.chunkMin[c] < tMin)
+                        tMin = m_recording.chunkMin[c];
+                    if (m_recording.chunkMax[c] > tMax)
+                        tMax = m_recording.chunkMax[c];
+                }
+
+                emit(m_recording.chunkFirstX[cFrom], tMin, m_recording.chunkLastX[cTo], tMax);
+            }
+        } else {
+            // buckets are smaller than chunks, scan the mapped samples
+            final long visible = last - first + 1;
+            long bFrom, bTo;
+            for (int b = 0; b < buckets; ++b) {
+                bFrom = first + b * visible / buckets;
+                bTo = first + (b + 1) * visible / buckets - 1;
+                if (bTo < bFrom)
+                    continue;
+
+                scanRange(bFrom, bTo);
+
+                // keep the order of the extremes
+                if (tMinX <= tMaxX)
+                    emit(tMinX, tMin, tMaxX, tMax);
+                else
+                    emit(tMaxX, tMax, tMinX, tMin);
+            }
+        }
+
+        fillRings();
+    }
+
+    private void emit(long x1, float v1, long x2, float v2) {
+        m_fillX[tFill] = x1;
+        m_fillValues[tFill] = v1;
+        ++tFill;
+        m_fillX[tFill] = x2;
+        m_fillValues[tFill] = v2;
+        ++tFill;
+    }
+
+    /**
+     * Finds the min and max of the samples [from, to] of the recording and
+     * stores them in tMin/tMinX and tMax/tMaxX.
+     */
+    private void scanRange(long from, long to) throws IOException {
+        tMin = Float.POSITIVE_INFINITY;
+        tMax = Float.NEGATIVE_INFINITY;
+
+        int chunk = findChunk(from);
+        long idx = from;
+        ByteBuffer page;
+        int n, i, iFrom, iTo, minI = 0, maxI = 0;
+        float v;
+
+        while (idx <= to) {
+            page = getPage(chunk);
+            n = m_recording.chunkNum[chunk];
+            iFrom = (int) (idx - m_chunkStart[chunk]);
+            iTo = (int) Math.min(n - 1, to - m_chunkStart[chunk]);
+
+            minI = maxI = -1;
+            for (i = iFrom; i <= iTo; ++i) {
+                v = page.getFloat((n << 3) + (i << 2));
+                if (v < tMin) {
+                    tMin = v;
+                    minI = i;
+                }
+                if (v > tMax) {
+                    tMax = v;
+                    maxI = i;
+                }
+            }
+
+            if (minI >= 0)
+                tMinX = page.getLong(minI << 3);
+            if (maxI >= 0)
+                tMaxX = page.getLong(maxI << 3);
+
+            idx = m_chunkStart[chunk] + iTo + 1;
+            ++chunk;
+        }
+    }
+
+    private void fillRings() {
+        values.clear();
+        x.clear();
+        inspectValues.clear();
+
+        x.add(m_fillX, 0, tFill);
+        values.add(m_fillValues, 0, tFill);
+        inspectValues.addRepeated(false, tFill);
+    }
+
+    /**
+     * @param idx recording index of a sample
+     * @return index of the chunk holding the sample
+     */
+    protected int findChunk(long idx) {
+        int lo = 0, hi = m_recording.chunkCount - 1, mid;
+        while (lo < hi) {
+            mid = (lo + hi + 1) >>> 1;
+            if (m_chunkStart[mid] <= idx)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the mapped chunk, mapping it if it isn't cached yet.
+     *
+     * @param chunk
+     * @return
+     * @throws IOException
+     */
+    protected ByteBuffer getPage(int chunk) throws IOException {
+        ByteBuffer page = m_pages.get(chunk);
+        if (page != null) {
+            ++pageHits;
+            return page;
+        }
+
+        ++pageMisses;
+        page = m_recording.mapChunk(chunk);
+        m_pages.put(chunk, page);
+        m_mappedBytes += page.capacity();
+
+        evictPages();
+
+        return page;
+    }
+
+    /**
+     * Drops the least recently used pages until the memory cap is met. The
+     * most recently used page is always kept.
+     */
+    private void evictPages() {
+        Iterator<Map.Entry<Integer, ByteBuffer>> it = m_pages.entrySet().iterator();
+        while (m_mappedBytes > m_memoryCap && m_pages.size() > 1 && it.hasNext()) {
+            m_mappedBytes -= it.next().getValue().capacity();
+            it.remove();
+        }
+    }
+}
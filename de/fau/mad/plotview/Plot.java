@@ -21,13 +21,13 @@ import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Paint.Align;
 import android.graphics.Paint.Style;
-import android.graphics.Rect;
 import android.graphics.RectF;
 import android.text.format.Time;
 
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -78,9 +78,10 @@ public abstract class Plot {
      * indicate whether the drawing function has to inspect the mapped value
      * further for e.g. markers at that specific index. If the inspectValues
      * list contains a <code>true</code> a the given index, that value will be
-     * inspected.
+     * inspected. The flags are bit-packed, so the drawing function can skip
+     * to the few set entries.
      */
-    public BooleanValueList inspectValues;
+    public BitValueList inspectValues;
 
     /**
      * Default number of preallocated markers.
@@ -88,10 +89,14 @@ public abstract class Plot {
     private static final int DEFAULT_NUM_MARKERS = 128;
 
     /**
-     * List of all active markers.
+     * All active markers bound to an entry, by raw ring index.
      */
-    // TODO: change to hashtable?!
-    protected ArrayList<PlotMarker> m_markers = new ArrayList<PlotMarker>(DEFAULT_NUM_MARKERS);
+    protected MarkerMap m_markers = new MarkerMap(DEFAULT_NUM_MARKERS);
+
+    /**
+     * Markers that are always drawn, independently of any entry.
+     */
+    protected ArrayList<PlotMarker> m_globalMarkers = new ArrayList<PlotMarker>();
 
     /**
      * the plot's title
@@ -257,7 +262,13 @@ public abstract class Plot {
         /**
          * The most recent y-value of the plot is represented by a text
          */
-        TEXT
+        TEXT,
+        /**
+         * The number of samples per pixel cell is represented by the opacity
+         * of the cell, for scatter plots with too many points to draw one by
+         * one
+         */
+        DENSITY
     }
 
     /**
@@ -499,6 +510,11 @@ public abstract class Plot {
          */
         public Paint paintText = null;
 
+        /**
+         * Formatted pin labels and title
+         */
+        public final AxisLabels labels = new AxisLabels();
+
         public PlotAxis() {
             paint = Plot.generatePlotPaint(2f, 192, 128, 128, 128);
 
@@ -580,7 +596,7 @@ public abstract class Plot {
         m_maxCachedEntries = maxCache;
 
         values = new FloatValueList(m_maxCachedEntries, true);
-        inspectValues = new BooleanValueList(m_maxCachedEntries, false);
+        inspectValues = new BitValueList(m_maxCachedEntries);
 
         Time tt = new Time();
         tt.setToNow();
@@ -610,7 +626,7 @@ public abstract class Plot {
         m_maxCachedEntries = maxCache;
 
         values = new FloatValueList(m_maxCachedEntries, maintainMinMax);
-        inspectValues = new BooleanValueList(m_maxCachedEntries, false);
+        inspectValues = new BitValueList(m_maxCachedEntries);
 
         Time tt = new Time();
         tt.setToNow();
@@ -750,32 +766,51 @@ public abstract class Plot {
      * Sets a PlotMarker to the given entry. The entryIdx can be interpreted
      * differently, depending on the derived implementation.
      *
+     * Each entry holds at most one marker, setting another one replaces it.
+     *
      * @param entryIdx If -1 the Marker is always drawn, independently of any actual
-     *                 points in this Plot.
-     * @param marker   The PlotMarker used.
+     *                 points in this Plot. setMarker(-1, null) removes all
+     *                 of these global markers.
+     * @param marker   The PlotMarker used, or null to remove the marker of
+     *                 the entry.
      */
     public void setMarker(int entryIdx, PlotMarker marker) {
         m_dataLock.lock();
-        if (marker == null) {
-            // delete marker
-            tNum = m_markers.size();
-            for (tIdx = 0; tIdx < tNum; ++tIdx) {
-                tMark = m_markers.get(tIdx);
-                if (tMark.m_index == entryIdx) {
-                    m_markers.remove(tIdx);
-                    break;
-                }
+        if (entryIdx == -1) {
+            // global marker
+            if (marker == null) {
+                m_globalMarkers.clear();
+            } else {
+                marker.m_index = -1;
+                marker.m_plot = this;
+                m_globalMarkers.add(marker);
             }
+        } else if (marker == null) {
+            // delete marker
+            if (m_markers.size() > 0)
+                m_markers.remove(inspectValues.normIdx(entryIdx));
             inspectValues.set(entryIdx, false);
         } else {
             inspectValues.set(entryIdx, true);
             marker.m_index = inspectValues.normIdx(entryIdx);
             marker.m_plot = this;
-            m_markers.add(marker);
+            m_markers.put(marker.m_index, marker);
         }
         m_dataLock.unlock();
     }
 
+    /**
+     * Removes all markers of the raw index range [first, first + count[ that
+     * is about to be overwritten. The range may wrap around the end of the
+     * ring. Global markers are kept. Has to be called with m_dataLock held.
+     *
+     * @param first first raw index
+     * @param count number of raw indices
+     */
+    protected void removeMarkers(int first, int count) {
+        m_markers.removeRange(first, count, inspectValues.sizeMax);
+    }
+
     private transient int tNum;
     private transient PlotMarker tMark = null;
     private transient int tIdx;
@@ -784,18 +819,47 @@ public abstract class Plot {
      * Returns the PlotMarker for the given entryIdx, if there exists one.
      * Otherwise null is returned.
      *
-     * @param entryIdx
+     * @param entryIdx raw ring index, or -1 for the first global marker
      * @return
      */
     public PlotMarker getMarker(int entryIdx) {
-        tNum = m_markers.size();
-        for (tIdx = 0; tIdx < tNum; ++tIdx) {
-            tMark = m_markers.get(tIdx);
-            if (tMark.m_index == entryIdx)
-                return tMark;
+        if (entryIdx == -1)
+            return m_globalMarkers.isEmpty() ? null : m_globalMarkers.get(0);
+
+        return m_markers.get(entryIdx);
+    }
+
+    /**
+     * Collects the markers of count entries starting at the (not normalized)
+     * ring index rIdx, e.g. of the visible window, in ring order. Only the
+     * entries flagged in inspectValues are looked up.
+     *
+     * @param rIdx   negative or positive index in the ring
+     * @param count  number of entries
+     * @param result receives the markers
+     * @return number of markers added to result
+     */
+    public int getMarkers(int rIdx, int count, List<PlotMarker> result) {
+        int found = 0;
+        int dist;
+
+        m_dataLock.lock();
+        if (m_markers.size() > 0) {
+            rIdx = inspectValues.normIdx(rIdx);
+            count = Math.min(count, inspectValues.num);
+            while ((dist = inspectValues.nextSetDistance(rIdx, count)) != -1) {
+                tMark = m_markers.get(inspectValues.normIdx(rIdx + dist));
+                if (tMark != null) {
+                    result.add(tMark);
+                    ++found;
+                }
+                rIdx += dist + 1;
+                count -= dist + 1;
+            }
         }
+        m_dataLock.unlock();
 
-        return null;
+        return found;
     }
 
     /**
@@ -809,6 +873,7 @@ public abstract class Plot {
 
     private transient RectF tRect = new RectF();
     private transient int tIdxAxis;
+    private transient AxisLabels.Label tLabel;
 
     /**
      * Draws the given axis as X-Axis.
@@ -843,16 +908,16 @@ public abstract class Plot {
 
             // pin text
             domainAxisPaint.text.setTextAlign(Align.CENTER);
-            can.drawText(formatAxisText(axis, tIdxAxis * surface.viewWidth / PlotView.AXIS_PIN_COUNT), tRect.left,
-                    surface.viewHeight - 2, domainAxisPaint.text);
+            tLabel = formatAxisText(axis, tIdxAxis * surface.viewWidth / PlotView.AXIS_PIN_COUNT);
+            can.drawText(tLabel.text, tLabel.offset, tLabel.length, tRect.left, surface.viewHeight - 2,
+                    domainAxisPaint.text);
         }
 
         // axis name
-        String title = axis.title + " [" + axis.unitName + "]";
+        tLabel = axis.labels.title(axis.title, axis.unitName);
         domainAxisPaint.title.setTextAlign(Align.RIGHT);
-        Rect rect = new Rect();
-        domainAxisPaint.title.getTextBounds(title, 0, title.length(), rect);
-        can.drawText(title, surface.viewWidth, surface.viewHeight - height - PlotView.AXIS_PADDING - 5, domainAxisPaint.title);
+        can.drawText(tLabel.text, tLabel.offset, tLabel.length, surface.viewWidth,
+                surface.viewHeight - height - PlotView.AXIS_PADDING - 5, domainAxisPaint.title);
     }
 
     /**
@@ -896,22 +961,20 @@ public abstract class Plot {
             float yy = tRect.bottom;
             valueAxisPaint.text.setTextAlign(Align.CENTER);
             can.rotate(-90, xx, yy);
-            can.drawText(formatAxisText(axis, tIdxAxis * surface.viewHeight / pinCount), xx, yy,
-                    valueAxisPaint.text);
+            tLabel = formatAxisText(axis, tIdxAxis * surface.viewHeight / pinCount);
+            can.drawText(tLabel.text, tLabel.offset, tLabel.length, xx, yy, valueAxisPaint.text);
             can.restore();
 
         }
 
         // y axis TITLE
-        String title = axis.title + " [" + axis.unitName + "]";
+        tLabel = axis.labels.title(axis.title, axis.unitName);
         valueAxisPaint.title.setTextAlign(Align.RIGHT);
         can.save();
-        Rect rect = new Rect();
-        valueAxisPaint.title.getTextBounds(title, 0, title.length(), rect);
         float x = surface.plotView.getAxisHeight() * 2 + PlotView.AXIS_PADDING + 5;
         float y = 0;
         can.rotate(-90, x, y);
-        can.drawText(title, x, y, valueAxisPaint.title);
+        can.drawText(tLabel.text, tLabel.offset, tLabel.length, x, y, valueAxisPaint.title);
         can.restore();
     }
 
@@ -924,14 +987,11 @@ public abstract class Plot {
     public void drawGlobalMarks(Canvas can, PlotSurface surface) {
         m_dataLock.lock();
 
-        tNum = m_markers.size();
+        tNum = m_globalMarkers.size();
 
         for (tIdx = 0; tIdx < tNum; ++tIdx) {
-            tMark = m_markers.get(tIdx);
-            if (tMark.m_index == -1) {
-                // TODO this might be wrong - better call draw()
-                tMark.onDraw(can, surface, 0, 0);
-            }
+            // TODO this might be wrong - better call draw()
+            m_globalMarkers.get(tIdx).onDraw(can, surface, 0, 0);
         }
 
         m_dataLock.unlock();
@@ -953,14 +1013,14 @@ public abstract class Plot {
     protected abstract void draw(Canvas can, PlotSurface surface);
 
     /**
-     * Returns the String to draw to the axis pin at the given screen-point.
+     * Returns the label to draw to the axis pin at the given screen-point.
      *
      * @param axis The PlotAxis for which the text is requested.
      * @param pt   The point (pixel) on the screen in axis-direction where the
      *             pin will be located.
-     * @return A new String containing the text.
+     * @return The label from axis.labels, valid until the next call.
      */
-    protected abstract String formatAxisText(PlotAxis axis, int pt);
+    protected abstract AxisLabels.Label formatAxisText(PlotAxis axis, int pt);
 
     /**
      * Draws the axis on the Canvas.
@@ -20,7 +20,6 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Paint.Style;
-import android.graphics.Path;
 import android.graphics.RectF;
 import android.text.TextUtils;
 import android.text.format.Time;
@@ -33,14 +32,14 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
 
+import de.fau.mad.plotview.CircularValueList.Statistics;
 import de.fau.mad.plotview.PlotView.PlotScrollPolicy;
 import de.fau.mad.plotview.PlotView.PlotSurface;
 
@@ -58,6 +57,44 @@ public class Plot1D extends Plot {
 
     public PlotAxis xAxis = new PlotAxis();
 
+    /**
+     * Whether values are added by a single producer thread without taking
+     * m_dataLock, @see #setLockFreeIngestion(boolean)
+     */
+    protected volatile boolean m_lockFree = false;
+
+    /**
+     * Ring state published by the lock-free producer: (head << 32) | num
+     */
+    protected final AtomicLong m_published = new AtomicLong(0xFFFFFFFF00000000L);
+
+    /**
+     * Ring head & num getViewport() and draw() work with. Either the live
+     * values or the last published snapshot.
+     */
+    protected int m_headSnapshot = -1;
+    protected int m_numSnapshot = 0;
+
+    /**
+     * Whether the viewport is given as time range instead of a number of
+     * indices, @see #setTimeViewport(long, long)
+     */
+    protected boolean m_timeViewport = false;
+    protected long m_timeViewportStart, m_timeViewportEnd;
+
+    /**
+     * If &gt; 0, the time viewport is the last m_timeWindow ms instead of
+     * [m_timeViewportStart, m_timeViewportEnd].
+     */
+    protected long m_timeWindow = 0;
+
+    /**
+     * x translation of the surface before the time viewport took it over,
+     * restored when the time viewport ends.
+     */
+    protected float m_savedXTrans = 0;
+    protected boolean m_xTransSaved = false;
+
     /**
      * @param plotTitle
      * @param paint
@@ -84,6 +121,21 @@ public class Plot1D extends Plot {
 
     }
 
+    /**
+     * For subclasses that provide their own x ring. If allocateX is false, the
+     * subclass has to assign x in its constructor.
+     */
+    protected Plot1D(String plotTitle, Paint paint, PlotStyle style, int maxCache, boolean maintainMinMax,
+                     boolean allocateX) {
+        super(plotTitle, paint, style, maxCache, maintainMinMax);
+
+        if (allocateX) {
+            m_dataLock.lock();
+            x = new LongValueList(m_maxCachedEntries, maintainMinMax);
+            m_dataLock.unlock();
+        }
+    }
+
     /**
      * @param xTitle
      * @param xUnit
@@ -147,6 +199,78 @@ public class Plot1D extends Plot {
         inspectValues.add(false);
     }
 
+    /**
+     * Enables the single-producer/single-consumer ingestion mode.
+     * <p>
+     * In this mode exactly one thread adds values using addValueLockFree(),
+     * which never blocks on m_dataLock. Every add publishes the new ring
+     * head/num pair with an ordered store after all ring entries have been
+     * written, and the renderer only works with the last published pair.
+     * Thus draw() never sees half-written entries, however the oldest
+     * entries of a full ring may be overwritten while they are being drawn.
+     * <p>
+     * Don't mix addValueLockFree() with the locking add methods while this
+     * mode is active. Markers on overwritten entries are not removed from the
+     * marker list, they are just not inspected anymore.
+     * <p>
+     * The min/max pyramid and the running sums may stay enabled: their
+     * queries don't write any state the producer uses, a frame may just see
+     * them one add ahead of the published entries. Compressed rings can't be
+     * read while they are written, @see #setTimeCompression(boolean) and
+     * #setValueCompression(boolean, int)
+     *
+     * @param enable
+     * @throws IllegalStateException if enable is set while time or value
+     *                               compression is active
+     */
+    public void setLockFreeIngestion(boolean enable) {
+        if (enable && x instanceof CompressedTimeList)
+            throw new IllegalStateException("Lock-free ingestion with time compression");
+        if (enable && values instanceof CompressedFloatList)
+            throw new IllegalStateException("Lock-free ingestion with value compression");
+
+        m_dataLock.lock();
+        publish();
+        m_lockFree = enable;
+        m_dataLock.unlock();
+    }
+
+    /**
+     * Adds a single new value without taking the data lock. May only be
+     * called by the one producer thread, @see #setLockFreeIngestion(boolean)
+     *
+     * @param value Sample value.
+     * @param x     X coordinate
+     */
+    public void addValueLockFree(float value, long x) {
+        addValueFast(value, x);
+
+        publish();
+
+        plotChanged();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see Plot1D#addValueLockFree(float, long)
+     */
+    public void addValueLockFree(long value, long x) {
+        addValueFast(value, x);
+
+        publish();
+
+        plotChanged();
+    }
+
+    /**
+     * Publishes the current ring head & num for the renderer. The lazySet
+     * orders all previous writes to the rings before the store.
+     */
+    protected void publish() {
+        m_published.lazySet(((long) values.head << 32) | (values.num & 0xFFFFFFFFL));
+    }
+
     /**
      * Adds a single new value to this plot using the given x coordinate.
      *
@@ -184,6 +308,55 @@ public class Plot1D extends Plot {
         plotChanged();
     }
 
+    /**
+     * Adds a block of samples to this plot. The rings are filled with bulk
+     * copies, the data lock is taken only once and plotChanged() is fired once
+     * for the entire block.
+     *
+     * @param v      Sample values.
+     * @param x      X coordinates, one for each sample.
+     * @param offset index of the first sample in v and x
+     * @param length number of samples to add
+     */
+    public void addValues(float[] v, long[] x, int offset, int length) {
+        if (length <= 0)
+            return;
+
+        m_dataLock.lock();
+
+        addValuesFast(v, x, offset, length);
+
+        if (m_lockFree)
+            publish();
+
+        m_dataLock.unlock();
+
+        plotChanged();
+    }
+
+    /**
+     * Bulk counterpart of addValueFast(), has to be called with m_dataLock
+     * held. Any markers on overwritten entries are removed.
+     *
+     * @see #addValues(float[], long[], int, int)
+     */
+    protected void addValuesFast(float[] v, long[] x, int offset, int length) {
+        int first = values.head + 1;
+        if (first == values.sizeMax)
+            first = 0;
+
+        this.x.add(x, offset, length);
+        values.add(v, offset, length);
+        inspectValues.addRepeated(false, length);
+
+        if (m_markers.size() > 0) {
+            if (length >= values.sizeMax)
+                removeMarkers(0, values.sizeMax);
+            else
+                removeMarkers(first, length);
+        }
+    }
+
     /**
      * Adds a single new sample using the timestamp and sets a new PlotMarker to
      * this entry.
@@ -216,16 +389,237 @@ public class Plot1D extends Plot {
     public void clear() {
         super.clear();
         x.clear();
+        publish();
     }
 
-    private transient int tIdx = 0, tPixelIdx = 0, tRealIdx = 0;
-    private transient float tppValue = 0f, tppValueMax = 0f, tppValueMin = 0f;
+    /**
+     * Displays the entries with timestamps in [startMillis, endMillis],
+     * however irregular the sampling is. The range is looked up by binary
+     * search on every frame, so x must be ascending. If there are fewer
+     * entries than pixels, the viewport extends to the left.
+     *
+     * @param startMillis
+     * @param endMillis
+     */
+    public void setTimeViewport(long startMillis, long endMillis) {
+        m_timeViewportStart = startMillis;
+        m_timeViewportEnd = endMillis;
+        m_timeWindow = 0;
+        m_timeViewport = true;
+    }
+
+    /**
+     * Displays the entries of the last durationMillis ms, up to the newest
+     * timestamp, @see #setTimeViewport(long, long)
+     *
+     * @param durationMillis
+     */
+    public void setTimeWindow(long durationMillis) {
+        m_timeWindow = durationMillis;
+        m_timeViewport = durationMillis > 0;
+    }
+
+    /**
+     * Sets the number of value indices to display and ends a time viewport.
+     *
+     * @param numIdx
+     */
+    @Override
+    public void setViewport(int numIdx) {
+        m_timeViewport = false;
+        super.setViewport(numIdx);
+    }
+
+    /**
+     * Selects whether the line is drawn with a single drawLines() call over a
+     * reused vertex buffer (default) or as a Path, @see
+     * AndroidPlotCanvas#setBatchedPolylines(boolean)
+     *
+     * @param enable
+     */
+    public void setBatchedLines(boolean enable) {
+        m_plotCanvas.setBatchedPolylines(enable);
+    }
+
+    /**
+     * Enables or disables the min/max pyramid of the value ring. If enabled,
+     * draw() looks up the extremes of each pixel column in O(log n) when
+     * zoomed out far enough, instead of visiting every sample in the
+     * viewport, @see FloatValueList#setMinMaxPyramid(boolean)
+     *
+     * @param enable
+     */
+    public void setMinMaxPyramid(boolean enable) {
+        m_dataLock.lock();
+        values.setMinMaxPyramid(enable);
+        m_dataLock.unlock();
+    }
+
+    /**
+     * Enables or disables the running sums of the value ring, so
+     * getViewportStats() is O(1) regardless of the zoom level, @see
+     * FloatValueList#setPrefixSums(boolean)
+     *
+     * @param enable
+     */
+    public void setPrefixSums(boolean enable) {
+        m_dataLock.lock();
+        values.setPrefixSums(enable);
+        m_dataLock.unlock();
+    }
+
+    /**
+     * Calculates the statistics of the values in the viewport of the last
+     * draw(), e.g. for a live statistics overlay.
+     *
+     * @param stats receives the computed statistics. must not be null.
+     * @return false if nothing was drawn yet.
+     */
+    public boolean getViewportStats(Statistics stats) {
+        m_dataLock.lock();
+        if (m_idxNum < 1 || values.num == 0) {
+            m_dataLock.unlock();
+            return false;
+        }
+        values.calculateStats(m_idxStart, m_idxEnd, stats);
+        m_dataLock.unlock();
+        return true;
+    }
+
+    /**
+     * Switches the min/max maintenance of the value and x rings to the
+     * sliding window implementation, @see
+     * CircularValueList#setSlidingMinMax(boolean)
+     *
+     * @param enable
+     */
+    public void setSlidingMinMax(boolean enable) {
+        m_dataLock.lock();
+        values.setSlidingMinMax(enable);
+        x.setSlidingMinMax(enable);
+        m_dataLock.unlock();
+    }
+
+    /**
+     * Switches the x ring between a LongValueList and a CompressedTimeList,
+     * keeping its contents. Compressed timestamps of a steady signal need
+     * about a tenth of the memory, so the plot can keep a longer history for
+     * the same budget. Rings that don't store their values, like the
+     * UniformTimeList of a SamplingPlot, are not changed.
+     * <p>
+     * Reading a CompressedTimeList decodes into a cache that add() updates
+     * too, so it can't be used with lock-free ingestion.
+     *
+     * @param enable
+     * @throws IllegalStateException if enable is set while lock-free
+     *                               ingestion is active
+     */
+    public void setTimeCompression(boolean enable) {
+        if (enable && m_lockFree)
+            throw new IllegalStateException("Time compression with lock-free ingestion");
+
+        m_dataLock.lock();
+        if (enable && x.getClass() == LongValueList.class) {
+            final boolean sliding = x.isSlidingMinMax();
+            x = new CompressedTimeList(x);
+            x.setSlidingMinMax(sliding);
+        } else if (!enable && x instanceof CompressedTimeList) {
+            LongValueList plain = new LongValueList(x.sizeMax, x.maintainMinMax);
+            // raw indices [0, num[ are valid whether the ring is full or not
+            x.copyRaw(0, plain.values, 0, x.num);
+            plain.head = x.head;
+            plain.tail = x.tail;
+            plain.num = x.num;
+            if (x.isSlidingMinMax())
+                plain.setSlidingMinMax(true);
+            else if (plain.maintainMinMax)
+                plain.findMinMax();
+            x = plain;
+        }
+        m_dataLock.unlock();
+    }
+
+    /**
+     * Switches the value ring between a FloatValueList and a
+     * CompressedFloatList, keeping its contents. Only the most recent
+     * hotSize entries stay raw, older ones are compressed and drawn from
+     * their block summaries when zoomed out.
+     * <p>
+     * Reading a CompressedFloatList decodes into a cache that add() updates
+     * too, so it can't be used with lock-free ingestion.
+     *
+     * @param enable
+     * @param hotSize Number of recent entries to keep uncompressed, @see
+     *                CompressedFloatList#DEFAULT_HOT_SIZE
+     * @throws IllegalStateException if enable is set while lock-free
+     *                               ingestion is active
+     */
+    public void setValueCompression(boolean enable, int hotSize) {
+        if (enable && m_lockFree)
+            throw new IllegalStateException("Value compression with lock-free ingestion");
+
+        m_dataLock.lock();
+        values = convertValues(values, enable, hotSize);
+        m_dataLock.unlock();
+    }
+
+    /**
+     * @return list itself, or a copy with the same raw layout stored as a
+     * CompressedFloatList or a plain FloatValueList. The copy keeps the
+     * pyramid, running sums and sliding min/max settings of list.
+     */
+    protected static FloatValueList convertValues(FloatValueList list, boolean compress, int hotSize) {
+        if (compress && list.getClass() == FloatValueList.class) {
+            final CompressedFloatList compressed = new CompressedFloatList(list, hotSize);
+            compressed.setMinMaxPyramid(list.hasMinMaxPyramid());
+            compressed.setPrefixSums(list.hasPrefixSums());
+            compressed.setSlidingMinMax(list.isSlidingMinMax());
+            return compressed;
+        }
+
+        if (!compress && list instanceof CompressedFloatList) {
+            FloatValueList plain = new FloatValueList(list.sizeMax, list.maintainMinMax, list.maintainSum);
+            // raw indices [0, num[ are valid whether the ring is full or not
+            list.copyRaw(0, plain.values, 0, list.num);
+            plain.head = list.head;
+            plain.tail = list.tail;
+            plain.num = list.num;
+            plain.sum = list.sum;
+            plain.setMinMaxPyramid(list.hasMinMaxPyramid());
+            plain.setPrefixSums(list.hasPrefixSums());
+            if (list.isSlidingMinMax())
+                plain.setSlidingMinMax(true);
+            else if (plain.maintainMinMax)
+                plain.findMinMax();
+            return plain;
+        }
+
+        return list;
+    }
+
+    private transient int tIdx = 0;
+    private transient long tPublished;
+    private transient float tValueMin, tValueMax, tValueRange;
+    private transient int tFirstIdx, tFirstOffset, tLastOffset;
+    private transient long tTimeStart, tTimeEnd;
+    protected transient Canvas tMarkerCanvas = null;
+    protected transient PlotSurface tMarkerSurface = null;
     private transient PlotMarker tMarker = null;
-    private transient Path tPath = new Path();
-    private transient int tppIdxMin, tppIdxMax;
 
-    // private transient long tTimer0, tTimer1, tTimer2, tTimer3, tTimer4,
-    // tTimer5;
+    protected final SampleDecimator m_decimator = new SampleDecimator();
+    protected final AndroidPlotCanvas m_plotCanvas = new AndroidPlotCanvas();
+
+    /**
+     * Draws the markers reported by the decimator on the canvas of the
+     * current draw() call.
+     */
+    protected final SampleDecimator.MarkerListener m_markerDrawer = new SampleDecimator.MarkerListener() {
+        public void onMarker(int realIdx, float x, float y) {
+            tMarker = getMarker(realIdx);
+            if (tMarker != null)
+                tMarker.onDraw(tMarkerCanvas, tMarkerSurface, x, y);
+        }
+    };
 
     /**
      * Hairy Plotter for Plot1D
@@ -237,8 +631,6 @@ public class Plot1D extends Plot {
      * to draw as many samples as given by mSamplingRate * mTimeWindow.
      */
     protected void draw(Canvas can, PlotSurface surface) {
-        // tTimer0 = System.nanoTime();
-
         getViewport(surface);
 
         m_dataLock.lock();
@@ -265,100 +657,20 @@ public class Plot1D extends Plot {
         can.save();
 
         try {
-            // tTimer1 = System.nanoTime();
-
-            tPath.reset();
-
-            // reserve the maximal number of possible lines
-            // tPath.incReserve( surface.width << 1 );
-
-            // move to first element
-            tppValue = (float) ((values.getIndirect(m_idxStart) + m_yPxTrans) * m_yPxScale);
-            tPath.moveTo(0, tppValue);
-
-            // tTimer2 = System.nanoTime();
-
-            // ==============================================
-            // == LOOP ALL POINTS
-            // ====>
-            for (tIdx = 0, tPixelIdx = 1; tIdx < m_idxNum; ++tPixelIdx) {
-                tppIdxMin = -1;
-
-                // ======================= LOOP ALL PROJECTED POINTS
-                // =======================
-                for (; tIdx < (tPixelIdx * m_numIdxPerPixel) && tIdx < m_idxNum; ++tIdx) {
-                    // we get the real idx to save one lookup for marker
-                    // processing later
-                    tRealIdx = values.normIdx(m_idxStart + tIdx);
-
-                    // ===== Y translation & Y scaling is done here only!
-                    tppValue = (float) ((values.values[tRealIdx] + m_yPxTrans) * m_yPxScale);
-
-                    if (m_numIdxPerPixel > 1) {
-                        if (tppIdxMin == -1) {
-                            // first value: min = max = value
-                            tppValueMin = tppValueMax = tppValue;
-                            tppIdxMin = tppIdxMax = tIdx;
-                        } else {
-                            if (tppValue < tppValueMin) {
-                                // new min
-                                tppValueMin = tppValue;
-                                tppIdxMin = tIdx;
-                            } else if (tppValue > tppValueMax) {
-                                // new max
-                                tppValueMax = tppValue;
-                                tppIdxMax = tIdx;
-                            }
-                        }
-                    } else
-                        tppIdxMin = tRealIdx;
-
-                    // ==============> MARKERS
-                    // check for marker on this index
-                    if (inspectValues.values[tRealIdx]) {
-                        tMarker = getMarker(tRealIdx);
-                        if (tMarker != null)
-                            tMarker.onDraw(can, surface, tPixelIdx, tppValue);
-                    }
-                    // <============= markers
-                }
-                // =========================================================================
-                // projected loop
-
-                // any point at all to draw?
-                if (tppIdxMin != -1) {
-                    // ==============> projected points
-                    if (m_numIdxPerPixel > 1) {
-                        // line from first min/max to second min/max
-                        if (tppIdxMin <= tppIdxMax) {
-                            tPath.lineTo(tPixelIdx, tppValueMin);
-                            tPath.lineTo(tPixelIdx, tppValueMax);
-                        } else {
-                            tPath.lineTo(tPixelIdx, tppValueMax);
-                            tPath.lineTo(tPixelIdx, tppValueMin);
-                        }
-                    }
-                    // <=============
-                    else
-                    // ==============> single point
-                    {
-                        tPath.lineTo(tPixelIdx, tppValue);
-                    }
-                    // <=============
-                }
-            }
-            // <====
-            // ==============================================
+            // ==============> decimate the visible samples into a polyline
+            tMarkerCanvas = can;
+            tMarkerSurface = surface;
+            m_decimator.decimate(values, inspectValues, m_idxStart, m_idxNum, m_numIdxPerPixel, m_yPxTrans,
+                    m_yPxScale, m_markers.size() > 0 ? m_markerDrawer : null);
+            tMarkerCanvas = null;
+            tMarkerSurface = null;
+            // <=============
 
             m_dataLock.unlock();
 
-            // tTimer3 = System.nanoTime();
-
             // ==============> draw path
-            can.drawPath(tPath, m_paint);
+            m_plotCanvas.set(can, m_paint).drawPolyline(m_decimator.points, 0, m_decimator.count);
             // <=============
-
-            // tTimer4 = System.nanoTime();
         } catch (Exception e) {
             m_dataLock.unlock();
             e.printStackTrace();
@@ -373,32 +685,50 @@ public class Plot1D extends Plot {
 
         // restore original canvas
         can.restore();
-
-        // tTimer5 = System.nanoTime();
-        //
-        // Log.d( PlotView.TAG,
-        // new StringBuilder( 128 ).append( "Timing: " ).append( tTimer1 -
-        // tTimer0 ).append( "  " )
-        // .append( tTimer2 - tTimer1 ).append( "  " ).append( tTimer3 - tTimer2
-        // ).append( "  " )
-        // .append( tTimer4 - tTimer3 ).append( "  " ).append( tTimer5 - tTimer4
-        // ).toString() );
     }
 
     @Override
     public void getViewport(PlotSurface surface) {
         m_dataLock.lock();
 
+        // ==============> ring state to work with
+        if (m_lockFree) {
+            // the producer doesn't lock, use the last consistently published
+            // head/num pair instead of the live members
+            tPublished = m_published.get();
+            m_headSnapshot = (int) (tPublished >> 32);
+            m_numSnapshot = (int) tPublished;
+        } else {
+            m_headSnapshot = values.head;
+            m_numSnapshot = values.num;
+        }
+        // <=============
+
         // ==============> Process desired Viewport specified by the
         // constructing code
-        if (values.num < m_desiredViewportIdxNum || m_desiredViewportIdxNum <= 0)
-            m_idxNum = values.num;
-        else
-            m_idxNum = m_desiredViewportIdxNum;
+        if (m_timeViewport) {
+            if (!m_xTransSaved) {
+                m_savedXTrans = surface.xTrans;
+                m_xTransSaved = true;
+            }
+            resolveTimeViewport(surface);
+        } else {
+            if (m_xTransSaved) {
+                // the time viewport is over, give the user translation back
+                surface.xTrans = m_savedXTrans;
+                m_xTransSaved = false;
+            }
+
+            if (m_numSnapshot < m_desiredViewportIdxNum || m_desiredViewportIdxNum <= 0)
+                m_idxNum = m_numSnapshot;
+            else
+                m_idxNum = m_desiredViewportIdxNum;
+        }
         // <=============
 
-        // ==============> Process user scale
-        m_idxNum = (int) (m_idxNum * surface.xScale);
+        // ==============> Process user scale, a time viewport is exact
+        if (!m_timeViewport)
+            m_idxNum = (int) (m_idxNum * surface.xScale);
         // <=============
 
         // We now have the final number of indices to draw.
@@ -406,8 +736,8 @@ public class Plot1D extends Plot {
         if (m_idxNum <= 0) {
             m_dataLock.unlock();
             return;
-        } else if (m_idxNum > values.num) {
-            m_idxNum = values.num;
+        } else if (m_idxNum > m_numSnapshot) {
+            m_idxNum = m_numSnapshot;
 
             // restore last valid xScale
             surface.xScale = (float) m_xIdxScale;
@@ -427,12 +757,12 @@ public class Plot1D extends Plot {
             m_numIdxPerPixel = 1;
 
             // make sure the entire width is used if applicable
-            if (values.num > surface.width) {
+            if (m_numSnapshot > surface.width) {
                 m_idxNum = surface.width;
-                if (values.num != 0)
-                    surface.xScale = (float) (surface.width / (double) values.num);
+                if (m_numSnapshot != 0)
+                    surface.xScale = (float) (surface.width / (double) m_numSnapshot);
             } else
-                m_idxNum = values.num;
+                m_idxNum = m_numSnapshot;
         } else {
             // NumPerPixel > 1.0
             m_numIdxPerPixel = (double) m_idxNum / (surface.width + 2);
@@ -444,8 +774,8 @@ public class Plot1D extends Plot {
         if (scrollHow == PlotScrollPolicy.DEFAULT) {
             m_xIdxTrans = (int) (surface.xTrans);
             // ==============> cap xTrans at number of existing points
-            if (m_xIdxTrans <= m_idxNum - values.num) {
-                m_xIdxTrans = m_idxNum - values.num;
+            if (m_xIdxTrans <= m_idxNum - m_numSnapshot) {
+                m_xIdxTrans = m_idxNum - m_numSnapshot;
                 surface.xTrans = m_xIdxTrans;
             }
             // else if (surface.xIdxTrans >= surface.idxNum)
@@ -458,11 +788,11 @@ public class Plot1D extends Plot {
                 surface.xTrans = 0;
             }
             // <=============
-            m_idxStart = values.normIdx(values.head - m_idxNum + 1 + m_xIdxTrans);
+            m_idxStart = values.normIdx(m_headSnapshot - m_idxNum + 1 + m_xIdxTrans);
 
             // only translate end if m_xIdxTrans is negative. Otherwise we would
             // be in the future.
-            m_idxEnd = values.normIdx((int) (values.head + (m_xIdxTrans < 0 ? m_xIdxTrans : 0)));
+            m_idxEnd = values.normIdx((int) (m_headSnapshot + (m_xIdxTrans < 0 ? m_xIdxTrans : 0)));
 
         } else if (scrollHow == PlotScrollPolicy.OVERRUN) {
             m_idxEnd = values.normIdx(m_idxNum - 1);
@@ -470,8 +800,11 @@ public class Plot1D extends Plot {
         }
 
         // ==============> calculate m_yPxScale
-        if (values.rangeMinMax != 0)
-            m_yPxScale = (surface.height - PlotView.AXIS_PADDING * 2) / values.rangeMinMax;
+        tValueMin = getValueMin();
+        tValueMax = getValueMax();
+        tValueRange = getValueRange();
+        if (tValueRange != 0)
+            m_yPxScale = (surface.height - PlotView.AXIS_PADDING * 2) / tValueRange;
         else
             m_yPxScale = 1d;
 
@@ -483,7 +816,7 @@ public class Plot1D extends Plot {
 
         // ==============> calculate m_yPxTrans
         if (surface.yTrans == 0) {
-            m_yPxTrans = (float) (-values.minValue + (PlotView.AXIS_PADDING + 2) / m_yPxScale);
+            m_yPxTrans = (float) (-tValueMin + (PlotView.AXIS_PADDING + 2) / m_yPxScale);
         } else
             m_yPxTrans = surface.yTrans;
         // <=============
@@ -491,32 +824,108 @@ public class Plot1D extends Plot {
         m_xAxisMax = x.getIndirect(m_idxEnd);
         m_xAxisMin = x.getIndirect(m_idxStart);
 
-        m_yAxisMax = values.maxValue;
-        m_yAxisMin = values.minValue;
+        m_yAxisMax = tValueMax;
+        m_yAxisMin = tValueMin;
 
         m_dataLock.unlock();
     }
 
+    /**
+     * Resolves the time viewport into m_idxNum and the x translation of the
+     * surface with two binary searches over the x ring, O(log n) regardless
+     * of the sampling.
+     */
+    private void resolveTimeViewport(PlotSurface surface) {
+        if (m_numSnapshot == 0) {
+            m_idxNum = 0;
+            return;
+        }
+
+        tFirstIdx = m_headSnapshot - m_numSnapshot + 1;
+        if (tFirstIdx < 0)
+            tFirstIdx += x.sizeMax;
+
+        if (m_timeWindow > 0) {
+            tTimeEnd = x.getRaw(m_headSnapshot);
+            tTimeStart = tTimeEnd - m_timeWindow;
+        } else {
+            tTimeStart = m_timeViewportStart;
+            tTimeEnd = m_timeViewportEnd;
+        }
+
+        tFirstOffset = x.lowerBound(tTimeStart, tFirstIdx, m_numSnapshot);
+        tLastOffset = x.upperBound(tTimeEnd, tFirstIdx, m_numSnapshot) - 1;
+        m_idxNum = tLastOffset - tFirstOffset + 1;
+
+        // nothing in the range, leave the translation alone
+        if (m_idxNum <= 0)
+            return;
+
+        // the newest entry in the range is the right border
+        surface.xTrans = tLastOffset - (m_numSnapshot - 1);
+    }
+
+    /**
+     * @return The smallest value the y axis has to show. Called by
+     * getViewport() with m_dataLock held.
+     */
+    protected float getValueMin() {
+        return values.minValue;
+    }
+
+    /**
+     * @return The largest value the y axis has to show. Called by
+     * getViewport() with m_dataLock held.
+     */
+    protected float getValueMax() {
+        return values.maxValue;
+    }
+
+    /**
+     * @return The value range the y axis is scaled to, usually getValueMax()
+     * - getValueMin().
+     */
+    protected float getValueRange() {
+        return values.rangeMinMax;
+    }
+
     private transient Time tTime = new Time();
 
     @Override
-    protected String formatAxisText(PlotAxis axis, int pt) {
+    protected AxisLabels.Label formatAxisText(PlotAxis axis, int pt) {
         if (axis == xAxis) {
-            if (m_idxStart + m_numIdxPerPixel * pt >= x.num)
-                return "n/a";
+            final long time = xAtAxisPin(pt);
+            if (time == Long.MIN_VALUE)
+                return axis.labels.notAvailable();
 
-            //return String.format( "%d", x.get( (int) (m_idxStart + m_numIdxPerPixel * pt) ) );
-            return String.format("%d", x.get((int) (m_idxStart + m_numIdxPerPixel * pt)));
+            return axis.labels.get(time);
             //tTime.set( x.getIndirect( (int) (m_idxStart + m_numIdxPerPixel * pt) ) );
             //return tTime.format( "%H:%M:%S" );
         } else if (axis == valueAxis && m_yPxScale != 0) {
             if (pt / m_yPxScale > 10)
-                return String.format("%.0f", ((m_yAxisMin + (long) (pt / m_yPxScale)) * axis.multiplier));
+                return axis.labels.get((m_yAxisMin + (long) (pt / m_yPxScale)) * axis.multiplier, 0);
             else
-                return String.format("%.1f", ((m_yAxisMin + (long) (pt / m_yPxScale)) * axis.multiplier));
+                return axis.labels.get((m_yAxisMin + (long) (pt / m_yPxScale)) * axis.multiplier, 1);
         }
 
-        return "n/a";
+        return axis.labels.notAvailable();
+    }
+
+    /**
+     * Reads the x entry at the axis position pt. The axes are drawn without
+     * m_dataLock, but reading a CompressedTimeList isn't safe while it's
+     * written, so the lock is taken here.
+     *
+     * @param pt position on the x axis in pixels
+     * @return The x entry or Long.MIN_VALUE if there is none.
+     */
+    protected long xAtAxisPin(int pt) {
+        long time = Long.MIN_VALUE;
+        m_dataLock.lock();
+        if (m_idxStart + m_numIdxPerPixel * pt < x.num)
+            time = x.getIndirect((int) (m_idxStart + m_numIdxPerPixel * pt));
+        m_dataLock.unlock();
+        return time;
     }
 
     private transient RectF tRect = new RectF();
@@ -547,12 +956,9 @@ public class Plot1D extends Plot {
      * <p>
      * If the m_file already exists, the data is appended.
      * <p>
-     * It is important to know that the values are streamed from index 0 to
-     * PlotValueList.num into the m_file, regardless of the actual head and tail
-     * positions! This is done to avoid two lookups for each value since we
-     * assume that this method will only be called on occasion. If you want to
-     * continuously stream data to the m_file, call this method every time head
-     * reaches PlotValueList.EOR.
+     * The values are streamed in their logical order, from tail to head, with
+     * cursors over the rings. If you want to continuously stream data to the
+     * m_file, call this method every time head reaches PlotValueList.EOR.
      *
      * @param con
      * @param filePath The absolute path of the m_file.
@@ -582,10 +988,12 @@ public class Plot1D extends Plot {
 
             final StringBuilder sb = new StringBuilder(128);
 
-            // write all data values
-            for (tIdx = 0; tIdx < values.num; tIdx++) {
+            // write all data values, from tail to head
+            final LongValueList.Cursor xCursor = x.cursor();
+            final FloatValueList.Cursor valueCursor = values.cursor();
+            while (valueCursor.hasNext()) {
                 sb.setLength(0);
-                sb.append(x.values[tIdx]).append(" ").append(values.values[tIdx]).append(PlotView.NEWLINE);
+                sb.append(xCursor.nextLong()).append(" ").append(valueCursor.nextFloat()).append(PlotView.NEWLINE);
                 fw.write(sb.toString());
             }
 
@@ -602,6 +1010,207 @@ public class Plot1D extends Plot {
         return false;
     }
 
+    /**
+     * Writes the raw index range [offset, offset + length[ to rec. Rings that
+     * don't keep their values in an array, e.g. an UniformTimeList or a
+     * CompressedFloatList, are copied chunk by chunk into temporary buffers.
+     */
+    private void writeSegment(RecordingFile rec, FloatValueList y, int offset, int length) throws IOException {
+        final float[] yValues = y != null ? y.values : null;
+        if (x.values != null && values.values != null) {
+            rec.write(x.values, values.values, yValues, offset, length);
+            return;
+        }
+
+        final int chunk = Math.min(length, RecordingFile.DEFAULT_CHUNK_SIZE);
+        final long[] xBuf = new long[chunk];
+        final float[] vBuf = values.values == null ? new float[chunk] : null;
+        final float[] yBuf = vBuf != null && y != null ? new float[chunk] : null;
+        int n;
+        while (length > 0) {
+            n = Math.min(length, chunk);
+            x.copyRaw(offset, xBuf, 0, n);
+            if (vBuf == null) {
+                rec.write(xBuf, 0, values.values, yValues, offset, n);
+            } else {
+                values.copyRaw(offset, vBuf, 0, n);
+                if (yBuf != null)
+                    y.copyRaw(offset, yBuf, 0, n);
+                rec.write(xBuf, vBuf, yBuf, 0, n);
+            }
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Save to filename as binary recording, @see RecordingFile
+     * <p>
+     * If the m_file already exists and is a recording with the same columns,
+     * the data is appended. The entries are written in their logical order,
+     * from tail to head.
+     *
+     * @param con
+     * @param filePath The absolute path of the m_file. If null, m_file is used
+     *                 with its extension replaced by RecordingFile.EXTENSION.
+     * @return True on success, false on failure
+     */
+    public boolean saveToBinaryFile(Context con, String filePath) {
+        File f = null;
+        RecordingFile rec = null;
+
+        m_dataLock.lock();
+        try {
+            // is a valid dir given?
+            if (filePath == null) {
+                String name = m_file;
+                if (name.endsWith(".ssd"))
+                    name = name.substring(0, name.length() - 4);
+                name += RecordingFile.EXTENSION;
+
+                if (name.charAt(0) == File.separatorChar)
+                    f = new File(name);
+                else
+                    f = new File(con.getExternalFilesDir(null), name);
+            } else {
+                f = new File(filePath);
+            }
+
+            final FloatValueList y = getSecondaryValues();
+            rec = RecordingFile.openForWriting(f, y != null ? 3 : 2, RecordingFile.DEFAULT_CHUNK_SIZE);
+
+            // oldest to newest, in two segments if the ring wrapped around
+            final int firstSegment = Math.min(values.num, values.sizeMax - values.tail);
+            writeSegment(rec, y, values.tail, firstSegment);
+            if (firstSegment < values.num)
+                writeSegment(rec, y, 0, values.num - firstSegment);
+
+            rec.close();
+            rec = null;
+
+            return true;
+        } catch (IOException e) {
+            Log.w(PlotView.TAG, "Error writing " + (f != null ? f.getAbsolutePath() : filePath), e);
+        } finally {
+            m_dataLock.unlock();
+
+            if (rec != null) {
+                try {
+                    rec.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Adds all samples of a binary recording to this plot, @see RecordingFile
+     *
+     * @param filePath
+     * @return Number of samples added or -1 on failure.
+     */
+    public int loadFromBinaryFile(String filePath) {
+        RecordingFile rec = null;
+        try {
+            rec = RecordingFile.openForReading(new File(filePath));
+            return loadFromRecording(rec);
+        } catch (IOException e) {
+            Log.w(PlotView.TAG, "Error reading " + filePath, e);
+        } finally {
+            if (rec != null) {
+                try {
+                    rec.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Adds all chunks of the opened recording, one bulk add per chunk.
+     *
+     * @param rec
+     * @return Number of samples added.
+     * @throws IOException
+     */
+    protected int loadFromRecording(RecordingFile rec) throws IOException {
+        final long[] cx = new long[rec.chunkSize];
+        final float[] cv = new float[rec.chunkSize];
+        final float[] cy = getSecondaryValues() != null ? new float[rec.chunkSize] : null;
+
+        int count = 0, n;
+        for (int chunk = 0; chunk < rec.chunkCount; ++chunk) {
+            n = rec.readChunk(chunk, cx, cv, cy);
+            addRecordedValues(cv, cx, cy, n);
+            count += n;
+        }
+
+        return count;
+    }
+
+    /**
+     * Adds a chunk read from a recording. Derived plots with an additional
+     * value column override this together with getSecondaryValues().
+     *
+     * @param v      Sample values
+     * @param x      X coordinates
+     * @param y      Secondary values or null
+     * @param length Number of samples
+     */
+    protected void addRecordedValues(float[] v, long[] x, float[] y, int length) {
+        addValues(v, x, 0, length);
+    }
+
+    /**
+     * @return The additional value column that is written to recordings, or
+     * null if this plot only has x and values.
+     */
+    protected FloatValueList getSecondaryValues() {
+        return null;
+    }
+
+    /**
+     * Creates a Plot1D from a binary recording, @see RecordingFile
+     *
+     * @param filePath File to load.
+     * @return A Plot1D object ready to use or null on failure.
+     */
+    public static Plot1D createFromBinaryFile(String filePath) {
+        RecordingFile rec = null;
+        try {
+            File f = new File(filePath);
+            rec = RecordingFile.openForReading(f);
+            if (rec.totalCount <= 0 || rec.totalCount > Integer.MAX_VALUE)
+                return null;
+
+            Plot1D plot = new Plot1D(f.getName(), null, PlotStyle.LINE, (int) rec.totalCount);
+            plot.setAxis("t", "s", 1f, "a", "g", 1f);
+            plot.loadFromRecording(rec);
+
+            return plot;
+        } catch (IOException e) {
+            Log.w(PlotView.TAG, "Error reading " + filePath, e);
+        } catch (OutOfMemoryError e) {
+            return null;
+        } finally {
+            if (rec != null) {
+                try {
+                    rec.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        return null;
+    }
+
     /**
      * Creates a Plot1D by loading the given text (gzipped) m_file, separating
      * at delimiter and using the given columns.
@@ -622,115 +1231,48 @@ public class Plot1D extends Plot {
 
         Assert.assertTrue(firstColumn < secondColumn);
 
+        InputStream in = null;
         try {
             File f = new File(filePath);
 
-            long val1;
-            float val2;
-            int currentColumn = 0;
-            int counter = 0;
-            ArrayList<Long> vals1;
-            ArrayList<Float> vals2;
-            BufferedReader reader;
-            long size;
-
-            // is gzip m_file?
-            if (filePath.endsWith(".gz")) {
-                reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new BufferedInputStream(
-                        new FileInputStream(f)))));
-                // estimate the sizes
-                size = f.length() >> 1;
-            } else {
-                reader = new BufferedReader(new FileReader(f));
-                // estimate the sizes
-                size = f.length() >> 3;
-            }
-
             // no m_file size
-            if (size <= 0) {
+            if (f.length() <= 0) {
                 return null;
             }
 
-            // preallocate value arrays
-            vals1 = new ArrayList<Long>((int) size);
-            vals2 = new ArrayList<Float>((int) size);
-
-            // initialize string (line) splitter
-            TextUtils.SimpleStringSplitter splitter = new TextUtils.SimpleStringSplitter(delimiter);
-            String line = null;
-
-            // skip header lines
-            while (numHeaderLines > 0) {
-                reader.readLine();
-                --numHeaderLines;
-            }
-
-            if (progressListener != null)
-                progressListener.onSetMaxProgress((int) size + 10);
-
-            // ==============> read lines
-            while ((line = reader.readLine()) != null) {
-                // split
-                splitter.setString(line);
-
-                try {
-                    // ==============> iterate columns
-                    currentColumn = 1;
-                    for (String split : splitter) {
-                        if (currentColumn == firstColumn) {
-                            val1 = Long.parseLong(split);
-                            vals1.add(val1);
-                        }
-
-                        if (currentColumn == secondColumn) {
-                            val2 = Float.valueOf(split);
-                            vals2.add(val2);
-                            // we have both values, break column iterator
-                            break;
-                        }
-
-                        ++currentColumn;
-                    }
-                    // <=============
-                } catch (NumberFormatException e) {
-                    e.printStackTrace();
-                }
-
-                ++counter;
+            DelimitedLoader loader = new DelimitedLoader(delimiter, firstColumn, secondColumn, numHeaderLines);
 
-                if (progressListener != null && counter % 256 == 0) {
-                    if (progressListener.isCancelled()) {
-                        reader.close();
-                        return null;
-                    }
+            // first pass: count the lines to size the rings
+            in = openInputStream(f);
+            final int size = loader.countLines(in);
+            in.close();
+            in = null;
 
-                    progressListener.onUpdateProgress(counter);
-                }
+            if (size <= 0) {
+                return null;
             }
-            // <=============
 
-            // Log.d( PlotView.TAG,
-            // String.format( "Plot1D.create loaded %d and %d values.",
-            // vals1.size(),
-            // vals2.size() ) );
             if (progressListener != null)
-                progressListener.onUpdateProgress((int) (size + 3));
+                progressListener.onSetMaxProgress(size + 10);
 
             // create plot
-            plot = new Plot1D(f.getName(), null, PlotStyle.LINE, vals1.size());
+            plot = new Plot1D(f.getName(), null, PlotStyle.LINE, size);
             plot.setAxis("t", "s", 1f, "a", "g", 1f);
 
-            plot.x.copy(vals1);
-
-            if (progressListener != null)
-                progressListener.onUpdateProgress((int) (size + 7));
-
-            plot.values.copy(vals2);
+            // second pass: parse straight into the rings
+            in = openInputStream(f);
+            final int loaded = loader.load(in, plot.x, plot.values, progressListener);
+            if (loaded < 0) {
+                // cancelled
+                plot = null;
+            } else {
+                plot.inspectValues.addRepeated(false, loaded);
+                if (loader.skippedLines > 0)
+                    Log.w(PlotView.TAG, "Plot1D.create skipped " + loader.skippedLines + " invalid lines in " + filePath);
+            }
 
             if (progressListener != null)
-                progressListener.onUpdateProgress((int) (size + 10));
-
-            reader.close();
+                progressListener.onUpdateProgress(size + 10);
         } catch (FileNotFoundException e) {
             // TODO Auto-generated catch block
             e.printStackTrace();
@@ -739,11 +1281,33 @@ public class Plot1D extends Plot {
             e.printStackTrace();
         } catch (OutOfMemoryError e) {
             return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
         }
 
         return plot;
     }
 
+    /**
+     * Opens the given file for reading, decompressing it if it is gzipped.
+     *
+     * @param f
+     * @return
+     * @throws IOException
+     */
+    private static InputStream openInputStream(File f) throws IOException {
+        InputStream in = new FileInputStream(f);
+        if (f.getName().endsWith(".gz"))
+            return new GZIPInputStream(new BufferedInputStream(in));
+        return in;
+    }
+
     /**
      * Loads from streamIn.
      *
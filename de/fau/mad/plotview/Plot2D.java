@@ -23,11 +23,8 @@ import java.io.InputStreamReader;
 
 import android.content.Context;
 import android.graphics.Canvas;
-import android.graphics.CornerPathEffect;
 import android.graphics.Paint;
-import android.graphics.Paint.Align;
 import android.graphics.Paint.Style;
-import android.graphics.Path;
 import android.graphics.RectF;
 import android.text.TextUtils;
 
@@ -48,6 +45,19 @@ public class Plot2D extends Plot1D {
     protected float m_yRangeStart = -1;
     protected float m_yRangeEnd = -1;
 
+    /**
+     * Sample counts per cell for PlotStyle.DENSITY, created on the first draw
+     * in that style.
+     */
+    protected DensityGrid m_density = null;
+    protected int m_densityCellSize = DensityGrid.DEFAULT_CELL_SIZE;
+
+    /**
+     * Grid index of the entries, so draw() only visits the ones near the
+     * viewport. null if disabled.
+     */
+    protected SpatialGrid m_spatialIndex = null;
+
     /**
      * Constructor.
      *
@@ -108,6 +118,33 @@ public class Plot2D extends Plot1D {
         this.m_yRangeEnd = (yPivot + yRange / 2);
     }
 
+    /**
+     * Sets the size of the cells PlotStyle.DENSITY counts the samples in.
+     *
+     * @param pixels edge length of a cell in pixels, &gt;= 1
+     */
+    public void setDensityCellSize(int pixels) {
+        m_densityCellSize = Math.max(1, pixels);
+    }
+
+    /**
+     * Enables or disables a grid index over the (x, y) entries. With the
+     * index, draw() only visits the samples in and around the viewport
+     * instead of all entries of the rings, which pays off when zoomed into a
+     * large ring. Keeping it up to date costs O(1) per added sample. Not
+     * used for PlotStyle.LINE and PlotStyle.DENSITY, @see SpatialGrid
+     *
+     * @param enable
+     */
+    public void setSpatialIndex(boolean enable) {
+        m_dataLock.lock();
+        if (!enable)
+            m_spatialIndex = null;
+        else if (m_spatialIndex == null)
+            m_spatialIndex = new SpatialGrid(values.sizeMax);
+        m_dataLock.unlock();
+    }
+
     /**
      * Adds a single new value to this plot using the given x and y coordinate.
      *
@@ -129,6 +166,11 @@ public class Plot2D extends Plot1D {
 
         inspectValues.add(false);
 
+        if (m_density != null)
+            m_density.update(values.head, x, y);
+        if (m_spatialIndex != null)
+            m_spatialIndex.update(values.head, x, y);
+
         // make sure any potential marker on the old position is invalidated
         setMarker(values.head, null);
 
@@ -137,17 +179,74 @@ public class Plot2D extends Plot1D {
         plotChanged();
     }
 
+    /**
+     * Adds a block of samples to this plot, @see
+     * Plot1D#addValues(float[], long[], int, int)
+     *
+     * @param v      Sample values.
+     * @param x      X coordinates
+     * @param y      Y coordinates
+     * @param offset index of the first sample in v, x and y
+     * @param length number of samples to add
+     */
+    public void addValues(float[] v, long[] x, float[] y, int offset, int length) {
+        if (length <= 0)
+            return;
+
+        m_dataLock.lock();
+
+        this.y.add(y, offset, length);
+        addValuesFast(v, x, offset, length);
+
+        if (m_density != null || m_spatialIndex != null) {
+            // only the last sizeMax samples survive
+            int idx;
+            for (int i = Math.max(0, length - values.sizeMax); i < length; ++i) {
+                idx = values.head - (length - 1 - i);
+                if (idx < 0)
+                    idx += values.sizeMax;
+                if (m_density != null)
+                    m_density.update(idx, x[offset + i], y[offset + i]);
+                if (m_spatialIndex != null)
+                    m_spatialIndex.update(idx, x[offset + i], y[offset + i]);
+            }
+        }
+
+        m_dataLock.unlock();
+
+        plotChanged();
+    }
+
+    @Override
+    protected FloatValueList getSecondaryValues() {
+        return y;
+    }
+
+    /**
+     * y is 0 for all samples of recordings without a y column.
+     */
+    @Override
+    protected void addRecordedValues(float[] v, long[] x, float[] y, int length) {
+        addValues(v, x, y, 0, length);
+    }
+
     public void clear() {
         super.clear();
         y.clear();
+
+        m_dataLock.lock();
+        if (m_density != null)
+            m_density.clear();
+        if (m_spatialIndex != null)
+            m_spatialIndex.clear();
+        m_dataLock.unlock();
     }
 
     /**
      * temporary values to avoid unnecessary GCs - BE careful using/changing
      * these values!!!
      */
-    private transient float tX, tY, tVal;
-    private transient Path tPath;
+    protected final ScatterRenderer m_scatterRenderer = new ScatterRenderer();
 
     /**
      * Hairy Plotter for Plot1D
@@ -173,79 +272,19 @@ public class Plot2D extends Plot1D {
         can.save();
 
         try {
-            if (this.style == PlotStyle.LINE) {
-                tPath = new Path();
-                tPath.incReserve(m_idxNum + 4);
-            }
-
-            for (tIdx = 0; tIdx < m_idxNum; tIdx++) {
-                // Log.d( PlotView.TAG,
-                // "x " + (x.get( tInt ) - m_xRangeStart) * surface.xScale +
-                // "  y "
-                // + ((float) ( (y.get( tInt ) - m_yRangeStart) *
-                // surface.yPxScale)) );
-
-                tX = (float) ((x.getIndirect(tIdx) - m_xRangeStart) * m_xIdxScale);
-                tY = (float) ((y.getIndirect(tIdx) - m_yRangeStart) * m_yPxScale);
-                tVal = values.getIndirect(tIdx);
-
-                switch (this.style) {
-                    case RECT_VALUE_FILLED:
-                        m_paint.setColor((int) tVal);
-                        can.drawRect(tX - 5, tY + 5, tX + 5, tY - 5, m_paint);
-                        break;
-
-                    case RECT:
-                        can.drawRect(tX - tVal, tY + tVal, tX + tVal, tY - tVal, m_paint);
-                        break;
-
-                    case CROSS:
-                        can.save();
-                        can.scale(1f, -1f);
-                        m_paint.setStrokeWidth(1f);
-                        m_paint.setStyle(Paint.Style.STROKE);
-                        m_paint.setTextAlign(Align.CENTER);
-                        m_paint.setTextSize(10);
-                        can.drawText("x", tX, (float) (-tY + m_paint.descent() * m_yPxScale), m_paint);
-                        can.restore();
-                        break;
-
-                    case LINE:
-                        if (tIdx == 0) {
-                            tPath.moveTo(tX, tY);
-                            if (tVal > 1f)
-                                m_paint.setPathEffect(new CornerPathEffect(tVal));
-                        }
-
-                        tPath.lineTo(tX, tY);
-                        break;
-
-                    case CIRCLE:
-                        can.drawCircle(tX, tY, tVal, m_paint);
-                        break;
-
-                    case TEXT:
-                        can.save();
-                        can.scale(1f, -1f);
-                        m_paint.setStrokeWidth(1f);
-                        m_paint.setStyle(Paint.Style.STROKE);
-                        m_paint.setTextAlign(Align.CENTER);
-                        m_paint.setTextSize(10);
-                        can.drawText(Long.toString((long) tVal), tX, -tY, m_paint);
-                        can.restore();
-                        break;
-
-                    default:
-                    case POINT:
-                        can.drawPoint(tX, tY, m_paint);
-                        break;
-                }
-            }
-
-            m_dataLock.unlock();
-
-            if (this.style == PlotStyle.LINE) {
-                can.drawPath(tPath, m_paint);
+            if (style == PlotStyle.DENSITY) {
+                drawDensity(can, surface);
+            } else if (m_spatialIndex != null && style != PlotStyle.LINE && queryViewport(surface)) {
+                m_scatterRenderer.render(m_plotCanvas.set(can, m_paint), this.style, x, y, values,
+                        m_spatialIndex.result, m_spatialIndex.resultCount, m_xRangeStart, m_xIdxScale,
+                        m_yRangeStart, m_yPxScale);
+
+                m_dataLock.unlock();
+            } else {
+                m_scatterRenderer.render(m_plotCanvas.set(can, m_paint), this.style, x, y, values, m_idxNum,
+                        m_xRangeStart, m_xIdxScale, m_yRangeStart, m_yPxScale);
+
+                m_dataLock.unlock();
             }
         } catch (Exception e) {
             m_dataLock.unlock();
@@ -263,6 +302,55 @@ public class Plot2D extends Plot1D {
         can.restore();
     }
 
+    /**
+     * Collects the entries in and around the viewport from the spatial index,
+     * which is rebuilt first if the zoom changed too much. The index cells
+     * around the viewport are included as well, so markers of samples just
+     * outside still reach into it.
+     *
+     * @return false if the whole rings have to be drawn instead.
+     */
+    private boolean queryViewport(PlotSurface surface) {
+        if (m_xIdxScale <= 0 || m_yPxScale <= 0)
+            return false;
+
+        final double xRange = surface.width / m_xIdxScale;
+        final double yRange = surface.height / m_yPxScale;
+        if (m_spatialIndex.needsRebuild(xRange, yRange))
+            m_spatialIndex.rebuild(x, y, m_xRangeStart, xRange, m_yRangeStart, yRange);
+
+        return m_spatialIndex.query(m_xRangeStart, m_xRangeStart + (long) Math.ceil(xRange), m_yRangeStart,
+                (float) (m_yRangeStart + yRange), 1);
+    }
+
+    /**
+     * Draws the sample counts of the density grid, which is only rebuilt if
+     * the viewport or the surface size changed. Unlocks m_dataLock once the
+     * cells are colored.
+     */
+    private void drawDensity(Canvas can, PlotSurface surface) {
+        if (m_density == null)
+            m_density = new DensityGrid(values.sizeMax);
+
+        final int cols = (surface.width + m_densityCellSize - 1) / m_densityCellSize;
+        final int rows = (surface.height + m_densityCellSize - 1) / m_densityCellSize;
+        if (cols <= 0 || rows <= 0) {
+            m_dataLock.unlock();
+            return;
+        }
+
+        if (m_density.setMapping(cols, rows, m_xRangeStart, m_xIdxScale / m_densityCellSize, m_yRangeStart,
+                m_yPxScale / m_densityCellSize) || !m_density.isValid())
+            m_density.rebuild(x, y);
+
+        m_density.render(m_paint.getColor());
+
+        m_dataLock.unlock();
+
+        m_plotCanvas.set(can, m_paint).drawPixels(m_density.pixels, cols, rows, 0, 0, cols * m_densityCellSize,
+                rows * m_densityCellSize);
+    }
+
     @Override
     public void getViewport(PlotSurface surface) {
         m_dataLock.lock();
@@ -422,14 +510,14 @@ public class Plot2D extends Plot1D {
     }
 
     @Override
-    protected String formatAxisText(PlotAxis axis, int pt) {
+    protected AxisLabels.Label formatAxisText(PlotAxis axis, int pt) {
         if (axis == xAxis && m_xIdxScale != 0) {
-            return Long.toString((long) ((m_xAxisMin + pt / m_xIdxScale) * axis.multiplier));
+            return axis.labels.get((long) ((m_xAxisMin + pt / m_xIdxScale) * axis.multiplier));
         } else if (axis == yAxis && m_yPxScale != 0) {
-            return Float.toString((long) ((m_yAxisMin + (long) (pt / m_yPxScale)) * axis.multiplier));
+            return axis.labels.get((long) ((m_yAxisMin + (long) (pt / m_yPxScale)) * axis.multiplier), 1);
         }
 
-        return "n/a";
+        return axis.labels.notAvailable();
     }
 
     private transient RectF tRect = new RectF();
@@ -0,0 +1,123 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+/**
+ * Minimal drawing surface the plot data is rendered through. Implementations
+ * exist for the Android Canvas (AndroidPlotCanvas) and for a plain int[]
+ * ARGB buffer (RasterPlotCanvas), so the rendering paths can also run on a
+ * JVM without Android.
+ * <p>
+ * Coordinates are plot coordinates, i.e. the y-axis points upwards as set up
+ * by PlotView. The drawing state (color, stroke, ...) stays set until it is
+ * changed again. Point arrays hold interleaved x/y pairs and all counts are
+ * numbers of floats, like Android's Canvas.drawLines().
+ */
+public interface PlotCanvas {
+    public void save();
+
+    public void restore();
+
+    public void translate(float dx, float dy);
+
+    public void scale(float sx, float sy);
+
+    public void setColor(int argb);
+
+    public void setStrokeWidth(float width);
+
+    /**
+     * @param fill Whether rects and circles are filled or only outlined.
+     */
+    public void setFill(boolean fill);
+
+    public void setTextSize(float size);
+
+    /**
+     * @return Distance of the lowest glyph part below the baseline for the
+     * current text size, in pixels.
+     */
+    public float getTextDescent();
+
+    /**
+     * Rounds the corners of polylines with the given radius. Backends may
+     * ignore it. A radius &lt;= 1 disables rounding.
+     *
+     * @param radius
+     */
+    public void setCornerRadius(float radius);
+
+    public void drawLine(float x0, float y0, float x1, float y1);
+
+    /**
+     * Draws separate line segments, each of them defined by four floats.
+     *
+     * @param pts
+     * @param offset index of the first float
+     * @param count  number of floats, multiple of 4
+     */
+    public void drawLines(float[] pts, int offset, int count);
+
+    /**
+     * Draws a connected line through all points.
+     *
+     * @param pts
+     * @param offset index of the first float
+     * @param count  number of floats, multiple of 2
+     */
+    public void drawPolyline(float[] pts, int offset, int count);
+
+    public void drawPoint(float x, float y);
+
+    /**
+     * Draws a point for every x/y pair.
+     *
+     * @param pts
+     * @param offset index of the first float
+     * @param count  number of floats, multiple of 2
+     */
+    public void drawPoints(float[] pts, int offset, int count);
+
+    public void drawRect(float left, float top, float right, float bottom);
+
+    public void drawCircle(float cx, float cy, float radius);
+
+    /**
+     * Draws an ARGB image scaled to the given rect. Row 0 of the image is
+     * drawn at top, which is the lower edge in plot coordinates.
+     *
+     * @param argb   width * height colors, row by row
+     * @param width
+     * @param height
+     * @param left
+     * @param top
+     * @param right
+     * @param bottom
+     */
+    public void drawPixels(int[] argb, int width, int height, float left, float top, float right, float bottom);
+
+    /**
+     * Draws upright text horizontally centered at x with its baseline at y.
+     *
+     * @param text
+     * @param offset
+     * @param length
+     * @param x
+     * @param y
+     */
+    public void drawText(char[] text, int offset, int length, float x, float y);
+}
@@ -28,6 +28,7 @@ import junit.framework.Assert;
 import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.DashPathEffect;
@@ -159,6 +160,15 @@ public class PlotView extends View {
      */
     protected PlotSurface m_surface = null;
 
+    /**
+     * Render thread, only running if RENDER_IN_BACKGROUND is set.
+     */
+    private PlotRenderer m_renderer = null;
+    /**
+     * Set by requestRedraw(), tells the render thread that plot data changed.
+     */
+    private volatile boolean m_renderDirty = true;
+
     /**
      * The group this PlotView is linked into.
      */
@@ -219,7 +229,14 @@ public class PlotView extends View {
          */
         ENABLE_AUTO_RESET,
 
-        USE_THREAD_SAFE_UI_CALLS;
+        USE_THREAD_SAFE_UI_CALLS,
+
+        /**
+         * getViewport() and draw() of all plots run on a separate render
+         * thread into an off-screen bitmap. onDraw() only blits the last
+         * completed frame, so the UI thread never waits for the plots.
+         */
+        RENDER_IN_BACKGROUND;
 
         public static final EnumSet<Flags> DEFAULT = EnumSet.of(DRAW_AXES,
                 // DRAW_GRID,
@@ -646,6 +663,37 @@ public class PlotView extends View {
             PlotView.this.invalidate();
         }
 
+        /**
+         * Copies all view and user values of other, except the animations.
+         *
+         * @param other
+         */
+        public void set(PlotSurface other) {
+            plotView = other.plotView;
+            viewWidth = other.viewWidth;
+            viewHeight = other.viewHeight;
+            width = other.width;
+            height = other.height;
+            xTrans = other.xTrans;
+            yTrans = other.yTrans;
+            xScale = other.xScale;
+            yScale = other.yScale;
+            xScrollAmp = other.xScrollAmp;
+            yScrollAmp = other.yScrollAmp;
+            masterPlot = other.masterPlot;
+        }
+
+        /**
+         * @param other
+         * @return true if other would result in the same frame, as long as the
+         * plot data doesn't change.
+         */
+        public boolean sameView(PlotSurface other) {
+            return viewWidth == other.viewWidth && viewHeight == other.viewHeight && width == other.width
+                    && height == other.height && xTrans == other.xTrans && yTrans == other.yTrans
+                    && xScale == other.xScale && yScale == other.yScale && masterPlot == other.masterPlot;
+        }
+
         /**
          * Initializes and starts an x scroll animation.
          *
@@ -780,7 +828,9 @@ public class PlotView extends View {
             plot.m_plotChangeListener.onAttach(this);
         }
 
-        m_plots.add(plot);
+        synchronized (m_plots) {
+            m_plots.add(plot);
+        }
         requestRedraw(false);
         return m_plots.size() - 1;
     }
@@ -803,7 +853,9 @@ public class PlotView extends View {
             plot.m_plotChangeListener = null;
         }
 
-        m_plots.add(plot);
+        synchronized (m_plots) {
+            m_plots.add(plot);
+        }
         requestRedraw(false);
         return m_plots.size() - 1;
     }
@@ -869,6 +921,8 @@ public class PlotView extends View {
      *                invalidate()
      */
     public void requestRedraw(boolean usePost) {
+        m_renderDirty = true;
+
         if (!usePost && hasFlag(PlotView.Flags.USE_THREAD_SAFE_UI_CALLS))
             usePost = true;
 
@@ -1049,23 +1103,87 @@ public class PlotView extends View {
 
         // get first visible plot / see if we have one at all
         m_surface.masterPlot = getFirstVisiblePlot();
-        if (m_surface.masterPlot == null) {
+
+        if (hasFlag(Flags.RENDER_IN_BACKGROUND)) {
+            if (m_renderer == null) {
+                m_renderer = new PlotRenderer();
+                m_renderer.start();
+            }
+
+            // take over corrections the plots made to the last frame's
+            // surface, then render a new frame if anything changed
+            m_renderer.applyResult(m_surface);
+            if (m_renderDirty || !m_renderer.isRequested(m_surface)) {
+                m_renderDirty = false;
+                m_renderer.requestFrame(m_surface);
+            }
+
+            m_renderer.blit(canvas);
+        } else if (!drawPlots(canvas, m_surface)) {
+            return;
+        }
+
+        // ==============> Fling transformation animation handling
+        if (m_surface.xFlinger != null && !m_surface.xFlinger.hasEnded()) {
+            m_surface.xFlinger.getTransformation(AnimationUtils.currentAnimationTimeMillis(), tAnimTrafo);
+            tAnimTrafo.getMatrix().getValues(tTrafoMat);
+
+            // x trans is represented by a13 of the transformation matrix
+            m_surface.xTrans = tTrafoMat[2];
+
+            // reinvalidate immediately to continue animation
+            invalidate();
+        }
+        // <=============
+
+        // ==============> Scale animation handling
+        if (m_surface.xAnimScale != null && !m_surface.xAnimScale.hasEnded()) {
+            m_surface.xAnimScale.getTransformation(AnimationUtils.currentAnimationTimeMillis(), tAnimTrafo);
+            tAnimTrafo.getMatrix().getValues(tTrafoMat);
+
+            // x scale is represented by a11 of the transformation matrix
+            m_surface.xScale = tTrafoMat[0];
+            // Log.d( TAG, " " + tAnimTrafo.toShortString() );
+
+            // reinvalidate immediately to continue animation
+            invalidate();
+        }
+        // <=============
+
+        // Immediately reinvalidate if requested
+        if (m_maxRedrawRate <= 0)
+            invalidate();
+    }
+
+    private transient Rect tTitleBounds = new Rect();
+
+    /**
+     * Calculates the viewport of the master plot and draws the axes and all
+     * visible plots. Called by onDraw() or, if RENDER_IN_BACKGROUND is set,
+     * by the render thread with its own surface.
+     *
+     * @param canvas
+     * @param surface
+     * @return false if there is no visible plot.
+     */
+    private boolean drawPlots(Canvas canvas, PlotSurface surface) {
+        if (surface.masterPlot == null) {
             // there are no plots to draw, or none is visible, we just draw a
             // dummy view
-            canvas.drawText("n/a", 30, m_surface.viewHeight - 30, m_defaultPaint);
-            canvas.drawLine(-1000f, m_surface.viewHeight - 5f, 1000f, m_surface.viewHeight - 5f, m_defaultPaint);
+            canvas.drawText("n/a", 30, surface.viewHeight - 30, m_defaultPaint);
+            canvas.drawLine(-1000f, surface.viewHeight - 5f, 1000f, surface.viewHeight - 5f, m_defaultPaint);
             canvas.drawLine(5f, -1000f, 5f, 1000f, m_defaultPaint);
-            return;
+            return false;
         }
 
-        m_surface.masterPlot.getViewport(m_surface);
-        m_surface.xScrollAmp = m_surface.masterPlot.m_numIdxPerPixel;
+        surface.masterPlot.getViewport(surface);
+        surface.xScrollAmp = surface.masterPlot.m_numIdxPerPixel;
 
         if (hasFlag(Flags.DISABLE_Y_USERSCROLL)) {
-            m_surface.yTrans = 0f;
-            m_surface.yScrollAmp = 1d;
+            surface.yTrans = 0f;
+            surface.yScrollAmp = 1d;
         } else {
-            m_surface.yScrollAmp = 1 / m_surface.masterPlot.m_yPxScale;
+            surface.yScrollAmp = 1 / surface.masterPlot.m_yPxScale;
         }
 
         // enforce autoscroll TODO: implement 30s timeout
@@ -1078,81 +1196,53 @@ public class PlotView extends View {
         // X-AXIS
         if (m_plotFlags.contains(Flags.DRAW_AXES)) {
             // draw the title and current scroll position
-            Rect bounds = new Rect();
-            titlePaint.getTextBounds(m_surface.masterPlot.plotTitle, 0, m_surface.masterPlot.plotTitle.length(), bounds);
-            canvas.drawText(m_surface.masterPlot.plotTitle, m_surface.viewWidth * 0.5f, 10 + bounds.height(), titlePaint);
+            titlePaint.getTextBounds(surface.masterPlot.plotTitle, 0, surface.masterPlot.plotTitle.length(), tTitleBounds);
+            canvas.drawText(surface.masterPlot.plotTitle, surface.viewWidth * 0.5f, 10 + tTitleBounds.height(), titlePaint);
 
 
             // canvas.drawText( String.format(
             // "[#:%d; xT:%d; xS:%.2f; xAmp:%.2f]",
-            // m_surface.masterPlot.m_idxNum,
-            // m_surface.masterPlot.m_xIdxTrans,
-            // m_surface.xScale,
-            // m_surface.xScrollAmp ), 120, 30, m_defaultPaint );
+            // surface.masterPlot.m_idxNum,
+            // surface.masterPlot.m_xIdxTrans,
+            // surface.xScale,
+            // surface.xScrollAmp ), 120, 30, m_defaultPaint );
 
-            m_surface.masterPlot.drawAxis(canvas, m_surface, m_plotFlags.contains(Flags.DRAW_GRID),
+            surface.masterPlot.drawAxis(canvas, surface, m_plotFlags.contains(Flags.DRAW_GRID),
                     m_plotFlags.contains(Flags.DRAW_MAP), domainAxisPaint, valueAxisPaint);
         }
 
         canvas.save();
 
         // correct origin from left->right/top->down to left->right/bottom->up
-        canvas.translate(0, m_surface.viewHeight);
+        canvas.translate(0, surface.viewHeight);
         canvas.scale(1f, -1f);
 
         canvas.translate(getAxisHeight() + this.getPaddingLeft() + AXIS_PADDING, getAxisHeight() + this.getPaddingBottom() + AXIS_PADDING);
 
         // draw all visible plots minus masterPlot, which is drawn last on top
         // of the others
-        t_drawSize = m_plots.size();
-        for (t_iter = 0; t_iter < t_drawSize; t_iter++) {
-            if (m_plots.get(t_iter) == m_surface.masterPlot)
-                continue;
-
-            if (m_plots.get(t_iter).isVisible) {
-                m_plots.get(t_iter).draw(canvas, m_surface);
-                m_plots.get(t_iter).drawGlobalMarks(canvas, m_surface);
+        synchronized (m_plots) {
+            t_drawSize = m_plots.size();
+            for (t_iter = 0; t_iter < t_drawSize; t_iter++) {
+                if (m_plots.get(t_iter) == surface.masterPlot)
+                    continue;
+
+                if (m_plots.get(t_iter).isVisible) {
+                    m_plots.get(t_iter).draw(canvas, surface);
+                    m_plots.get(t_iter).drawGlobalMarks(canvas, surface);
+                }
             }
         }
 
         // draw masterPlot last and on top
-        m_surface.masterPlot.draw(canvas, m_surface);
+        surface.masterPlot.draw(canvas, surface);
 
         // draw masterPlot marks
-        m_surface.masterPlot.drawGlobalMarks(canvas, m_surface);
+        surface.masterPlot.drawGlobalMarks(canvas, surface);
 
         canvas.restore();
 
-        // ==============> Fling transformation animation handling
-        if (m_surface.xFlinger != null && !m_surface.xFlinger.hasEnded()) {
-            m_surface.xFlinger.getTransformation(AnimationUtils.currentAnimationTimeMillis(), tAnimTrafo);
-            tAnimTrafo.getMatrix().getValues(tTrafoMat);
-
-            // x trans is represented by a13 of the transformation matrix
-            m_surface.xTrans = tTrafoMat[2];
-
-            // reinvalidate immediately to continue animation
-            invalidate();
-        }
-        // <=============
-
-        // ==============> Scale animation handling
-        if (m_surface.xAnimScale != null && !m_surface.xAnimScale.hasEnded()) {
-            m_surface.xAnimScale.getTransformation(AnimationUtils.currentAnimationTimeMillis(), tAnimTrafo);
-            tAnimTrafo.getMatrix().getValues(tTrafoMat);
-
-            // x scale is represented by a11 of the transformation matrix
-            m_surface.xScale = tTrafoMat[0];
-            // Log.d( TAG, " " + tAnimTrafo.toShortString() );
-
-            // reinvalidate immediately to continue animation
-            invalidate();
-        }
-        // <=============
-
-        // Immediately reinvalidate if requested
-        if (m_maxRedrawRate <= 0)
-            invalidate();
+        return true;
     }
 
     private transient Transformation tAnimTrafo = new Transformation();
@@ -1171,6 +1261,257 @@ public class PlotView extends View {
         super.onSizeChanged(w, h, oldw, oldh);
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see android.view.View#onDetachedFromWindow()
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        stopRenderer();
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * Stops the render thread, if there is one. It is restarted on the next
+     * onDraw() if RENDER_IN_BACKGROUND is still set.
+     */
+    private void stopRenderer() {
+        if (m_renderer != null) {
+            m_renderer.quit();
+            m_renderer = null;
+        }
+    }
+
+    /**
+     * @return Number of frames completed by the render thread, or 0 if
+     * RENDER_IN_BACKGROUND isn't used.
+     */
+    public long getRenderedFrames() {
+        final PlotRenderer r = m_renderer;
+        return r != null ? r.framesRendered : 0;
+    }
+
+    /**
+     * @return Number of frame requests that were replaced by a newer one
+     * before the render thread could start them.
+     */
+    public long getDroppedFrames() {
+        final PlotRenderer r = m_renderer;
+        return r != null ? r.framesDropped : 0;
+    }
+
+    /**
+     * @return Milliseconds between the request and the completion of the last
+     * frame rendered in background.
+     */
+    public long getLastFrameLatency() {
+        final PlotRenderer r = m_renderer;
+        return r != null ? r.lastLatency : 0;
+    }
+
+    /**
+     * @return Maximum frame latency in milliseconds, @see
+     * #getLastFrameLatency()
+     */
+    public long getMaxFrameLatency() {
+        final PlotRenderer r = m_renderer;
+        return r != null ? r.maxLatency : 0;
+    }
+
+    /**
+     * Renders frames into an off-screen bitmap on its own thread. Uses its own
+     * PlotSurface so the UI thread can keep processing gestures on m_surface
+     * while a frame is rendered.
+     * <p>
+     * Three bitmaps are used: the newest completed frame, the one the last
+     * onDraw() blitted and the one being drawn to. With hardware acceleration
+     * the blitted bitmap is only uploaded after onDraw() returned, so it must
+     * not be drawn to again until a later onDraw() blitted another one.
+     */
+    private class PlotRenderer extends Thread {
+        /**
+         * Surface the UI thread requested the next frame for.
+         */
+        private final PlotSurface m_request = new PlotSurface();
+        private boolean m_requestPending = false;
+        private long m_requestMillis = 0;
+
+        /**
+         * Surface the current frame is rendered with, and the input values it
+         * had before the plots corrected them.
+         */
+        private final PlotSurface m_render = new PlotSurface();
+        private final PlotSurface m_renderInput = new PlotSurface();
+
+        /**
+         * Surface of the last completed frame.
+         */
+        private final PlotSurface m_result = new PlotSurface();
+        private final PlotSurface m_resultInput = new PlotSurface();
+        private boolean m_resultPending = false;
+
+        private final Bitmap[] m_buffers = new Bitmap[3];
+        private final Canvas[] m_canvases = new Canvas[3];
+
+        /**
+         * Buffer of the newest completed frame and buffer blitted by the last
+         * onDraw(), -1 if none.
+         */
+        private int m_front = -1;
+        private int m_shown = -1;
+
+        private volatile boolean m_running = true;
+
+        public volatile long framesRendered = 0;
+        public volatile long framesDropped = 0;
+        public volatile long lastLatency = 0;
+        public volatile long maxLatency = 0;
+
+        public PlotRenderer() {
+            super("PlotView renderer");
+            setDaemon(true);
+        }
+
+        /**
+         * Requests a new frame for the given surface. A request that wasn't
+         * started yet is replaced and counted as dropped.
+         */
+        public synchronized void requestFrame(PlotSurface surface) {
+            if (m_requestPending)
+                ++framesDropped;
+
+            m_request.set(surface);
+            m_requestPending = true;
+            m_requestMillis = System.currentTimeMillis();
+            notify();
+        }
+
+        /**
+         * @return true if the last requested frame was for the same view as
+         * surface.
+         */
+        public synchronized boolean isRequested(PlotSurface surface) {
+            return m_request.sameView(surface);
+        }
+
+        /**
+         * Copies the scroll amplifiers of the last completed frame to surface.
+         * The translation and scale corrections made by the plots are only
+         * taken over if the user didn't change them in the meantime.
+         */
+        public synchronized void applyResult(PlotSurface surface) {
+            if (!m_resultPending)
+                return;
+            m_resultPending = false;
+
+            surface.xScrollAmp = m_result.xScrollAmp;
+            surface.yScrollAmp = m_result.yScrollAmp;
+
+            if (surface.sameView(m_resultInput)) {
+                surface.xTrans = m_result.xTrans;
+                surface.yTrans = m_result.yTrans;
+                surface.xScale = m_result.xScale;
+                surface.yScale = m_result.yScale;
+            }
+
+            // the corrected surface must not trigger another frame
+            if (m_request.sameView(m_resultInput))
+                m_request.set(surface);
+        }
+
+        /**
+         * Draws the last completed frame.
+         */
+        public synchronized void blit(Canvas canvas) {
+            // the buffer shown before has been uploaded by now
+            m_shown = m_front;
+            if (m_shown != -1)
+                canvas.drawBitmap(m_buffers[m_shown], 0, 0, null);
+        }
+
+        public synchronized void quit() {
+            m_running = false;
+            notify();
+        }
+
+        @Override
+        public void run() {
+            long requestMillis;
+            int back;
+
+            while (m_running) {
+                // ==============> wait for a request
+                synchronized (this) {
+                    while (!m_requestPending && m_running) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            m_running = false;
+                        }
+                    }
+                    if (!m_running)
+                        break;
+
+                    m_render.set(m_request);
+                    m_requestPending = false;
+                    requestMillis = m_requestMillis;
+
+                    // neither the newest frame nor the one onDraw() may still
+                    // be uploading
+                    back = 0;
+                    while (back == m_front || back == m_shown)
+                        ++back;
+                }
+                m_renderInput.set(m_render);
+                // <=============
+
+                if (m_render.viewWidth <= 0 || m_render.viewHeight <= 0)
+                    continue;
+
+                // ==============> (re)allocate the back buffer on size changes
+                if (m_buffers[back] == null || m_buffers[back].getWidth() != m_render.viewWidth
+                        || m_buffers[back].getHeight() != m_render.viewHeight) {
+                    // not recycled, a display list may still reference it
+                    m_buffers[back] = Bitmap.createBitmap(m_render.viewWidth, m_render.viewHeight,
+                            Bitmap.Config.ARGB_8888);
+                    m_canvases[back] = new Canvas(m_buffers[back]);
+                }
+                // <=============
+
+                m_buffers[back].eraseColor(Color.TRANSPARENT);
+                drawPlots(m_canvases[back], m_render);
+
+                // ==============> swap
+                synchronized (this) {
+                    m_front = back;
+
+                    m_result.set(m_render);
+                    m_resultInput.set(m_renderInput);
+                    m_resultPending = true;
+
+                    lastLatency = System.currentTimeMillis() - requestMillis;
+                    if (lastLatency > maxLatency)
+                        maxLatency = lastLatency;
+                    ++framesRendered;
+                }
+                // <=============
+
+                postInvalidate();
+            }
+
+            // the bitmaps are left to the GC, the last blitted one may still be
+            // referenced by a display list
+            synchronized (this) {
+                m_front = m_shown = -1;
+                for (back = 0; back < m_buffers.length; ++back) {
+                    m_buffers[back] = null;
+                    m_canvases[back] = null;
+                }
+            }
+        }
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -1193,6 +1534,8 @@ public class PlotView extends View {
      */
     public void removeFlag(Flags flag) {
         m_plotFlags.remove(flag);
+        if (flag == Flags.RENDER_IN_BACKGROUND)
+            stopRenderer();
         requestRedraw(false);
     }
 
@@ -1202,10 +1545,12 @@ public class PlotView extends View {
      * @param idx
      */
     public void removePlot(int idx) {
-        if (idx < 0) {
-            m_plots.clear();
-        } else
-            m_plots.remove(idx);
+        synchronized (m_plots) {
+            if (idx < 0) {
+                m_plots.clear();
+            } else
+                m_plots.remove(idx);
+        }
         requestRedraw(false);
     }
 
@@ -0,0 +1,193 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.util.Arrays;
+
+/**
+ * Running sums of the values and squared values of a FloatValueList ring,
+ * in double precision.
+ * <p>
+ * For every raw index the sums of all entries added up to and including it
+ * are stored. Entries are added in logical order, so the sum of the logical
+ * range from raw index first to raw index last is the difference of their
+ * running sums plus the value at first, no matter whether the range wraps
+ * around the end of the ring.
+ * <p>
+ * The running sums would grow with every added entry and lose precision, so
+ * they restart at 0 every round of the ring. The ring then holds entries of
+ * at most two rounds, and the sums of the previous round are shifted by its
+ * total when they are compared to the current ones. No entry ever has to be
+ * summed up again, every add() is O(1).
+ */
+public class PrefixSums {
+    private final double[] sum;
+    private final double[] sumSq;
+
+    /**
+     * Totals of the current round and of the previous round at its end.
+     */
+    private double total = 0, totalSq = 0;
+    private double prevTotal = 0, prevTotalSq = 0;
+
+    /**
+     * Entries added in the current round and raw index of the newest one.
+     */
+    private int added = 0;
+    private int newest = -1;
+
+    /**
+     * Result of the last query()
+     */
+    public double rangeSum, rangeSumSq;
+
+    /**
+     * TRANSIENT variables
+     */
+    private transient int tIter, tIdx;
+
+    /**
+     * @param capacity Number of entries of the ring.
+     */
+    public PrefixSums(int capacity) {
+        sum = new double[capacity];
+        sumSq = new double[capacity];
+    }
+
+    public void clear() {
+        Arrays.fill(sum, 0);
+        Arrays.fill(sumSq, 0);
+        total = totalSq = 0;
+        prevTotal = prevTotalSq = 0;
+        added = 0;
+        newest = -1;
+    }
+
+    /**
+     * Recomputes the running sums of the num entries starting at the raw
+     * index tail, O(num).
+     */
+    public void rebuild(float[] values, int tail, int num) {
+        total = totalSq = 0;
+        prevTotal = prevTotalSq = 0;
+        added = 0;
+        newest = -1;
+        for (tIter = 0; tIter < num; ++tIter) {
+            tIdx = tail + tIter;
+            if (tIdx >= sum.length)
+                tIdx -= sum.length;
+            append(values, tIdx);
+        }
+    }
+
+    /**
+     * Must be called after values[idx] was added as newest entry.
+     */
+    public void update(float[] values, int idx) {
+        append(values, idx);
+    }
+
+    /**
+     * Must be called after values[from..to] were added as newest entries.
+     */
+    public void updateRange(float[] values, int from, int to) {
+        for (tIdx = from; tIdx <= to; ++tIdx) {
+            append(values, tIdx);
+        }
+    }
+
+    private void append(float[] values, int idx) {
+        if (added == sum.length) {
+            // a new round, the oldest entries are from the previous one
+            prevTotal = total;
+            prevTotalSq = totalSq;
+            total = totalSq = 0;
+            added = 0;
+        }
+
+        total += values[idx];
+        totalSq += (double) values[idx] * values[idx];
+        sum[idx] = total;
+        sumSq[idx] = totalSq;
+        ++added;
+        newest = idx;
+    }
+
+    /**
+     * Must be called after values[idx] of an existing entry was replaced.
+     * Only the running sums from idx to the end of its round change.
+     *
+     * @param values
+     * @param idx      raw index
+     * @param oldValue value before the replacement
+     */
+    public void replace(float[] values, int idx, float oldValue) {
+        if (newest == -1)
+            return;
+
+        final double d = (double) values[idx] - oldValue;
+        final double dSq = (double) values[idx] * values[idx] - (double) oldValue * oldValue;
+        final boolean current = isCurrent(idx);
+
+        tIdx = idx;
+        while (true) {
+            sum[tIdx] += d;
+            sumSq[tIdx] += dSq;
+            if (tIdx == newest)
+                break;
+            if (++tIdx == sum.length)
+                tIdx = 0;
+            if (isCurrent(tIdx) != current)
+                break;
+        }
+
+        if (current) {
+            total += d;
+            totalSq += dSq;
+        } else {
+            prevTotal += d;
+            prevTotalSq += dSq;
+        }
+    }
+
+    /**
+     * @return Whether the entry at the raw index was added in the current
+     * round.
+     */
+    private boolean isCurrent(int idx) {
+        int age = newest - idx;
+        if (age < 0)
+            age += sum.length;
+        return age < added;
+    }
+
+    /**
+     * Fills rangeSum and rangeSumSq for the logical range from the raw index
+     * first to the raw index last, both included. first must not be newer
+     * than last.
+     */
+    public void query(float[] values, int first, int last) {
+        rangeSum = sum[last] - sum[first] + values[first];
+        rangeSumSq = sumSq[last] - sumSq[first] + (double) values[first] * values[first];
+
+        // shift the previous round's sums into the current round
+        if (isCurrent(last) && !isCurrent(first)) {
+            rangeSum += prevTotal;
+            rangeSumSq += prevTotalSq;
+        }
+    }
+}
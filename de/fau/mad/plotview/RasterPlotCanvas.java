@@ -0,0 +1,390 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.util.Arrays;
+
+/**
+ * Pure Java PlotCanvas rasterizing into an int[] ARGB buffer, row by row
+ * from the top left corner. Used to run the plot rendering without Android,
+ * e.g. for benchmarks or to export images.
+ * <p>
+ * Only translation and scaling are supported as transformation. Lines are
+ * drawn with Bresenham's algorithm and a square brush of the stroke width,
+ * colors are blended source-over. There is no anti-aliasing, corner
+ * rounding or text rendering; drawText() does nothing.
+ */
+public class RasterPlotCanvas implements PlotCanvas {
+    private final int m_width;
+    private final int m_height;
+    private final int[] m_pixels;
+
+    // current transformation: device = plot * scale + trans
+    private float m_sx = 1f, m_sy = 1f, m_tx = 0f, m_ty = 0f;
+    private float[] m_stack = new float[4 * 8];
+    private int m_stackSize = 0;
+
+    private int m_color = 0xFF000000;
+    private int m_brush = 1;
+    private boolean m_fill = false;
+    private float m_textSize = 12f;
+
+    /**
+     * TRANSIENT variables
+     */
+    private transient float tX0, tY0, tX1, tY1, tT0, tT1;
+
+    public RasterPlotCanvas(int width, int height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Invalid size " + width + "x" + height);
+
+        m_width = width;
+        m_height = height;
+        m_pixels = new int[width * height];
+    }
+
+    public int getWidth() {
+        return m_width;
+    }
+
+    public int getHeight() {
+        return m_height;
+    }
+
+    /**
+     * @return The pixel buffer, not a copy.
+     */
+    public int[] getPixels() {
+        return m_pixels;
+    }
+
+    /**
+     * Fills the whole buffer with the given color, ignoring transformation
+     * and blending, and resets the transformation stack.
+     *
+     * @param argb
+     */
+    public void clear(int argb) {
+        Arrays.fill(m_pixels, argb);
+        m_sx = m_sy = 1f;
+        m_tx = m_ty = 0f;
+        m_stackSize = 0;
+    }
+
+    public void save() {
+        if (m_stackSize + 4 > m_stack.length)
+            m_stack = Arrays.copyOf(m_stack, m_stack.length << 1);
+
+        m_stack[m_stackSize++] = m_sx;
+        m_stack[m_stackSize++] = m_sy;
+        m_stack[m_stackSize++] = m_tx;
+        m_stack[m_stackSize++] = m_ty;
+    }
+
+    public void restore() {
+        if (m_stackSize == 0)
+            throw new IllegalStateException("Unbalanced restore()");
+
+        m_ty = m_stack[--m_stackSize];
+        m_tx = m_stack[--m_stackSize];
+        m_sy = m_stack[--m_stackSize];
+        m_sx = m_stack[--m_stackSize];
+    }
+
+    public void translate(float dx, float dy) {
+        m_tx += dx * m_sx;
+        m_ty += dy * m_sy;
+    }
+
+    public void scale(float sx, float sy) {
+        m_sx *= sx;
+        m_sy *= sy;
+    }
+
+    public void setColor(int argb) {
+        m_color = argb;
+    }
+
+    public void setStrokeWidth(float width) {
+        // a width of 0 is a hairline, like on Android
+        m_brush = Math.max(1, Math.round(width));
+    }
+
+    public void setFill(boolean fill) {
+        m_fill = fill;
+    }
+
+    public void setTextSize(float size) {
+        m_textSize = size;
+    }
+
+    public float getTextDescent() {
+        // rough estimate, no fonts are available here
+        return m_textSize * 0.2f;
+    }
+
+    public void setCornerRadius(float radius) {
+    }
+
+    public void drawLine(float x0, float y0, float x1, float y1) {
+        tX0 = x0 * m_sx + m_tx;
+        tY0 = y0 * m_sy + m_ty;
+        tX1 = x1 * m_sx + m_tx;
+        tY1 = y1 * m_sy + m_ty;
+
+        if (clipLine())
+            rasterLine(Math.round(tX0), Math.round(tY0), Math.round(tX1), Math.round(tY1));
+    }
+
+    public void drawLines(float[] pts, int offset, int count) {
+        for (int i = offset; i + 3 < offset + count; i += 4) {
+            drawLine(pts[i], pts[i + 1], pts[i + 2], pts[i + 3]);
+        }
+    }
+
+    public void drawPolyline(float[] pts, int offset, int count) {
+        for (int i = offset; i + 3 < offset + count; i += 2) {
+            drawLine(pts[i], pts[i + 1], pts[i + 2], pts[i + 3]);
+        }
+    }
+
+    public void drawPoint(float x, float y) {
+        brush(Math.round(x * m_sx + m_tx), Math.round(y * m_sy + m_ty));
+    }
+
+    public void drawPoints(float[] pts, int offset, int count) {
+        for (int i = offset; i + 1 < offset + count; i += 2) {
+            brush(Math.round(pts[i] * m_sx + m_tx), Math.round(pts[i + 1] * m_sy + m_ty));
+        }
+    }
+
+    public void drawRect(float left, float top, float right, float bottom) {
+        if (!m_fill) {
+            drawLine(left, top, right, top);
+            drawLine(right, top, right, bottom);
+            drawLine(right, bottom, left, bottom);
+            drawLine(left, bottom, left, top);
+            return;
+        }
+
+        int x0 = Math.round(left * m_sx + m_tx);
+        int x1 = Math.round(right * m_sx + m_tx);
+        int y0 = Math.round(top * m_sy + m_ty);
+        int y1 = Math.round(bottom * m_sy + m_ty);
+
+        fillRect(Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1));
+    }
+
+    public void drawPixels(int[] argb, int width, int height, float left, float top, float right, float bottom) {
+        // device rect, the transformation may flip it
+        float dx0 = left * m_sx + m_tx, dx1 = right * m_sx + m_tx;
+        float dy0 = top * m_sy + m_ty, dy1 = bottom * m_sy + m_ty;
+        int x0 = Math.max(0, Math.round(Math.min(dx0, dx1)));
+        int x1 = Math.min(m_width, Math.round(Math.max(dx0, dx1)));
+        int y0 = Math.max(0, Math.round(Math.min(dy0, dy1)));
+        int y1 = Math.min(m_height, Math.round(Math.max(dy0, dy1)));
+
+        final int color = m_color;
+        int col, row;
+        for (int y = y0; y < y1; ++y) {
+            // nearest image row, row 0 at top
+            row = (int) ((y + 0.5f - dy0) / (dy1 - dy0) * height);
+            if (row < 0 || row >= height)
+                continue;
+
+            for (int x = x0; x < x1; ++x) {
+                col = (int) ((x + 0.5f - dx0) / (dx1 - dx0) * width);
+                if (col < 0 || col >= width)
+                    continue;
+
+                m_color = argb[row * width + col];
+                blend(x, y);
+            }
+        }
+        m_color = color;
+    }
+
+    public void drawCircle(float cx, float cy, float radius) {
+        int x0 = Math.round(cx * m_sx + m_tx);
+        int y0 = Math.round(cy * m_sy + m_ty);
+        int r = Math.round(radius * (Math.abs(m_sx) + Math.abs(m_sy)) * 0.5f);
+
+        if (r <= 0) {
+            brush(x0, y0);
+            return;
+        }
+
+        if (m_fill) {
+            // one span per row
+            int half;
+            for (int dy = -r; dy <= r; ++dy) {
+                half = (int) Math.sqrt(r * r - dy * dy);
+                fillRect(x0 - half, y0 + dy, x0 + half, y0 + dy);
+            }
+            return;
+        }
+
+        // midpoint circle algorithm, one octant mirrored eight times
+        int x = r, y = 0, err = 1 - r;
+        while (x >= y) {
+            brush(x0 + x, y0 + y);
+            brush(x0 - x, y0 + y);
+            brush(x0 + x, y0 - y);
+            brush(x0 - x, y0 - y);
+            brush(x0 + y, y0 + x);
+            brush(x0 - y, y0 + x);
+            brush(x0 + y, y0 - x);
+            brush(x0 - y, y0 - x);
+
+            ++y;
+            if (err < 0) {
+                err += 2 * y + 1;
+            } else {
+                --x;
+                err += 2 * (y - x) + 1;
+            }
+        }
+    }
+
+    public void drawText(char[] text, int offset, int length, float x, float y) {
+    }
+
+    /**
+     * Clips the device coordinates in tX0..tY1 to the buffer, extended by the
+     * brush size (Liang-Barsky).
+     *
+     * @return false if the line is completely outside.
+     */
+    private boolean clipLine() {
+        if (Float.isNaN(tX0) || Float.isNaN(tY0) || Float.isNaN(tX1) || Float.isNaN(tY1))
+            return false;
+
+        float dx = tX1 - tX0, dy = tY1 - tY0;
+        tT0 = 0f;
+        tT1 = 1f;
+
+        if (!clipEdge(-dx, tX0 + m_brush) || !clipEdge(dx, m_width + m_brush - tX0)
+                || !clipEdge(-dy, tY0 + m_brush) || !clipEdge(dy, m_height + m_brush - tY0))
+            return false;
+
+        if (tT1 < 1f) {
+            tX1 = tX0 + tT1 * dx;
+            tY1 = tY0 + tT1 * dy;
+        }
+        if (tT0 > 0f) {
+            tX0 = tX0 + tT0 * dx;
+            tY0 = tY0 + tT0 * dy;
+        }
+        return true;
+    }
+
+    private boolean clipEdge(float p, float q) {
+        if (p == 0f)
+            return q >= 0f;
+
+        float t = q / p;
+        if (p < 0f) {
+            if (t > tT1)
+                return false;
+            if (t > tT0)
+                tT0 = t;
+        } else {
+            if (t < tT0)
+                return false;
+            if (t < tT1)
+                tT1 = t;
+        }
+        return true;
+    }
+
+    private void rasterLine(int x0, int y0, int x1, int y1) {
+        int dx = Math.abs(x1 - x0), sx = x0 < x1 ? 1 : -1;
+        int dy = -Math.abs(y1 - y0), sy = y0 < y1 ? 1 : -1;
+        int err = dx + dy, e2;
+
+        while (true) {
+            brush(x0, y0);
+            if (x0 == x1 && y0 == y1)
+                break;
+
+            e2 = 2 * err;
+            if (e2 >= dy) {
+                err += dy;
+                x0 += sx;
+            }
+            if (e2 <= dx) {
+                err += dx;
+                y0 += sy;
+            }
+        }
+    }
+
+    private void brush(int x, int y) {
+        if (m_brush == 1) {
+            blend(x, y);
+            return;
+        }
+
+        int half = m_brush >> 1;
+        fillRect(x - half, y - half, x - half + m_brush - 1, y - half + m_brush - 1);
+    }
+
+    /**
+     * Fills the inclusive device rectangle.
+     */
+    private void fillRect(int x0, int y0, int x1, int y1) {
+        if (x0 < 0)
+            x0 = 0;
+        if (y0 < 0)
+            y0 = 0;
+        if (x1 >= m_width)
+            x1 = m_width - 1;
+        if (y1 >= m_height)
+            y1 = m_height - 1;
+
+        for (int y = y0; y <= y1; ++y) {
+            for (int x = x0; x <= x1; ++x) {
+                blend(x, y);
+            }
+        }
+    }
+
+    private void blend(int x, int y) {
+        if (x < 0 || y < 0 || x >= m_width || y >= m_height)
+            return;
+
+        int alpha = m_color >>> 24;
+        int idx = y * m_width + x;
+
+        if (alpha == 0xFF) {
+            m_pixels[idx] = m_color;
+            return;
+        } else if (alpha == 0) {
+            return;
+        }
+
+        // source-over
+        int dst = m_pixels[idx];
+        int inv = 0xFF - alpha;
+        int a = alpha + (((dst >>> 24) * inv) / 0xFF);
+        int r = (((m_color >> 16) & 0xFF) * alpha + ((dst >> 16) & 0xFF) * inv) / 0xFF;
+        int g = (((m_color >> 8) & 0xFF) * alpha + ((dst >> 8) & 0xFF) * inv) / 0xFF;
+        int b = ((m_color & 0xFF) * alpha + (dst & 0xFF) * inv) / 0xFF;
+
+        m_pixels[idx] = (a << 24) | (r << 16) | (g << 8) | b;
+    }
+}
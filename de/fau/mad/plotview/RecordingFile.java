@@ -0,0 +1,483 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary, chunked, columnar recording format used to save and load plots.
+ * <p>
+ * All numbers are little-endian.
+ *
+ * <pre>
+ *  header (HEADER_SIZE bytes)
+ *      int     MAGIC
+ *      short   VERSION
+ *      short   number of columns, 2 (x, value) or 3 (x, value, y)
+ *      int     chunk size, maximum number of samples per chunk
+ *      int     number of chunks
+ *      long    total number of samples
+ *      long    offset of the chunk index
+ *  chunks, each holding count samples
+ *      long[count]   x
+ *      float[count]  value
+ *      float[count]  y (only if 3 columns)
+ *  chunk index (INDEX_ENTRY_SIZE bytes per chunk)
+ *      long    first x
+ *      long    last x
+ *      long    offset of the chunk
+ *      int     count
+ *      float   min value
+ *      float   max value
+ * </pre>
+ * <p>
+ * The index is written on close, so a new file that wasn't closed properly
+ * can't be read. When appending, new chunks are written behind the old
+ * index and the header only points to the new index once it is complete, so
+ * the previous recording stays readable if writing fails.
+ */
+public class RecordingFile {
+    public static final String EXTENSION = ".pvr";
+
+    public static final int MAGIC = 0x31525650; // "PVR1"
+    public static final short VERSION = 1;
+
+    public static final int HEADER_SIZE = 32;
+    public static final int INDEX_ENTRY_SIZE = 36;
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    /**
+     * Number of columns, 2 or 3
+     */
+    public int columns = 2;
+    public int chunkSize = DEFAULT_CHUNK_SIZE;
+    public int chunkCount = 0;
+    public long totalCount = 0;
+
+    /**
+     * The chunk index. Only the first chunkCount entries are valid.
+     */
+    public long[] chunkFirstX = new long[16];
+    public long[] chunkLastX = new long[16];
+    public long[] chunkOffset = new long[16];
+    public int[] chunkNum = new int[16];
+    public float[] chunkMin = new float[16];
+    public float[] chunkMax = new float[16];
+
+    protected RandomAccessFile m_raf = null;
+    protected FileChannel m_channel = null;
+    protected ByteBuffer m_buffer = null;
+    protected long m_indexOffset = HEADER_SIZE;
+    protected boolean m_writable = false;
+
+    /**
+     * Number of chunks the header and index on disk cover, -1 if there is no
+     * valid header yet.
+     */
+    protected int m_savedChunks = -1;
+
+    /**
+     * Opens an existing recording for reading.
+     *
+     * @param file
+     * @return the opened recording, ready for readChunk()
+     * @throws IOException if the file is not a valid recording
+     */
+    public static RecordingFile openForReading(File file) throws IOException {
+        RecordingFile rec = new RecordingFile();
+        rec.m_raf = new RandomAccessFile(file, "r");
+        rec.m_channel = rec.m_raf.getChannel();
+        try {
+            rec.readHeaderAndIndex();
+        } catch (IOException e) {
+            rec.close();
+            throw e;
+        }
+        rec.allocateBuffer();
+        return rec;
+    }
+
+    /**
+     * Opens a recording for writing. If the file already exists and is a
+     * recording with the same number of columns, new samples are appended.
+     * Otherwise the file is overwritten.
+     *
+     * @param file
+     * @param columns   2 for x & value, 3 for x, value & y
+     * @param chunkSize maximum number of samples per chunk, only used for new
+     *                  files
+     * @return the opened recording, ready for write()
+     * @throws IOException
+     */
+    public static RecordingFile openForWriting(File file, int columns, int chunkSize) throws IOException {
+        if (columns != 2 && columns != 3)
+            throw new IllegalArgumentException("Invalid column count " + columns);
+
+        RecordingFile rec = new RecordingFile();
+        rec.m_raf = new RandomAccessFile(file, "rw");
+        rec.m_channel = rec.m_raf.getChannel();
+
+        boolean append = false;
+        if (rec.m_channel.size() >= HEADER_SIZE) {
+            try {
+                rec.readHeaderAndIndex();
+                append = (rec.columns == columns);
+            } catch (IOException e) {
+                append = false;
+            }
+        }
+
+        if (append) {
+            // keep the old index, new chunks go behind it. Anything after it
+            // is left over from an append that never completed.
+            rec.m_indexOffset += (long) rec.chunkCount * INDEX_ENTRY_SIZE;
+            rec.m_savedChunks = rec.chunkCount;
+            rec.m_channel.truncate(rec.m_indexOffset);
+        } else {
+            rec.columns = columns;
+            rec.chunkSize = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+            rec.chunkCount = 0;
+            rec.totalCount = 0;
+            rec.m_indexOffset = HEADER_SIZE;
+
+            // drop the old header too, the file is invalid until close()
+            rec.m_channel.truncate(0);
+        }
+
+        rec.m_channel.position(rec.m_indexOffset);
+        rec.m_writable = true;
+        rec.allocateBuffer();
+        return rec;
+    }
+
+    protected RecordingFile() {
+    }
+
+    private void allocateBuffer() {
+        m_buffer = ByteBuffer.allocateDirect(chunkSize * bytesPerSample());
+        m_buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return Number of bytes a single sample occupies in a chunk.
+     */
+    public int bytesPerSample() {
+        return 8 + 4 * (columns - 1);
+    }
+
+    /**
+     * Reads the header and the complete chunk index.
+     *
+     * @throws IOException
+     */
+    protected void readHeaderAndIndex() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header, 0);
+        header.flip();
+
+        if (header.getInt() != MAGIC)
+            throw new IOException("Not a recording file");
+        if (header.getShort() != VERSION)
+            throw new IOException("Unsupported recording version");
+
+        columns = header.getShort();
+        chunkSize = header.getInt();
+        final int chunks = header.getInt();
+        totalCount = header.getLong();
+        m_indexOffset = header.getLong();
+
+        final long size = m_channel.size();
+        if ((columns != 2 && columns != 3) || chunkSize <= 0 || chunkSize > Integer.MAX_VALUE / bytesPerSample()
+                || chunks < 0 || chunks > Integer.MAX_VALUE / INDEX_ENTRY_SIZE || m_indexOffset < HEADER_SIZE
+                || m_indexOffset + (long) chunks * INDEX_ENTRY_SIZE > size)
+            throw new IOException("Corrupt recording header");
+
+        chunkCount = 0;
+        ensureIndexCapacity(chunks);
+        chunkCount = chunks;
+
+        ByteBuffer index = ByteBuffer.allocate(chunkCount * INDEX_ENTRY_SIZE);
+        index.order(ByteOrder.LITTLE_ENDIAN);
+        readFully(index, m_indexOffset);
+        index.flip();
+
+        long samples = 0;
+        for (int i = 0; i < chunkCount; ++i) {
+            chunkFirstX[i] = index.getLong();
+            chunkLastX[i] = index.getLong();
+            chunkOffset[i] = index.getLong();
+            chunkNum[i] = index.getInt();
+            chunkMin[i] = index.getFloat();
+            chunkMax[i] = index.getFloat();
+
+            // readChunk() and mapChunk() rely on these
+            if (chunkNum[i] < 0 || chunkNum[i] > chunkSize || chunkOffset[i] < HEADER_SIZE
+                    || chunkOffset[i] + (long) chunkNum[i] * bytesPerSample() > size)
+                throw new IOException("Corrupt recording index");
+            samples += chunkNum[i];
+        }
+
+        if (samples != totalCount)
+            throw new IOException("Corrupt recording index");
+    }
+
+    private void readFully(ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int read = m_channel.read(dst, position);
+            if (read < 0)
+                throw new IOException("Unexpected end of recording");
+            position += read;
+        }
+    }
+
+    private void ensureIndexCapacity(int capacity) {
+        if (capacity <= chunkFirstX.length)
+            return;
+
+        int size = chunkFirstX.length;
+        while (size < capacity)
+            size <<= 1;
+
+        chunkFirstX = grow(chunkFirstX, size);
+        chunkLastX = grow(chunkLastX, size);
+        chunkOffset = grow(chunkOffset, size);
+        int[] n = new int[size];
+        System.arraycopy(chunkNum, 0, n, 0, chunkCount);
+        chunkNum = n;
+        chunkMin = grow(chunkMin, size);
+        chunkMax = grow(chunkMax, size);
+    }
+
+    private long[] grow(long[] a, int size) {
+        long[] n = new long[size];
+        System.arraycopy(a, 0, n, 0, chunkCount);
+        return n;
+    }
+
+    private float[] grow(float[] a, int size) {
+        float[] n = new float[size];
+        System.arraycopy(a, 0, n, 0, chunkCount);
+        return n;
+    }
+
+    /**
+     * Writes samples, splitting them into chunks of at most chunkSize
+     * samples.
+     *
+     * @param x      x coordinates
+     * @param values sample values
+     * @param y      y coordinates, only used if the recording has 3 columns
+     * @param offset index of the first sample in the arrays
+     * @param length number of samples to write
+     * @throws IOException
+     */
+    public void write(long[] x, float[] values, float[] y, int offset, int length) throws IOException {
+        write(x, offset, values, y, offset, length);
+    }
+
+    /**
+     * Writes samples whose x coordinates are stored at a different offset
+     * than the values, e.g. timestamps computed into a temporary buffer.
+     *
+     * @param x       x coordinates
+     * @param xOffset index of the first x coordinate
+     * @param values  sample values
+     * @param y       y coordinates, only used if the recording has 3 columns
+     * @param offset  index of the first sample in values and y
+     * @param length  number of samples to write
+     * @throws IOException
+     */
+    public void write(long[] x, int xOffset, float[] values, float[] y, int offset, int length)
+            throws IOException {
+        int n;
+        while (length > 0) {
+            n = Math.min(length, chunkSize);
+            writeChunk(x, xOffset, values, y, offset, n);
+            xOffset += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private void writeChunk(long[] x, int xOffset, float[] values, float[] y, int offset, int length)
+            throws IOException {
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        for (int i = offset; i < offset + length; ++i) {
+            if (values[i] < min)
+                min = values[i];
+            if (values[i] > max)
+                max = values[i];
+        }
+
+        m_buffer.clear();
+        m_buffer.asLongBuffer().put(x, xOffset, length);
+        m_buffer.position(length << 3);
+        m_buffer.asFloatBuffer().put(values, offset, length);
+        m_buffer.position(m_buffer.position() + (length << 2));
+        if (columns == 3) {
+            m_buffer.asFloatBuffer().put(y, offset, length);
+            m_buffer.position(m_buffer.position() + (length << 2));
+        }
+        m_buffer.flip();
+
+        final long chunkStart = m_indexOffset;
+        while (m_buffer.hasRemaining())
+            m_channel.write(m_buffer);
+
+        ensureIndexCapacity(chunkCount + 1);
+        chunkFirstX[chunkCount] = x[xOffset];
+        chunkLastX[chunkCount] = x[xOffset + length - 1];
+        chunkOffset[chunkCount] = chunkStart;
+        chunkNum[chunkCount] = length;
+        chunkMin[chunkCount] = min;
+        chunkMax[chunkCount] = max;
+        ++chunkCount;
+
+        totalCount += length;
+        m_indexOffset = chunkStart + (long) length * bytesPerSample();
+    }
+
+    /**
+     * Reads a chunk into the given arrays, which have to hold at least
+     * chunkNum[chunk] entries.
+     *
+     * @param chunk  index of the chunk
+     * @param x      receives the x coordinates
+     * @param values receives the sample values
+     * @param y      [optional] receives the y coordinates if there are 3
+     *               columns
+     * @return Number of samples read.
+     * @throws IOException
+     */
+    public int readChunk(int chunk, long[] x, float[] values, float[] y) throws IOException {
+        final int length = chunkNum[chunk];
+
+        m_buffer.clear();
+        m_buffer.limit(length * bytesPerSample());
+        readFully(m_buffer, chunkOffset[chunk]);
+        m_buffer.flip();
+
+        m_buffer.asLongBuffer().get(x, 0, length);
+        m_buffer.position(length << 3);
+        m_buffer.asFloatBuffer().get(values, 0, length);
+        if (columns == 3 && y != null) {
+            m_buffer.position((length << 3) + (length << 2));
+            m_buffer.asFloatBuffer().get(y, 0, length);
+        }
+
+        return length;
+    }
+
+    /**
+     * Maps a chunk of a recording opened for reading into memory. The x
+     * coordinate of sample i is at getLong(i * 8), its value at
+     * getFloat(chunkNum[chunk] * 8 + i * 4).
+     *
+     * @param chunk index of the chunk
+     * @return a read-only, little-endian buffer holding the entire chunk
+     * @throws IOException
+     */
+    public ByteBuffer mapChunk(int chunk) throws IOException {
+        MappedByteBuffer page = m_channel.map(FileChannel.MapMode.READ_ONLY, chunkOffset[chunk],
+                (long) chunkNum[chunk] * bytesPerSample());
+        page.order(ByteOrder.LITTLE_ENDIAN);
+        return page;
+    }
+
+    /**
+     * Finds the chunk holding the given x coordinate, assuming x is
+     * increasing.
+     *
+     * @param xValue
+     * @return Index of the last chunk whose first x is &lt;= xValue, 0 if
+     * xValue lies before the first chunk or -1 if there are no chunks.
+     */
+    public int findChunk(long xValue) {
+        int lo = 0, hi = chunkCount - 1, mid;
+        if (hi < 0)
+            return -1;
+
+        while (lo < hi) {
+            mid = (lo + hi + 1) >>> 1;
+            if (chunkFirstX[mid] <= xValue)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        return lo;
+    }
+
+    /**
+     * Writes the index and header if the recording was opened for writing and
+     * chunks were added, and closes the file.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (m_channel == null)
+            return;
+
+        try {
+            if (m_writable && chunkCount != m_savedChunks)
+                writeHeaderAndIndex();
+        } finally {
+            m_channel = null;
+            m_raf.close();
+        }
+    }
+
+    private void writeHeaderAndIndex() throws IOException {
+        ByteBuffer index = ByteBuffer.allocate(chunkCount * INDEX_ENTRY_SIZE);
+        index.order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < chunkCount; ++i) {
+            index.putLong(chunkFirstX[i]);
+            index.putLong(chunkLastX[i]);
+            index.putLong(chunkOffset[i]);
+            index.putInt(chunkNum[i]);
+            index.putFloat(chunkMin[i]);
+            index.putFloat(chunkMax[i]);
+        }
+        index.flip();
+        long pos = m_indexOffset;
+        while (index.hasRemaining())
+            pos += m_channel.write(index, pos);
+
+        // the index has to be on disk before the header points to it
+        m_channel.force(false);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) columns);
+        header.putInt(chunkSize);
+        header.putInt(chunkCount);
+        header.putLong(totalCount);
+        header.putLong(m_indexOffset);
+        header.flip();
+        pos = 0;
+        while (header.hasRemaining())
+            pos += m_channel.write(header, pos);
+    }
+}
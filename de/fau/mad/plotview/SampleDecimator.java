@@ -0,0 +1,269 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+/**
+ * Projects the visible part of a value ring onto pixel columns and builds the
+ * polyline Plot1D draws. Every column that spans several samples is reduced
+ * to its minimum and maximum, in the order they occur. If the ring maintains
+ * a MinMaxPyramid, or is a CompressedFloatList with block summaries, and a
+ * column spans enough samples, the extremes are taken from the index
+ * instead of scanning every sample.
+ * <p>
+ * The result is stored in points/count and can be passed to
+ * PlotCanvas.drawPolyline(). The point buffer is reused and only grows when
+ * more columns are needed. Doesn't depend on Android.
+ */
+public class SampleDecimator {
+    /**
+     * Receives the samples flagged in the inspect list while decimating.
+     */
+    public interface MarkerListener {
+        /**
+         * @param realIdx normalized ring index of the sample
+         * @param x       pixel column
+         * @param y       scaled value
+         */
+        public void onMarker(int realIdx, float x, float y);
+    }
+
+    /**
+     * Interleaved x/y coordinates of the polyline.
+     */
+    public float[] points = new float[256];
+
+    /**
+     * Number of valid floats in points.
+     */
+    public int count = 0;
+
+    /**
+     * Reused cursor of the last decimated ring.
+     */
+    private FloatValueList.Cursor m_cursor = null;
+    private FloatValueList m_cursorList = null;
+
+    /**
+     * TRANSIENT variables
+     */
+    private transient int tIdx, tPixelIdx, tRealIdx, tEndIdx, tNextMarker;
+    private transient int tppIdxMin, tppIdxMax, tRawFrom, tRawTo;
+    private transient float tppValue, tppValueMin, tppValueMax;
+    private transient float[] tRange = new float[2];
+
+    /**
+     * Builds the polyline for idxNum samples of values starting at the (not
+     * normalized) ring index idxStart. The y values are transformed with
+     * (value + yPxTrans) * yPxScale.
+     *
+     * @param values
+     * @param inspectValues  [optional] flags of the samples to report to
+     *                       the listener, parallel to values
+     * @param idxStart
+     * @param idxNum
+     * @param numIdxPerPixel number of samples per pixel column
+     * @param yPxTrans
+     * @param yPxScale
+     * @param listener       [optional] receives the flagged samples
+     * @return number of valid floats in points
+     */
+    public int decimate(FloatValueList values, BitValueList inspectValues, int idxStart, int idxNum,
+                        double numIdxPerPixel, float yPxTrans, double yPxScale, MarkerListener listener) {
+        count = 0;
+        if (idxNum < 1 || numIdxPerPixel <= 0)
+            return 0;
+
+        // at most two points per column, and never more than two per sample
+        ensureCapacity(2 + 4 * (int) (Math.min(idxNum, Math.ceil(idxNum / numIdxPerPixel)) + 1));
+
+        // the inspect flags are only needed if someone listens. The next
+        // flagged sample is looked up in advance, so the loops only have to
+        // compare indices instead of testing the flag of every sample.
+        tNextMarker = idxNum;
+        if (listener != null && inspectValues != null)
+            tNextMarker = nextMarker(inspectValues, idxStart, 0, idxNum);
+
+        // use the range index only if a pixel spans enough samples to skip
+        // at least one full block
+        final int blockSize = values.getRangeBlockSize();
+        boolean useIndex = blockSize > 0 && numIdxPerPixel > 2 * blockSize;
+
+        // otherwise every sample is read in order
+        if (!useIndex) {
+            if (m_cursorList != values) {
+                m_cursor = values.cursor();
+                m_cursorList = values;
+            }
+            m_cursor.seek(idxStart, idxNum);
+        }
+
+        // move to first element
+        tppValue = (float) ((values.getIndirect(idxStart) + yPxTrans) * yPxScale);
+        points[count++] = 0;
+        points[count++] = tppValue;
+
+        // ==============================================
+        // == LOOP ALL POINTS
+        // ====>
+        for (tIdx = 0, tPixelIdx = 1; tIdx < idxNum; ++tPixelIdx) {
+            // ==============> pixel extremes from the min/max pyramid
+            if (useIndex) {
+                tEndIdx = (int) Math.ceil(tPixelIdx * numIdxPerPixel);
+                if (tEndIdx > idxNum)
+                    tEndIdx = idxNum;
+                if (tEndIdx <= tIdx)
+                    continue;
+
+                findViewportMinMax(values, idxStart + tIdx, idxStart + tEndIdx - 1);
+                tppValueMin = (float) ((tRange[0] + yPxTrans) * yPxScale);
+                tppValueMax = (float) ((tRange[1] + yPxTrans) * yPxScale);
+
+                // the order of min and max is unknown, so connect the
+                // extreme closest to the previous point first
+                if (Math.abs(tppValue - tppValueMin) <= Math.abs(tppValue - tppValueMax)) {
+                    lineTo(tPixelIdx, tppValueMin);
+                    lineTo(tPixelIdx, tppValueMax);
+                    tppValue = tppValueMax;
+                } else {
+                    lineTo(tPixelIdx, tppValueMax);
+                    lineTo(tPixelIdx, tppValueMin);
+                    tppValue = tppValueMin;
+                }
+
+                tIdx = tEndIdx;
+                reportMarkers(values, inspectValues, idxStart, idxNum, yPxTrans, yPxScale, listener);
+                continue;
+            }
+            // <=============
+
+            tppIdxMin = -1;
+
+            // last sample of this column, computed once instead of per sample
+            tEndIdx = (int) Math.ceil(tPixelIdx * numIdxPerPixel);
+            if (tEndIdx > idxNum)
+                tEndIdx = idxNum;
+
+            // ======================= LOOP ALL PROJECTED POINTS
+            for (; tIdx < tEndIdx; ++tIdx) {
+                // ===== Y translation & Y scaling is done here only!
+                tppValue = (float) ((m_cursor.nextFloat() + yPxTrans) * yPxScale);
+
+                if (numIdxPerPixel > 1) {
+                    if (tppIdxMin == -1) {
+                        // first value: min = max = value
+                        tppValueMin = tppValueMax = tppValue;
+                        tppIdxMin = tppIdxMax = tIdx;
+                    } else {
+                        if (tppValue < tppValueMin) {
+                            // new min
+                            tppValueMin = tppValue;
+                            tppIdxMin = tIdx;
+                        } else if (tppValue > tppValueMax) {
+                            // new max
+                            tppValueMax = tppValue;
+                            tppIdxMax = tIdx;
+                        }
+                    }
+                } else
+                    tppIdxMin = tIdx;
+            }
+            // ======================= projected loop
+
+            reportMarkers(values, inspectValues, idxStart, idxNum, yPxTrans, yPxScale, listener);
+
+            // any point at all to draw?
+            if (tppIdxMin != -1) {
+                if (numIdxPerPixel > 1) {
+                    // line from first min/max to second min/max
+                    if (tppIdxMin <= tppIdxMax) {
+                        lineTo(tPixelIdx, tppValueMin);
+                        lineTo(tPixelIdx, tppValueMax);
+                    } else {
+                        lineTo(tPixelIdx, tppValueMax);
+                        lineTo(tPixelIdx, tppValueMin);
+                    }
+                } else {
+                    // single point
+                    lineTo(tPixelIdx, tppValue);
+                }
+            }
+        }
+        // <====
+        // ==============================================
+
+        return count;
+    }
+
+    /**
+     * Reports all flagged samples before tIdx, i.e. those of the current
+     * pixel column, and looks up the next one.
+     */
+    private void reportMarkers(FloatValueList values, BitValueList inspectValues, int idxStart, int idxNum,
+                               float yPxTrans, double yPxScale, MarkerListener listener) {
+        while (tNextMarker < tIdx) {
+            tRealIdx = values.normIdx(idxStart + tNextMarker);
+            listener.onMarker(tRealIdx, tPixelIdx, (float) ((values.getRaw(tRealIdx) + yPxTrans) * yPxScale));
+            tNextMarker = nextMarker(inspectValues, idxStart, tNextMarker + 1, idxNum);
+        }
+    }
+
+    /**
+     * @return The viewport index of the first flagged sample at or after
+     * from, or idxNum if there is none.
+     */
+    private static int nextMarker(BitValueList inspectValues, int idxStart, int from, int idxNum) {
+        int dist = inspectValues.nextSetDistance(idxStart + from, idxNum - from);
+        return dist == -1 ? idxNum : from + dist;
+    }
+
+    private void lineTo(float x, float y) {
+        points[count++] = x;
+        points[count++] = y;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (points.length < capacity)
+            points = new float[Math.max(capacity, points.length << 1)];
+    }
+
+    /**
+     * Finds min & max of the values between the two (not normalized) ring
+     * indices and stores them in tRange. Ranges that wrap around the end of
+     * the ring are split in two.
+     *
+     * @param values
+     * @param first
+     * @param last
+     */
+    private void findViewportMinMax(FloatValueList values, int first, int last) {
+        tRawFrom = values.normIdx(first);
+        tRawTo = values.normIdx(last);
+
+        if (tRawFrom <= tRawTo) {
+            values.findRangeMinMax(tRawFrom, tRawTo, tRange);
+        } else {
+            values.findRangeMinMax(tRawFrom, values.num - 1, tRange);
+            tppValueMin = tRange[0];
+            tppValueMax = tRange[1];
+            values.findRangeMinMax(0, tRawTo, tRange);
+            if (tppValueMin < tRange[0])
+                tRange[0] = tppValueMin;
+            if (tppValueMax > tRange[1])
+                tRange[1] = tppValueMax;
+        }
+    }
+}
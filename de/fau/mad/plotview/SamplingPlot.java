@@ -28,6 +28,11 @@ import android.util.Log;
  * @author Stefan Gradl
  */
 public class SamplingPlot extends Plot1D {
+    /**
+     * The x ring if the plot uses an implicit time axis, otherwise null.
+     */
+    protected UniformTimeList m_uniformTime = null;
+
     /**
      * @param plotTitle
      * @param paint
@@ -44,16 +49,53 @@ public class SamplingPlot extends Plot1D {
         // TODO Auto-generated constructor stub
     }
 
+    /**
+     * Creates a plot with an implicit time axis for a fixed-rate signal: the
+     * timestamps are computed from the first timestamp and the sampling rate
+     * instead of being stored per sample, @see UniformTimeList. Timestamps
+     * passed to addValue() only create a resync point if they deviate from
+     * the computed ones.
+     *
+     * @param plotTitle
+     * @param paint
+     * @param style
+     * @param maxCache
+     * @param maintainMinMax
+     * @param samplingRateInHz
+     */
+    public SamplingPlot(String plotTitle, Paint paint, PlotStyle style, int maxCache, boolean maintainMinMax,
+                        double samplingRateInHz) {
+        super(plotTitle, paint, style, maxCache, maintainMinMax, false);
+
+        m_dataLock.lock();
+        m_uniformTime = new UniformTimeList(m_maxCachedEntries, maintainMinMax, samplingRateInHz);
+        x = m_uniformTime;
+        m_dataLock.unlock();
+    }
+
     /**
      * Adds a single sample to this plot. The current system time is used as
      * timestamp. You should only use this method if you don't have a
      * millisecond timestamp at hand.
+     * <p>
+     * With an implicit time axis only the first sample uses the system time,
+     * the following samples are placed according to the sampling rate.
      *
      * @param value sample-value
      */
     public void addValue(long value) {
-        // TODO: implement the add directly
-        addValue(value, System.currentTimeMillis());
+        if (m_uniformTime != null && m_uniformTime.isStarted())
+            addValue(value, m_uniformTime.nextTime());
+        else
+            addValue(value, System.currentTimeMillis());
+    }
+
+    /**
+     * @return Whether the timestamps are computed from a sampling rate, @see
+     * #SamplingPlot(String, Paint, PlotStyle, int, boolean, double)
+     */
+    public boolean hasImplicitTime() {
+        return m_uniformTime != null;
     }
 
     /**
@@ -64,24 +106,24 @@ public class SamplingPlot extends Plot1D {
      * @param timeInSeconds The number of seconds of the time window to display.
      */
     public void setViewport(int samplingRateInHz, int timeInSeconds) {
-        m_desiredViewportIdxNum = timeInSeconds * samplingRateInHz;
+        setViewport(timeInSeconds * samplingRateInHz);
     }
 
     @Override
-    protected String formatAxisText(PlotAxis axis, int pt) {
+    protected AxisLabels.Label formatAxisText(PlotAxis axis, int pt) {
         if (axis == xAxis) {
-            if (m_idxStart + m_numIdxPerPixel * pt >= x.num)
-                return "n/a";
+            final long timeInMillis = xAtAxisPin(pt);
+            if (timeInMillis == Long.MIN_VALUE)
+                return axis.labels.notAvailable();
 
-            long timeInMillis = x.get((int) (m_idxStart + m_numIdxPerPixel * pt));
-            return String.format("%.2f", (double) timeInMillis / 1000d);
+            return axis.labels.get((double) timeInMillis / 1000d, 2);
         } else if (axis == valueAxis && m_yPxScale != 0) {
             if (m_yPxScale > 10)
-                return String.format("%.2f", ((-m_yPxTrans + pt / m_yPxScale) * axis.multiplier));
+                return axis.labels.get((-m_yPxTrans + pt / m_yPxScale) * axis.multiplier, 2);
             else
-                return String.format("%.0f", ((-m_yPxTrans + pt / m_yPxScale) * axis.multiplier));
+                return axis.labels.get((-m_yPxTrans + pt / m_yPxScale) * axis.multiplier, 0);
         }
 
-        return "n/a";
+        return axis.labels.notAvailable();
     }
 }
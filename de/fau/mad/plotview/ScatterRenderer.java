@@ -0,0 +1,257 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import de.fau.mad.plotview.Plot.PlotStyle;
+
+/**
+ * Draws the samples of a Plot2D onto a PlotCanvas in one of the PlotStyles.
+ * Each sample is placed at (x, y), its value determines the size, color or
+ * text depending on the style. Doesn't depend on Android.
+ * <p>
+ * POINT, CROSS and LINE are batched: the geometry of all samples is written
+ * into a reused buffer and submitted with a single drawPoints(), drawLines()
+ * or drawPolyline() call. The other styles need per sample state or shapes
+ * the canvas can't batch and are drawn one by one, with the paint state set
+ * once per frame.
+ */
+public class ScatterRenderer {
+    /**
+     * Half the size of a CROSS in pixels.
+     */
+    private static final float CROSS_HALF_SIZE = 3f;
+
+    /**
+     * Geometry buffer, reused across frames.
+     */
+    private float[] m_points = new float[256];
+    private final char[] m_text = new char[20];
+
+    /**
+     * Reused cursors of the last rendered rings.
+     */
+    private LongValueList.Cursor m_xCursor = null;
+    private FloatValueList.Cursor m_yCursor = null;
+    private FloatValueList.Cursor m_valueCursor = null;
+    private LongValueList m_xList = null;
+    private FloatValueList m_yList = null;
+    private FloatValueList m_valueList = null;
+
+    /**
+     * Raw indices of the samples to draw, null to draw the rings in logical
+     * order through the cursors.
+     */
+    private int[] m_indices = null;
+
+    /**
+     * TRANSIENT variables
+     */
+    private transient float tX, tY, tVal;
+    private transient int tIdx, tPos, tTextStart;
+
+    /**
+     * Draws the first num samples of the rings, in their logical order. x is
+     * transformed with (x - xRangeStart) * xIdxScale, y with (y -
+     * yRangeStart) * yPxScale. The caller is responsible for locking the
+     * rings.
+     * <p>
+     * For PlotStyle.LINE all points are collected and drawn as a single
+     * polyline at the end, with corners rounded by the first value.
+     *
+     * @param can
+     * @param style
+     * @param x
+     * @param y
+     * @param values
+     * @param num
+     * @param xRangeStart
+     * @param xIdxScale
+     * @param yRangeStart
+     * @param yPxScale
+     */
+    public void render(PlotCanvas can, PlotStyle style, LongValueList x, FloatValueList y, FloatValueList values,
+                       int num, long xRangeStart, double xIdxScale, float yRangeStart, double yPxScale) {
+        if (num < 1)
+            return;
+
+        seek(x, y, values, num);
+        m_indices = null;
+        draw(can, style, num, xRangeStart, xIdxScale, yRangeStart, yPxScale);
+    }
+
+    /**
+     * Draws only the samples at the given raw indices, in that order, e.g.
+     * the result of a SpatialGrid query. Otherwise the same as
+     * render(PlotCanvas, PlotStyle, LongValueList, FloatValueList,
+     * FloatValueList, int, long, double, float, double).
+     *
+     * @param can
+     * @param style
+     * @param x
+     * @param y
+     * @param values
+     * @param indices raw indices of the samples
+     * @param count   number of valid entries in indices
+     * @param xRangeStart
+     * @param xIdxScale
+     * @param yRangeStart
+     * @param yPxScale
+     */
+    public void render(PlotCanvas can, PlotStyle style, LongValueList x, FloatValueList y, FloatValueList values,
+                       int[] indices, int count, long xRangeStart, double xIdxScale, float yRangeStart,
+                       double yPxScale) {
+        if (count < 1)
+            return;
+
+        seek(x, y, values, 0);
+        m_indices = indices;
+        draw(can, style, count, xRangeStart, xIdxScale, yRangeStart, yPxScale);
+        m_indices = null;
+    }
+
+    private void draw(PlotCanvas can, PlotStyle style, int num, long xRangeStart, double xIdxScale,
+                      float yRangeStart, double yPxScale) {
+        switch (style) {
+            case CROSS:
+                // two segments per sample
+                ensureCapacity(num << 3);
+                can.setStrokeWidth(1f);
+                for (tIdx = 0, tPos = 0; tIdx < num; tIdx++, tPos += 8) {
+                    nextPoint(xRangeStart, xIdxScale, yRangeStart, yPxScale);
+                    m_points[tPos] = tX - CROSS_HALF_SIZE;
+                    m_points[tPos + 1] = tY - CROSS_HALF_SIZE;
+                    m_points[tPos + 2] = tX + CROSS_HALF_SIZE;
+                    m_points[tPos + 3] = tY + CROSS_HALF_SIZE;
+                    m_points[tPos + 4] = tX - CROSS_HALF_SIZE;
+                    m_points[tPos + 5] = tY + CROSS_HALF_SIZE;
+                    m_points[tPos + 6] = tX + CROSS_HALF_SIZE;
+                    m_points[tPos + 7] = tY - CROSS_HALF_SIZE;
+                }
+                can.drawLines(m_points, 0, num << 3);
+                break;
+
+            case LINE:
+                ensureCapacity(num << 1);
+                can.setCornerRadius(m_valueList.getRaw(m_indices != null ? m_indices[0] : m_valueList.tail));
+                fillPoints(num, xRangeStart, xIdxScale, yRangeStart, yPxScale);
+                can.drawPolyline(m_points, 0, num << 1);
+                break;
+
+            case RECT_VALUE_FILLED:
+                for (tIdx = 0; tIdx < num; tIdx++) {
+                    nextPoint(xRangeStart, xIdxScale, yRangeStart, yPxScale);
+                    can.setColor((int) nextValue());
+                    can.drawRect(tX - 5, tY + 5, tX + 5, tY - 5);
+                }
+                break;
+
+            case RECT:
+                for (tIdx = 0; tIdx < num; tIdx++) {
+                    nextPoint(xRangeStart, xIdxScale, yRangeStart, yPxScale);
+                    tVal = nextValue();
+                    can.drawRect(tX - tVal, tY + tVal, tX + tVal, tY - tVal);
+                }
+                break;
+
+            case CIRCLE:
+                for (tIdx = 0; tIdx < num; tIdx++) {
+                    nextPoint(xRangeStart, xIdxScale, yRangeStart, yPxScale);
+                    can.drawCircle(tX, tY, nextValue());
+                }
+                break;
+
+            case TEXT:
+                can.setStrokeWidth(1f);
+                can.setFill(false);
+                can.setTextSize(10);
+                for (tIdx = 0; tIdx < num; tIdx++) {
+                    nextPoint(xRangeStart, xIdxScale, yRangeStart, yPxScale);
+                    tTextStart = AxisLabels.formatLong((long) nextValue(), m_text, m_text.length);
+                    can.drawText(m_text, tTextStart, m_text.length - tTextStart, tX, tY);
+                }
+                break;
+
+            default:
+            case POINT:
+                ensureCapacity(num << 1);
+                fillPoints(num, xRangeStart, xIdxScale, yRangeStart, yPxScale);
+                can.drawPoints(m_points, 0, num << 1);
+                break;
+        }
+    }
+
+    /**
+     * Moves the cursors to the tails of the rings, creating new ones only if
+     * the rings changed.
+     */
+    private void seek(LongValueList x, FloatValueList y, FloatValueList values, int num) {
+        if (m_xList != x) {
+            m_xCursor = x.cursor();
+            m_xList = x;
+        }
+        if (m_yList != y) {
+            m_yCursor = y.cursor();
+            m_yList = y;
+        }
+        if (m_valueList != values) {
+            m_valueCursor = values.cursor();
+            m_valueList = values;
+        }
+
+        m_xCursor.seek(x.tail, num);
+        m_yCursor.seek(y.tail, num);
+        m_valueCursor.seek(values.tail, num);
+    }
+
+    /**
+     * Reads the position of sample tIdx into tX, tY.
+     */
+    private void nextPoint(long xRangeStart, double xIdxScale, float yRangeStart, double yPxScale) {
+        if (m_indices != null) {
+            tX = (float) ((m_xList.getRaw(m_indices[tIdx]) - xRangeStart) * xIdxScale);
+            tY = (float) ((m_yList.getRaw(m_indices[tIdx]) - yRangeStart) * yPxScale);
+        } else {
+            tX = (float) ((m_xCursor.nextLong() - xRangeStart) * xIdxScale);
+            tY = (float) ((m_yCursor.nextFloat() - yRangeStart) * yPxScale);
+        }
+    }
+
+    /**
+     * @return The value of sample tIdx.
+     */
+    private float nextValue() {
+        if (m_indices != null)
+            return m_valueList.getRaw(m_indices[tIdx]);
+        return m_valueCursor.nextFloat();
+    }
+
+    /**
+     * Writes the positions of num samples into m_points.
+     */
+    private void fillPoints(int num, long xRangeStart, double xIdxScale, float yRangeStart, double yPxScale) {
+        for (tIdx = 0, tPos = 0; tIdx < num; tIdx++, tPos += 2) {
+            nextPoint(xRangeStart, xIdxScale, yRangeStart, yPxScale);
+            m_points[tPos] = tX;
+            m_points[tPos + 1] = tY;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (m_points.length < capacity)
+            m_points = new float[Math.max(capacity, m_points.length << 1)];
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+/**
+ * Monotonic deque tracking the minimum and maximum of a sliding window over
+ * the entries of a CircularValueList.
+ * <p>
+ * Both deques only store ring indices. The max-deque holds indices of strictly
+ * decreasing values, the min-deque indices of strictly increasing values, so
+ * the front of each deque always is the current extreme. Every index is pushed
+ * and popped at most once, which makes each add() O(1) amortized instead of a
+ * full rescan whenever the old extreme gets overwritten.
+ * <p>
+ * Like the value lists, all memory is allocated on construction.
+ */
+public class SlidingMinMax {
+    private final int[] minQueue;
+    private final int[] maxQueue;
+    private final int capacity;
+
+    private int minFront = 0, minCount = 0;
+    private int maxFront = 0, maxCount = 0;
+
+    /**
+     * @param capacity Maximum number of ring entries, usually
+     *                 CircularValueList.sizeMax
+     */
+    public SlidingMinMax(int capacity) {
+        this.capacity = capacity;
+        minQueue = new int[capacity];
+        maxQueue = new int[capacity];
+    }
+
+    public void clear() {
+        minFront = minCount = 0;
+        maxFront = maxCount = 0;
+    }
+
+    /**
+     * Has to be called before the entry at idx is overwritten, i.e. when idx
+     * is the tail of a completely filled ring.
+     *
+     * @param idx ring index that leaves the window
+     */
+    public void evict(int idx) {
+        if (minCount > 0 && minQueue[minFront] == idx) {
+            if (++minFront == capacity)
+                minFront = 0;
+            --minCount;
+        }
+        if (maxCount > 0 && maxQueue[maxFront] == idx) {
+            if (++maxFront == capacity)
+                maxFront = 0;
+            --maxCount;
+        }
+    }
+
+    /**
+     * Adds the entry at idx, which has to be the newest entry of the window.
+     *
+     * @param values the raw values of the ring
+     * @param idx    ring index of the new entry
+     */
+    public void push(float[] values, int idx) {
+        final float v = values[idx];
+
+        // drop every older entry that can't become the max anymore
+        while (maxCount > 0 && values[maxQueue[back(maxFront, maxCount)]] <= v)
+            --maxCount;
+        maxQueue[back(maxFront, ++maxCount)] = idx;
+
+        // same for the min
+        while (minCount > 0 && values[minQueue[back(minFront, minCount)]] >= v)
+            --minCount;
+        minQueue[back(minFront, ++minCount)] = idx;
+    }
+
+    /**
+     * @see #push(float[], int)
+     */
+    public void push(long[] values, int idx) {
+        final long v = values[idx];
+
+        while (maxCount > 0 && values[maxQueue[back(maxFront, maxCount)]] <= v)
+            --maxCount;
+        maxQueue[back(maxFront, ++maxCount)] = idx;
+
+        while (minCount > 0 && values[minQueue[back(minFront, minCount)]] >= v)
+            --minCount;
+        minQueue[back(minFront, ++minCount)] = idx;
+    }
+
+    /**
+     * @return ring index of the minimum or -1 if the window is empty.
+     */
+    public int minIdx() {
+        if (minCount == 0)
+            return -1;
+        return minQueue[minFront];
+    }
+
+    /**
+     * @return ring index of the maximum or -1 if the window is empty.
+     */
+    public int maxIdx() {
+        if (maxCount == 0)
+            return -1;
+        return maxQueue[maxFront];
+    }
+
+    /**
+     * @return position of the last element of a deque starting at front
+     * holding count elements.
+     */
+    private int back(int front, int count) {
+        int b = front + count - 1;
+        if (b >= capacity)
+            b -= capacity;
+        return b;
+    }
+}
@@ -0,0 +1,249 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid index over the (x, y) entries of the rings of a Plot2D, to
+ * find the entries within a viewport without visiting all of them.
+ * <p>
+ * The plane is divided into cells of equal size, which are hashed into a
+ * fixed number of buckets, so the grid is unbounded. Every bucket is a
+ * doubly linked list through the raw ring indices, so an entry is moved out
+ * of its old cell and into its new one in O(1) when the ring overwrites it.
+ * <p>
+ * The cell size is derived from the viewport when the index is built. If
+ * the viewport is zoomed so far that it spans too few or too many cells,
+ * the index has to be rebuilt, @see #needsRebuild(double, double)
+ */
+public class SpatialGrid {
+    /**
+     * Cells per axis the viewport is divided into when the index is built.
+     */
+    public static final int VIEWPORT_CELLS = 32;
+
+    /**
+     * Factor the zoom may change by before the index is rebuilt.
+     */
+    private static final int MAX_ZOOM_CHANGE = 4;
+
+    private final int[] m_heads;
+    private final int m_bucketMask;
+
+    /**
+     * Linked lists through the raw ring indices, -1 terminates.
+     */
+    private final int[] m_next;
+    private final int[] m_prev;
+
+    /**
+     * Cell and bucket of every raw ring index, the bucket is -1 if the entry
+     * is not indexed.
+     */
+    private final int[] m_cellX;
+    private final int[] m_cellY;
+    private final int[] m_bucket;
+
+    private long m_xOrigin;
+    private double m_cellWidth;
+    private float m_yOrigin;
+    private double m_cellHeight;
+    private boolean m_valid = false;
+
+    /**
+     * Raw indices found by the last query().
+     */
+    public int[] result = new int[256];
+    public int resultCount = 0;
+
+    /**
+     * TRANSIENT variables
+     */
+    private transient int tCellX, tCellY, tBucket;
+
+    /**
+     * @param capacity Number of entries of the rings.
+     */
+    public SpatialGrid(int capacity) {
+        m_next = new int[capacity];
+        m_prev = new int[capacity];
+        m_cellX = new int[capacity];
+        m_cellY = new int[capacity];
+        m_bucket = new int[capacity];
+
+        // about four entries per bucket, enough for all cells of a query
+        int buckets = CircularValueList.powerOfTwo(Math.max(capacity >> 2, (VIEWPORT_CELLS + 2) * (VIEWPORT_CELLS + 2)));
+        m_heads = new int[buckets];
+        m_bucketMask = buckets - 1;
+
+        clear();
+    }
+
+    public boolean isValid() {
+        return m_valid;
+    }
+
+    /**
+     * @param xRange width of the viewport
+     * @param yRange height of the viewport
+     * @return Whether the index has to be rebuilt for a viewport of this
+     * size.
+     */
+    public boolean needsRebuild(double xRange, double yRange) {
+        if (!m_valid)
+            return true;
+
+        final double cols = xRange / m_cellWidth;
+        final double rows = yRange / m_cellHeight;
+        return cols > VIEWPORT_CELLS * MAX_ZOOM_CHANGE || cols < VIEWPORT_CELLS / MAX_ZOOM_CHANGE
+                || rows > VIEWPORT_CELLS * MAX_ZOOM_CHANGE || rows < VIEWPORT_CELLS / MAX_ZOOM_CHANGE;
+    }
+
+    /**
+     * Indexes all entries of the rings, with cells sized for the given
+     * viewport.
+     */
+    public void rebuild(LongValueList x, FloatValueList y, long xStart, double xRange, float yStart, double yRange) {
+        clear();
+
+        m_xOrigin = xStart;
+        m_yOrigin = yStart;
+        m_cellWidth = xRange > 0 ? xRange / VIEWPORT_CELLS : 1;
+        m_cellHeight = yRange > 0 ? yRange / VIEWPORT_CELLS : 1;
+
+        final LongValueList.Cursor xCursor = x.cursor();
+        final FloatValueList.Cursor yCursor = y.cursor();
+        int idx = x.tail;
+        while (xCursor.hasNext()) {
+            insert(idx, xCursor.nextLong(), yCursor.nextFloat());
+            if (++idx == m_bucket.length)
+                idx = 0;
+        }
+        m_valid = true;
+    }
+
+    public void clear() {
+        Arrays.fill(m_heads, -1);
+        Arrays.fill(m_bucket, -1);
+    }
+
+    /**
+     * Must be called after the entry at the raw index idx was written. Does
+     * nothing until the index was built.
+     *
+     * @param idx raw index
+     * @param x
+     * @param y
+     */
+    public void update(int idx, long x, float y) {
+        if (!m_valid)
+            return;
+
+        remove(idx);
+        insert(idx, x, y);
+    }
+
+    private void insert(int idx, long x, float y) {
+        tCellX = cellX(x);
+        tCellY = cellY(y);
+        tBucket = bucketOf(tCellX, tCellY);
+
+        m_cellX[idx] = tCellX;
+        m_cellY[idx] = tCellY;
+        m_bucket[idx] = tBucket;
+
+        m_prev[idx] = -1;
+        m_next[idx] = m_heads[tBucket];
+        if (m_heads[tBucket] != -1)
+            m_prev[m_heads[tBucket]] = idx;
+        m_heads[tBucket] = idx;
+    }
+
+    private void remove(int idx) {
+        if (m_bucket[idx] == -1)
+            return;
+
+        if (m_prev[idx] != -1)
+            m_next[m_prev[idx]] = m_next[idx];
+        else
+            m_heads[m_bucket[idx]] = m_next[idx];
+
+        if (m_next[idx] != -1)
+            m_prev[m_next[idx]] = m_prev[idx];
+
+        m_bucket[idx] = -1;
+    }
+
+    private int cellX(long x) {
+        return clampCell(Math.floor((x - m_xOrigin) / m_cellWidth));
+    }
+
+    private int cellY(float y) {
+        return clampCell(Math.floor((y - m_yOrigin) / m_cellHeight));
+    }
+
+    private static int clampCell(double cell) {
+        if (cell < -(1 << 30))
+            return -(1 << 30);
+        if (cell > 1 << 30)
+            return 1 << 30;
+        return (int) cell;
+    }
+
+    private int bucketOf(int cellX, int cellY) {
+        return (cellX * 0x9E3779B1 + cellY * 0x85EBCA6B) >>> 7 & m_bucketMask;
+    }
+
+    /**
+     * Collects the raw indices of all entries in the cells that intersect
+     * the given range, grown by pad cells on each side, into result. The
+     * entries of the border cells may lie outside of the range.
+     *
+     * @param xStart
+     * @param xEnd
+     * @param yStart
+     * @param yEnd
+     * @param pad    number of extra cells on each side
+     * @return false if the range spans more cells than buckets, then
+     * scanning all entries is cheaper.
+     */
+    public boolean query(long xStart, long xEnd, float yStart, float yEnd, int pad) {
+        resultCount = 0;
+
+        final int x0 = cellX(xStart) - pad, x1 = cellX(xEnd) + pad;
+        final int y0 = cellY(yStart) - pad, y1 = cellY(yEnd) + pad;
+        if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > m_heads.length)
+            return false;
+
+        int idx;
+        for (tCellY = y0; tCellY <= y1; ++tCellY) {
+            for (tCellX = x0; tCellX <= x1; ++tCellX) {
+                // the bucket may also hold entries of other cells
+                for (idx = m_heads[bucketOf(tCellX, tCellY)]; idx != -1; idx = m_next[idx]) {
+                    if (m_cellX[idx] != tCellX || m_cellY[idx] != tCellY)
+                        continue;
+
+                    if (resultCount == result.length)
+                        result = Arrays.copyOf(result, resultCount << 1);
+                    result[resultCount++] = idx;
+                }
+            }
+        }
+        return true;
+    }
+}
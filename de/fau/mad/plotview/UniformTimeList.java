@@ -0,0 +1,457 @@
+/**
+ * This file is part of the PlotView distribution (https://github.com/mad-lab-fau/PlotView).
+ * Copyright (c) 2015-2020 Machine Learning and Data Analytics Lab, Friedrich-Alexander-Universität Erlangen-Nürnberg (FAU).
+ * <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fau.mad.plotview;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+/**
+ * Millisecond timestamps of a fixed-rate signal that are computed instead of
+ * stored. The ring keeps head, tail and num in sync with the value rings of
+ * a plot like a LongValueList, but doesn't allocate the values array.
+ * <p>
+ * Each sample gets a sequence number. Its timestamp is derived from the last
+ * resync point (sequence number, timestamp) at or before it and the sampling
+ * rate. The first added timestamp is a resync point, and so is every added
+ * timestamp that deviates more than the resync tolerance from the computed
+ * one, e.g. after a clock jump or a gap in the recording. Resync points that
+ * no longer affect any sample in the ring are dropped, so for a steady
+ * signal there is only one.
+ * <p>
+ * Within a resync segment the timestamps increase monotonically, so min and
+ * max are found from the segment ends only. A resync point never starts
+ * below the last computed time of the segment before it unless the added
+ * timestamp jumps back by more than the resync tolerance, so ascending
+ * timestamps stay ascending and lowerBound() works on them. After a larger
+ * backwards jump the ring isn't sorted anymore, just like a LongValueList
+ * with the same timestamps.
+ */
+public class UniformTimeList extends LongValueList {
+    /**
+     * Default maximal deviation in ms of an added timestamp from the computed
+     * one before a resync point is created.
+     */
+    public static final long DEFAULT_RESYNC_TOLERANCE = 100;
+
+    private final double m_samplingRate;
+    private final double m_msPerSample;
+    private long m_resyncTolerance = DEFAULT_RESYNC_TOLERANCE;
+
+    /**
+     * Sequence number of the next sample.
+     */
+    private long m_count = 0;
+
+    /**
+     * Resync points, ordered by sequence number.
+     */
+    private long[] m_resyncSeq = new long[4];
+    private long[] m_resyncTime = new long[4];
+    private int m_resyncNum = 0;
+
+    /**
+     * TRANSIENT variables
+     */
+    private transient int tIter, tSegment;
+
+    /**
+     * @param cacheSize        Number of entries, same as the value rings.
+     * @param maintainMinMax   Whether to maintain the min and max values.
+     * @param samplingRateInHz Sampling rate of the signal, &gt; 0.
+     */
+    public UniformTimeList(int cacheSize, boolean maintainMinMax, double samplingRateInHz) {
+        super(cacheSize, maintainMinMax, false);
+        if (samplingRateInHz <= 0)
+            throw new IllegalArgumentException("Invalid sampling rate " + samplingRateInHz);
+
+        m_samplingRate = samplingRateInHz;
+        m_msPerSample = 1000d / samplingRateInHz;
+    }
+
+    public double getSamplingRate() {
+        return m_samplingRate;
+    }
+
+    /**
+     * Sets the maximal deviation of an added timestamp from the computed one
+     * before a resync point is created. Smaller values follow a jittering
+     * clock more closely at the cost of more resync points.
+     *
+     * @param toleranceInMs
+     */
+    public void setResyncTolerance(long toleranceInMs) {
+        m_resyncTolerance = toleranceInMs;
+    }
+
+    /**
+     * @return The number of resync points currently kept.
+     */
+    public int getResyncCount() {
+        return m_resyncNum;
+    }
+
+    /**
+     * @return Whether the first timestamp was added yet, @see #nextTime()
+     */
+    public boolean isStarted() {
+        return m_resyncNum > 0;
+    }
+
+    /**
+     * @return The computed timestamp of the next sample or 0 if no timestamp
+     * was added yet.
+     */
+    public long nextTime() {
+        if (m_resyncNum == 0)
+            return 0;
+        return timeOf(m_resyncNum - 1, m_count);
+    }
+
+    /**
+     * Adds a sample with the given timestamp. Only the sample count and, if
+     * the timestamp deviates from the computed one, a resync point are
+     * stored.
+     *
+     * @param newValue timestamp in ms
+     * @return new head position
+     */
+    @Override
+    public int add(long newValue) {
+        sync(newValue, m_count - num);
+        ++m_count;
+
+        ++head;
+        if (head == sizeMax)
+            head = 0;
+
+        if (num < sizeMax)
+            ++num;
+        else {
+            // if buffer is entirely filled, tail increases with head
+            ++tail;
+            if (tail == sizeMax)
+                tail = 0;
+        }
+
+        if (maintainMinMax)
+            findMinMax();
+
+        return head;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.LongValueList#add(long[], int, int)
+     */
+    @Override
+    public int add(long[] newValues, int offset, int length) {
+        if (length <= 0)
+            return head;
+
+        if (length >= sizeMax) {
+            // keep head in sync with the value rings, only the last sizeMax
+            // samples survive
+            head = (head + length - sizeMax) % sizeMax;
+            m_count += length - sizeMax;
+            offset += length - sizeMax;
+            length = sizeMax;
+            num = 0;
+            tail = 0;
+        }
+        advance(length);
+
+        // prune against the ring after the add, the new samples are already
+        // counted in num
+        final long oldest = m_count + length - num;
+        for (tIter = 0; tIter < length; ++tIter) {
+            sync(newValues[offset + tIter], oldest);
+            ++m_count;
+        }
+        Assert.assertTrue(m_resyncSeq[0] <= m_count - num);
+
+        if (maintainMinMax)
+            findMinMax();
+
+        return head;
+    }
+
+    /**
+     * Creates a resync point for the next sample if timestamp deviates from
+     * its computed time.
+     *
+     * @param timestamp
+     * @param oldest    sequence number of the oldest sample in the ring
+     */
+    private void sync(long timestamp, long oldest) {
+        if (m_resyncNum > 0) {
+            long expected = timeOf(m_resyncNum - 1, m_count);
+            if (Math.abs(timestamp - expected) <= m_resyncTolerance)
+                return;
+
+            // the computed times may run ahead by up to the tolerance, don't
+            // step back behind them unless the clock really jumped back
+            expected = timeOf(m_resyncNum - 1, m_count - 1);
+            if (timestamp < expected && timestamp >= expected - m_resyncTolerance)
+                timestamp = expected;
+        }
+
+        pruneResyncPoints(oldest);
+
+        if (m_resyncNum == m_resyncSeq.length) {
+            m_resyncSeq = Arrays.copyOf(m_resyncSeq, m_resyncNum << 1);
+            m_resyncTime = Arrays.copyOf(m_resyncTime, m_resyncNum << 1);
+        }
+
+        m_resyncSeq[m_resyncNum] = m_count;
+        m_resyncTime[m_resyncNum] = timestamp;
+        ++m_resyncNum;
+    }
+
+    /**
+     * Drops the resync points whose successor already starts at or before the
+     * oldest sample in the ring.
+     *
+     * @param oldest sequence number of the oldest sample
+     */
+    private void pruneResyncPoints(long oldest) {
+        int drop = 0;
+        while (drop + 1 < m_resyncNum && m_resyncSeq[drop + 1] <= oldest)
+            ++drop;
+
+        if (drop > 0) {
+            m_resyncNum -= drop;
+            System.arraycopy(m_resyncSeq, drop, m_resyncSeq, 0, m_resyncNum);
+            System.arraycopy(m_resyncTime, drop, m_resyncTime, 0, m_resyncNum);
+        }
+    }
+
+    /**
+     * @return The index of the resync point that seq belongs to.
+     */
+    private int segmentOf(long seq) {
+        // the newest samples are accessed most often
+        if (seq >= m_resyncSeq[m_resyncNum - 1])
+            return m_resyncNum - 1;
+
+        int i = Arrays.binarySearch(m_resyncSeq, 0, m_resyncNum, seq);
+        if (i < 0)
+            i = -i - 2;
+        return i < 0 ? 0 : i;
+    }
+
+    private long timeOf(int segment, long seq) {
+        return m_resyncTime[segment] + Math.round((seq - m_resyncSeq[segment]) * m_msPerSample);
+    }
+
+    /**
+     * @param idx raw index
+     * @return The sequence number of the sample at the raw index.
+     */
+    private long seqOf(int idx) {
+        return m_count - num + tailDistance(idx);
+    }
+
+    /**
+     * @param idx raw index
+     * @return The computed timestamp of the sample at the raw index.
+     */
+    @Override
+    public long getRaw(int idx) {
+        long seq = seqOf(idx);
+        return timeOf(segmentOf(seq), seq);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.LongValueList#copyRaw(int, long[], int, int)
+     */
+    @Override
+    public void copyRaw(int from, long[] dst, int dstOffset, int length) {
+        if (length <= 0)
+            return;
+
+        long seq = seqOf(from);
+        tSegment = segmentOf(seq);
+        for (tIter = 0; tIter < length; ++tIter, ++seq) {
+            if (tSegment + 1 < m_resyncNum && seq >= m_resyncSeq[tSegment + 1])
+                ++tSegment;
+            dst[dstOffset + tIter] = timeOf(tSegment, seq);
+        }
+    }
+
+    /**
+     * Computes the position from the resync point before key instead of
+     * searching the samples, O(log r) for r resync points.
+     */
+    @Override
+    public int lowerBound(long key, int first, int count) {
+        if (count <= 0 || m_resyncNum == 0)
+            return 0;
+
+        final long firstSeq = seqOf(first);
+        final long endSeq = firstSeq + count;
+
+        // last segment starting before key, the next one may start at key
+        // and repeat the last time of this one
+        int s = Arrays.binarySearch(m_resyncTime, 0, m_resyncNum, key - 1);
+        if (s < 0)
+            s = -s - 2;
+        while (s + 1 < m_resyncNum && m_resyncTime[s + 1] < key)
+            ++s;
+        s = Math.min(Math.max(s, segmentOf(firstSeq)), segmentOf(endSeq - 1));
+
+        final long segStart = Math.max(m_resyncSeq[s], firstSeq);
+        final long segEnd = s + 1 < m_resyncNum ? Math.min(m_resyncSeq[s + 1], endSeq) : endSeq;
+
+        long seq = m_resyncSeq[s] + (long) Math.ceil((key - m_resyncTime[s]) / m_msPerSample);
+        seq = Math.max(segStart, Math.min(seq, segEnd));
+
+        // timeOf() rounds, correct by at most a sample
+        while (seq > segStart && timeOf(s, seq - 1) >= key)
+            --seq;
+        while (seq < segEnd && timeOf(s, seq) < key)
+            ++seq;
+
+        return (int) (seq - firstSeq);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.LongValueList#getHeadValue()
+     */
+    @Override
+    public long getHeadValue() {
+        if (head < 0)
+            return 0;
+        return timeOf(m_resyncNum - 1, m_count - 1);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.LongValueList#getIndirect(int)
+     */
+    @Override
+    public long getIndirect(int rIdx) {
+        // no elements
+        if (num == 0)
+            return -1;
+
+        return getRaw(normIdx(rIdx));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.fau.mad.plotview.LongValueList#clear()
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        m_count = 0;
+        m_resyncNum = 0;
+    }
+
+    /**
+     * Adds the contents of sourceList as new samples.
+     *
+     * @param sourceList
+     */
+    @Override
+    public void copy(ArrayList<Long> sourceList) {
+        clear();
+        for (Long l : sourceList) {
+            add(l.longValue());
+        }
+    }
+
+    /**
+     * The min/max of the computed timestamps are always exact, no sliding
+     * window is needed.
+     */
+    @Override
+    public void setSlidingMinMax(boolean enable) {
+        if (enable) {
+            maintainMinMax = true;
+            findMinMax();
+        }
+    }
+
+    @Override
+    public void findMax() {
+        findMinMax();
+    }
+
+    @Override
+    public void findMin() {
+        findMinMax();
+    }
+
+    /**
+     * Checks the first and last sample of every resync segment in the ring.
+     */
+    @Override
+    public void findMinMax() {
+        minValue = Long.MAX_VALUE;
+        minIdx = -1;
+        maxValue = Long.MIN_VALUE;
+        maxIdx = -1;
+
+        if (num == 0)
+            return;
+
+        final long oldest = m_count - num;
+        long first, last, t;
+        for (tSegment = segmentOf(oldest); tSegment < m_resyncNum; ++tSegment) {
+            first = Math.max(m_resyncSeq[tSegment], oldest);
+            last = (tSegment + 1 < m_resyncNum ? m_resyncSeq[tSegment + 1] : m_count) - 1;
+
+            t = timeOf(tSegment, first);
+            if (t < minValue) {
+                minValue = t;
+                minIdx = normIdx(tail + (int) (first - oldest));
+            }
+            t = timeOf(tSegment, last);
+            if (t > maxValue) {
+                maxValue = t;
+                maxIdx = normIdx(tail + (int) (last - oldest));
+            }
+        }
+        rangeMinMax = maxValue - minValue;
+    }
+
+    /**
+     * Timestamps can't be changed.
+     */
+    @Override
+    public void add(int location, Long object) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Timestamps can't be changed.
+     */
+    @Override
+    public Long set(int location, Long object) {
+        throw new UnsupportedOperationException();
+    }
+}